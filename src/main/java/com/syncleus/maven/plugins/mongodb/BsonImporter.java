@@ -0,0 +1,143 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a file of concatenated BSON documents (the format written by mongodump
+ * and by the convert goal) into a collection. The file is memory mapped and
+ * every document is handed to the driver as a {@link RawBsonDocument}, so the
+ * documents are never decoded and re-encoded on the way to the server.
+ */
+public class BsonImporter {
+    private static final int MIN_DOCUMENT_SIZE = 5;
+    private static final int MAX_DOCUMENT_SIZE = 16 * 1024 * 1024;
+    private static final long MAX_MAPPING_SIZE = 512L * 1024 * 1024;
+    private static final int MAX_BATCH_BYTES = 16 * 1024 * 1024;
+
+    private final int batchSize;
+    private final Boolean ordered;
+
+    public BsonImporter(final int batchSize) {
+        this(batchSize, null);
+    }
+
+    /**
+     * @param ordered whether each batch stops at the first failed write, or
+     *                null for unordered inserts and ordered upserts, so the
+     *                last of several documents with the same _id wins.
+     */
+    public BsonImporter(final int batchSize, final Boolean ordered) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Imports every document in the given file.
+     *
+     * @return the number of documents imported.
+     */
+    public long importFile(final File file, final MongoCollection<RawBsonDocument> collection, final boolean drop, final boolean upsert) throws IOException {
+        if (drop)
+            collection.drop();
+
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = input.getChannel();
+            final long size = channel.size();
+            final List<RawBsonDocument> batch = new ArrayList<RawBsonDocument>(batchSize);
+            long batchBytes = 0;
+            long imported = 0;
+            long position = 0;
+
+            while (position < size) {
+                final long mappingSize = Math.min(MAX_MAPPING_SIZE, size - position);
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mappingSize);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                // only whole documents are consumed from a mapping, the next
+                // mapping starts at the first document which did not fit.
+                while (buffer.remaining() >= 4) {
+                    final int documentSize = buffer.getInt(buffer.position());
+                    if (documentSize < MIN_DOCUMENT_SIZE || documentSize > MAX_DOCUMENT_SIZE)
+                        throw new IOException("Corrupt BSON file '" + file + "': invalid document size " + documentSize + " at offset " + (position + buffer.position()));
+                    if (documentSize > buffer.remaining())
+                        break;
+
+                    final byte[] bytes = new byte[documentSize];
+                    buffer.get(bytes);
+                    batch.add(new RawBsonDocument(bytes));
+                    batchBytes += documentSize;
+
+                    if (batch.size() >= batchSize || batchBytes >= MAX_BATCH_BYTES) {
+                        imported += write(collection, batch, upsert, ordered);
+                        batch.clear();
+                        batchBytes = 0;
+                    }
+                }
+
+                if (buffer.position() == 0)
+                    throw new IOException("Corrupt BSON file '" + file + "': truncated document at offset " + position);
+                position += buffer.position();
+            }
+
+            if (!batch.isEmpty())
+                imported += write(collection, batch, upsert, ordered);
+            return imported;
+        } finally {
+            input.close();
+        }
+    }
+
+    static <T extends BsonDocument> int write(final MongoCollection<T> collection, final List<T> batch, final boolean upsert, final Boolean ordered) {
+        if (!upsert) {
+            collection.insertMany(new ArrayList<T>(batch), new InsertManyOptions().ordered(Boolean.TRUE.equals(ordered)));
+            return batch.size();
+        }
+
+        final List<WriteModel<T>> requests = new ArrayList<WriteModel<T>>(batch.size());
+        final UpdateOptions options = new UpdateOptions().upsert(true);
+        for (final T document : batch) {
+            if (document.containsKey("_id"))
+                requests.add(new ReplaceOneModel<T>(new BsonDocument("_id", document.get("_id")), document, options));
+            else
+                requests.add(new InsertOneModel<T>(document));
+        }
+        collection.bulkWrite(requests, new BulkWriteOptions().ordered(!Boolean.FALSE.equals(ordered)));
+        return batch.size();
+    }
+}
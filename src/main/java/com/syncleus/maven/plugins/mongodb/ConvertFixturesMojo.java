@@ -0,0 +1,125 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.bson.BsonInvalidOperationException;
+import org.bson.json.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * When invoked, this goal converts JSON fixtures into BSON files which can be
+ * imported with {@code <format>bson</format>}. It is intended to be run once,
+ * by hand, whenever the JSON fixtures change.
+ */
+@Mojo(name = "convert", requiresProject = false)
+public class ConvertFixturesMojo extends AbstractMongoMojo {
+
+    /**
+     * The JSON fixtures to convert, either JSON arrays or one document per
+     * line.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(required = true)
+    private File[] fixtures;
+
+    /**
+     * The directory the BSON files are written to, by default they are
+     * written next to the JSON fixture they were converted from.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.convert.outputDirectory")
+    private File outputDirectory;
+
+    public ConvertFixturesMojo() {
+    }
+
+    //This constructor is only present for unit testing purposes.
+    ConvertFixturesMojo(final File[] fixtures, final File outputDirectory, final boolean skip) {
+        super(skip);
+        this.fixtures = fixtures;
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public void start() throws MojoExecutionException, MojoFailureException {
+        if (fixtures == null || fixtures.length == 0)
+            throw new MojoFailureException("No fixtures were specified to convert");
+
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new MojoExecutionException("Unable to create output directory '" + outputDirectory + "'");
+
+        final Map<File, File> targets = targetFiles();
+        final FixtureConverter converter = new FixtureConverter();
+        for (final Map.Entry<File, File> entry : targets.entrySet()) {
+            final File fixture = entry.getValue();
+            final File target = entry.getKey();
+            try {
+                final long count = converter.convert(fixture, target);
+                getLog().info("Converted " + count + " document(s) from '" + fixture + "' to '" + target + "'");
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Unable to convert '" + fixture + "'", e);
+            } catch (final JsonParseException e) {
+                throw new MojoFailureException("Fixture '" + fixture + "' is not valid JSON: " + e.getMessage());
+            } catch (final BsonInvalidOperationException e) {
+                throw new MojoFailureException("Fixture '" + fixture + "' does not contain documents: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the fixtures keyed by the file each converts to, rejecting a
+     * fixture which would be overwritten and fixtures converting to the same
+     * file.
+     */
+    private Map<File, File> targetFiles() throws MojoExecutionException, MojoFailureException {
+        final Map<File, File> targets = new LinkedHashMap<File, File>();
+        for (final File fixture : fixtures) {
+            final File target;
+            try {
+                target = targetFile(fixture).getCanonicalFile();
+                if (target.equals(fixture.getCanonicalFile()))
+                    throw new MojoFailureException("Fixture '" + fixture + "' would be overwritten by its conversion, "
+                        + "use an outputDirectory");
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Unable to resolve '" + fixture + "'", e);
+            }
+            final File previous = targets.put(target, fixture);
+            if (previous != null)
+                throw new MojoFailureException("Fixtures '" + previous + "' and '" + fixture + "' both convert to '" + target + "'");
+        }
+        return targets;
+    }
+
+    private File targetFile(final File fixture) {
+        String name = fixture.getName();
+        final int extension = name.lastIndexOf('.');
+        if (extension > 0)
+            name = name.substring(0, extension);
+        final File directory = (outputDirectory != null ? outputDirectory : fixture.getAbsoluteFile().getParentFile());
+        return new File(directory, name + ".bson");
+    }
+}
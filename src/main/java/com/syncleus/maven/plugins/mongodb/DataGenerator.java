@@ -0,0 +1,87 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.BsonDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Streams generated documents into a collection. The index range is split
+ * between worker threads which each generate and write one batch at a time,
+ * so no more than one batch per thread is ever held in memory.
+ */
+public class DataGenerator {
+    private final DocumentGenerator generator;
+    private final int batchSize;
+    private final int threads;
+
+    public DataGenerator(final DocumentGenerator generator, final int batchSize, final int threads) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.generator = generator;
+        this.batchSize = batchSize;
+        this.threads = (threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Generates documents zero through count - 1 into the collection.
+     */
+    public void generate(final MongoCollection<BsonDocument> collection, final long count) throws InterruptedException, ExecutionException {
+        final int workers = (int) Math.max(1, Math.min(threads, count / batchSize));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<?>> pending = new ArrayList<Future<?>>(workers);
+            final long share = count / workers;
+            for (int worker = 0; worker < workers; worker++) {
+                final long from = worker * share;
+                final long to = (worker == workers - 1 ? count : from + share);
+                pending.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        write(collection, from, to);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<?> future : pending)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void write(final MongoCollection<BsonDocument> collection, final long from, final long to) {
+        final InsertManyOptions options = new InsertManyOptions().ordered(false);
+        List<BsonDocument> batch = new ArrayList<BsonDocument>(batchSize);
+        for (long index = from; index < to; index++) {
+            if (Thread.currentThread().isInterrupted())
+                return;
+            batch.add(generator.generate(index));
+            if (batch.size() >= batchSize) {
+                collection.insertMany(batch, options);
+                batch = new ArrayList<BsonDocument>(batchSize);
+            }
+        }
+        if (!batch.isEmpty())
+            collection.insertMany(batch, options);
+    }
+}
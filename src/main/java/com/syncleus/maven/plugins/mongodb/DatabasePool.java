@@ -0,0 +1,225 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOptions;
+import org.apache.maven.plugin.logging.Log;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Copies a seeded database into a pool of identical databases and registers
+ * them for {@link DatabasePoolLease} so parallel tests can each lease a
+ * database of their own on the one mongod. Copies are made by the server
+ * with copydb in parallel; servers without copydb get the documents and
+ * indexes copied through the driver, reading the source once for all
+ * copies.
+ */
+public class DatabasePool {
+    /**
+     * The database holding the lease registry.
+     */
+    public static final String LEASE_DATABASE = "databasePool";
+    /**
+     * The lease registry collection, one document per pooled database with
+     * its name as _id, the source database, the owner of its lease or null,
+     * when the lease expires in milliseconds since the epoch and whether the
+     * database was used since it was copied.
+     */
+    public static final String LEASE_COLLECTION = "leases";
+
+    private static final int COMMAND_NOT_FOUND = 59;
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoClient client;
+    private final Log log;
+
+    public DatabasePool(final MongoClient client, final Log log) {
+        this.client = client;
+        this.log = log;
+    }
+
+    public static List<String> names(final String prefix, final int size) {
+        final List<String> names = new ArrayList<String>(size);
+        for (int index = 1; index <= size; index++)
+            names.add(prefix + index);
+        return names;
+    }
+
+    /**
+     * Replaces the pooled databases with copies of the source and resets
+     * their leases.
+     */
+    public void create(final String source, final List<String> targets) throws ExecutionException, InterruptedException {
+        if (!copy(client, source, targets))
+            log.debug("copydb is not available, copied " + source + " through the driver");
+
+        final MongoCollection<BsonDocument> leases = leaseCollection();
+        leases.deleteMany(new BsonDocument("source", new BsonString(source)));
+        final List<BsonDocument> registered = new ArrayList<BsonDocument>(targets.size());
+        for (final String target : targets)
+            registered.add(new BsonDocument("_id", new BsonString(target)).append("source", new BsonString(source)).append("owner", BsonNull.VALUE)
+                .append("expires", new BsonInt64(0)).append("dirty", BsonBoolean.FALSE));
+        leases.insertMany(registered);
+    }
+
+    /**
+     * @return the leases of the databases copied from the source.
+     */
+    public List<BsonDocument> leases(final String source) {
+        return leaseCollection().find(new BsonDocument("source", new BsonString(source))).into(new ArrayList<BsonDocument>());
+    }
+
+    /**
+     * Registers leases read with {@link #leases(String)} again, so their
+     * holders keep their databases once the pool was created again.
+     */
+    public void restoreLeases(final List<BsonDocument> leases) {
+        final MongoCollection<BsonDocument> collection = leaseCollection();
+        for (final BsonDocument lease : leases)
+            collection.replaceOne(new BsonDocument("_id", lease.get("_id")), lease, new UpdateOptions().upsert(true));
+    }
+
+    private MongoCollection<BsonDocument> leaseCollection() {
+        return client.getDatabase(LEASE_DATABASE).getCollection(LEASE_COLLECTION, BsonDocument.class);
+    }
+
+    /**
+     * Replaces the given databases with copies of the source.
+     *
+     * @return false when the server has no copydb and the copies were made
+     * through the driver.
+     */
+    static boolean copy(final MongoClient client, final String source, final List<String> targets) throws ExecutionException, InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(targets.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            for (final Future<Object> dropped : executor.invokeAll(tasks(targets, new Copy() {
+                @Override
+                public void copy(final String target) {
+                    client.getDatabase(target).drop();
+                }
+            })))
+                dropped.get();
+
+            boolean copied = true;
+            try {
+                for (final Future<Object> copy : executor.invokeAll(tasks(targets, new Copy() {
+                    @Override
+                    public void copy(final String target) {
+                        client.getDatabase("admin").runCommand(new BsonDocument("copydb", new BsonInt32(1))
+                            .append("fromdb", new BsonString(source)).append("todb", new BsonString(target)));
+                    }
+                })))
+                    copy.get();
+            } catch (final ExecutionException e) {
+                if (!(e.getCause() instanceof MongoCommandException) || ((MongoCommandException) e.getCause()).getErrorCode() != COMMAND_NOT_FOUND)
+                    throw e;
+                copied = false;
+            }
+
+            if (!copied)
+                copyThroughDriver(client, source, targets, executor);
+            return copied;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void copyThroughDriver(final MongoClient client, final String source, final List<String> targets, final ExecutorService executor) throws ExecutionException, InterruptedException {
+        final MongoDatabase sourceDatabase = client.getDatabase(source);
+        for (final String collection : sourceDatabase.listCollectionNames()) {
+            if (collection.startsWith("system."))
+                continue;
+
+            final BsonArray indexes = new BsonArray();
+            for (final BsonDocument index : sourceDatabase.getCollection(collection, BsonDocument.class).listIndexes(BsonDocument.class)) {
+                if ("_id_".equals(index.getString("name", new BsonString("")).getValue()))
+                    continue;
+                final BsonDocument copy = new BsonDocument();
+                copy.putAll(index);
+                copy.remove("ns");
+                indexes.add(copy);
+            }
+            // created up front so empty collections and unique constraints
+            // are copied as well
+            for (final Future<Object> created : executor.invokeAll(tasks(targets, new Copy() {
+                @Override
+                public void copy(final String target) {
+                    final MongoDatabase targetDatabase = client.getDatabase(target);
+                    targetDatabase.createCollection(collection);
+                    if (!indexes.isEmpty())
+                        targetDatabase.runCommand(new BsonDocument("createIndexes", new BsonString(collection)).append("indexes", indexes));
+                }
+            })))
+                created.get();
+
+            final MongoCursor<BsonDocument> documents = sourceDatabase.getCollection(collection, BsonDocument.class).find().batchSize(BATCH_SIZE).iterator();
+            try {
+                while (documents.hasNext()) {
+                    final List<BsonDocument> batch = new ArrayList<BsonDocument>(BATCH_SIZE);
+                    while (documents.hasNext() && batch.size() < BATCH_SIZE)
+                        batch.add(documents.next());
+                    for (final Future<Object> inserted : executor.invokeAll(tasks(targets, new Copy() {
+                        @Override
+                        public void copy(final String target) {
+                            client.getDatabase(target).getCollection(collection, BsonDocument.class).insertMany(batch);
+                        }
+                    })))
+                        inserted.get();
+                }
+            } finally {
+                documents.close();
+            }
+        }
+    }
+
+    private static List<Callable<Object>> tasks(final List<String> targets, final Copy copy) {
+        final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(targets.size());
+        for (final String target : targets) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    copy.copy(target);
+                    return null;
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private interface Copy {
+        void copy(String target);
+    }
+}
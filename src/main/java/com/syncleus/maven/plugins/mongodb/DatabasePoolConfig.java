@@ -0,0 +1,64 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+public class DatabasePoolConfig {
+    private String database;
+    private int size;
+    private String prefix;
+
+    public DatabasePoolConfig() {
+    }
+
+    public DatabasePoolConfig(final String database, final int size, final String prefix) {
+        this.database = database;
+        this.size = size;
+        this.prefix = prefix;
+    }
+
+    /**
+     * The seeded database which is copied, defaults to the
+     * defaultImportDatabase.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * The number of copies.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * What the copies' names start with, they are numbered from 1 after it.
+     * Defaults to the database name followed by an underscore.
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @Override
+    public String toString() {
+        return "DatabasePoolConfig{" +
+            "database='" + database + '\'' +
+            ", size=" + size +
+            ", prefix='" + prefix + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A database of the pool created by the databasePool configuration, leased
+ * exclusively until it is closed. Intended for test code, typically one
+ * lease per test class:
+ *
+ * <pre>
+ * final DatabasePoolLease lease = DatabasePoolLease.acquire(client, "test", 60000);
+ * try {
+ *     final MongoDatabase database = client.getDatabase(lease.getDatabaseName());
+ *     ...
+ * } finally {
+ *     lease.close();
+ * }
+ * </pre>
+ *
+ * Leases are held on the server so forks in separate JVMs coordinate
+ * through it. Every lease starts from a fresh copy of the seeded database,
+ * a database used by an earlier lease is copied again when it is leased.
+ * A lease expires unless renewed, so the database of a fork which was
+ * killed before closing its lease is reclaimed.
+ */
+public class DatabasePoolLease implements Closeable {
+    /**
+     * How long a lease is held when acquired without a duration.
+     */
+    public static final long DEFAULT_LEASE_MILLIS = 30 * 60 * 1000;
+    private static final long POLL_MILLIS = 100;
+
+    private final MongoClient client;
+    private final String databaseName;
+    private final String owner;
+    private final long leaseMillis;
+
+    private DatabasePoolLease(final MongoClient client, final String databaseName, final String owner, final long leaseMillis) {
+        this.client = client;
+        this.databaseName = databaseName;
+        this.owner = owner;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Leases a database for {@link #DEFAULT_LEASE_MILLIS}.
+     *
+     * @see #acquire(MongoClient, String, long, long)
+     */
+    public static DatabasePoolLease acquire(final MongoClient client, final String source, final long timeoutMillis) throws InterruptedException {
+        return acquire(client, source, timeoutMillis, DEFAULT_LEASE_MILLIS);
+    }
+
+    /**
+     * Leases a free database of the pool copied from the source database,
+     * waiting for one to be released or to expire when all are leased.
+     *
+     * @param leaseMillis how long the lease is held unless renewed.
+     * @throws IllegalStateException when no database was released in time,
+     * or when a used database could not be copied again.
+     */
+    public static DatabasePoolLease acquire(final MongoClient client, final String source, final long timeoutMillis,
+                                            final long leaseMillis) throws InterruptedException {
+        final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            final long now = System.currentTimeMillis();
+            final BsonDocument leased = leases(client).findOneAndUpdate(
+                new BsonDocument("source", new BsonString(source)).append("$or", new BsonArray(Arrays.asList(
+                    new BsonDocument("owner", BsonNull.VALUE),
+                    new BsonDocument("expires", new BsonDocument("$lt", new BsonInt64(now)))))),
+                new BsonDocument("$set", new BsonDocument("owner", new BsonString(owner))
+                    .append("expires", new BsonInt64(now + leaseMillis)).append("dirty", BsonBoolean.TRUE)),
+                new FindOneAndUpdateOptions());
+            if (leased != null) {
+                final DatabasePoolLease lease = new DatabasePoolLease(client, leased.getString("_id").getValue(), owner, leaseMillis);
+                if (leased.getBoolean("dirty", BsonBoolean.FALSE).getValue())
+                    lease.reset(source);
+                return lease;
+            }
+            if (System.currentTimeMillis() >= deadline)
+                throw new IllegalStateException("No database copied from " + source + " was free within " + timeoutMillis + "ms");
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    /**
+     * Extends the lease by its duration from now.
+     *
+     * @return false when the lease expired and the database was reclaimed.
+     */
+    public boolean renew() {
+        return leases(client).updateOne(new BsonDocument("_id", new BsonString(databaseName)).append("owner", new BsonString(owner)),
+            new BsonDocument("$set", new BsonDocument("expires", new BsonInt64(System.currentTimeMillis() + leaseMillis))))
+            .getMatchedCount() > 0;
+    }
+
+    /**
+     * Releases the lease, the client is left open.
+     */
+    @Override
+    public void close() {
+        leases(client).updateOne(new BsonDocument("_id", new BsonString(databaseName)).append("owner", new BsonString(owner)),
+            new BsonDocument("$set", new BsonDocument("owner", BsonNull.VALUE)));
+    }
+
+    private void reset(final String source) throws InterruptedException {
+        try {
+            DatabasePool.copy(client, source, Collections.singletonList(databaseName));
+        } catch (final ExecutionException e) {
+            close();
+            throw new IllegalStateException("Unable to copy " + source + " into " + databaseName + " again", e.getCause());
+        }
+    }
+
+    private static MongoCollection<BsonDocument> leases(final MongoClient client) {
+        return client.getDatabase(DatabasePool.LEASE_DATABASE).getCollection(DatabasePool.LEASE_COLLECTION, BsonDocument.class);
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.bson.*;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates synthetic documents from a template mapping field names to field
+ * generators. Dotted field names create embedded documents. The supported
+ * generators are:
+ * <ul>
+ * <li>{@code sequence} or {@code sequence(start)}: the document index plus
+ * start</li>
+ * <li>{@code objectId}: an ObjectId unique to the document index</li>
+ * <li>{@code int(min,max)}, {@code long(min,max)}, {@code double(min,max)}:
+ * uniformly distributed numbers, max is exclusive</li>
+ * <li>{@code boolean}</li>
+ * <li>{@code string(length)}: random lower case letters</li>
+ * <li>{@code uuid}: a random UUID string</li>
+ * <li>{@code date(from,to)}: a date between two yyyy-MM-dd dates</li>
+ * <li>{@code oneOf(a,b,c)}: one of the given strings</li>
+ * <li>{@code constant(value)}: the given string</li>
+ * </ul>
+ * Every document depends only on the seed and its index, so the same seed
+ * always generates the same documents no matter how the work is split.
+ */
+public class DocumentGenerator {
+    private static final Pattern SPEC = Pattern.compile("\\s*(\\w+)\\s*(?:\\((.*)\\))?\\s*");
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int OBJECT_ID_EPOCH = 1420070400;
+
+    private final long seed;
+    private final List<Field> fields;
+
+    public DocumentGenerator(final long seed, final Map<String, String> template) {
+        if (template == null || template.isEmpty())
+            throw new IllegalArgumentException("A generator requires at least one field");
+        this.seed = seed;
+
+        // a stable field order keeps generated documents identical between
+        // runs, the _id is placed first as the server would do.
+        final SortedMap<String, String> sorted = new TreeMap<String, String>(template);
+        this.fields = new ArrayList<Field>(sorted.size());
+        if (sorted.containsKey("_id"))
+            fields.add(new Field("_id", parse("_id", sorted.remove("_id"))));
+        for (final Map.Entry<String, String> entry : sorted.entrySet())
+            fields.add(new Field(entry.getKey(), parse(entry.getKey(), entry.getValue())));
+    }
+
+    public BsonDocument generate(final long index) {
+        final Random random = new Random(mix(seed, index));
+        final BsonDocument document = new BsonDocument();
+        for (final Field field : fields) {
+            BsonDocument parent = document;
+            for (int part = 0; part < field.path.length - 1; part++) {
+                BsonValue child = parent.get(field.path[part]);
+                if (child == null) {
+                    child = new BsonDocument();
+                    parent.put(field.path[part], child);
+                }
+                if (!child.isDocument())
+                    throw new IllegalStateException("Field '" + field.path[part] + "' can not be both a value and an embedded document");
+                parent = child.asDocument();
+            }
+            parent.put(field.path[field.path.length - 1], field.generator.generate(index, random));
+        }
+        return document;
+    }
+
+    private static long mix(final long seed, final long index) {
+        // splitmix64 finalizer, decorrelates the seeds of neighbouring indexes
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static ValueGenerator parse(final String field, final String spec) {
+        final Matcher matcher = SPEC.matcher(spec == null ? "" : spec);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Invalid generator '" + spec + "' for field '" + field + "'");
+
+        final String name = matcher.group(1);
+        final String rawArguments = (matcher.group(2) == null ? "" : matcher.group(2).trim());
+        final String[] arguments = (rawArguments.length() == 0 ? new String[0] : rawArguments.split("\\s*,\\s*"));
+
+        try {
+            if (name.equals("sequence")) {
+                final long start = (arguments.length > 0 ? Long.parseLong(arguments[0]) : 0);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonInt64(start + index);
+                    }
+                };
+            } else if (name.equals("objectId")) {
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonObjectId(new ObjectId(ByteBuffer.allocate(12).putInt(OBJECT_ID_EPOCH).putLong(index).array()));
+                    }
+                };
+            } else if (name.equals("int")) {
+                requireArguments(field, spec, arguments, 2);
+                final int min = Integer.parseInt(arguments[0]);
+                final int max = Integer.parseInt(arguments[1]);
+                requireRange(field, spec, min, max);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonInt32((int) (min + (long) ((max - (long) min) * random.nextDouble())));
+                    }
+                };
+            } else if (name.equals("long")) {
+                requireArguments(field, spec, arguments, 2);
+                final long min = Long.parseLong(arguments[0]);
+                final long max = Long.parseLong(arguments[1]);
+                requireRange(field, spec, min, max);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonInt64(min + (long) ((max - (double) min) * random.nextDouble()));
+                    }
+                };
+            } else if (name.equals("double")) {
+                requireArguments(field, spec, arguments, 2);
+                final double min = Double.parseDouble(arguments[0]);
+                final double max = Double.parseDouble(arguments[1]);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonDouble(min + (max - min) * random.nextDouble());
+                    }
+                };
+            } else if (name.equals("boolean")) {
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return BsonBoolean.valueOf(random.nextBoolean());
+                    }
+                };
+            } else if (name.equals("string")) {
+                requireArguments(field, spec, arguments, 1);
+                final int length = Integer.parseInt(arguments[0]);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        final char[] value = new char[length];
+                        for (int position = 0; position < length; position++)
+                            value[position] = LETTERS[random.nextInt(LETTERS.length)];
+                        return new BsonString(new String(value));
+                    }
+                };
+            } else if (name.equals("uuid")) {
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonString(new UUID(random.nextLong(), random.nextLong()).toString());
+                    }
+                };
+            } else if (name.equals("date")) {
+                requireArguments(field, spec, arguments, 2);
+                final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+                format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                final long from = format.parse(arguments[0]).getTime();
+                final long to = format.parse(arguments[1]).getTime();
+                requireRange(field, spec, from, to);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonDateTime(from + (long) ((to - from) * random.nextDouble()));
+                    }
+                };
+            } else if (name.equals("oneOf")) {
+                if (arguments.length == 0)
+                    throw new IllegalArgumentException("Generator '" + spec + "' for field '" + field + "' requires at least one value");
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return new BsonString(arguments[random.nextInt(arguments.length)]);
+                    }
+                };
+            } else if (name.equals("constant")) {
+                final BsonString value = new BsonString(rawArguments);
+                return new ValueGenerator() {
+                    @Override
+                    public BsonValue generate(final long index, final Random random) {
+                        return value;
+                    }
+                };
+            }
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in generator '" + spec + "' for field '" + field + "'", e);
+        } catch (final ParseException e) {
+            throw new IllegalArgumentException("Invalid date in generator '" + spec + "' for field '" + field + "', dates must be yyyy-MM-dd", e);
+        }
+
+        throw new IllegalArgumentException("Unknown generator '" + name + "' for field '" + field + "'");
+    }
+
+    private static void requireArguments(final String field, final String spec, final String[] arguments, final int count) {
+        if (arguments.length != count)
+            throw new IllegalArgumentException("Generator '" + spec + "' for field '" + field + "' requires " + count + " argument(s)");
+    }
+
+    private static void requireRange(final String field, final String spec, final long min, final long max) {
+        if (max <= min)
+            throw new IllegalArgumentException("Generator '" + spec + "' for field '" + field + "' requires min to be less than max");
+    }
+
+    interface ValueGenerator {
+        BsonValue generate(long index, Random random);
+    }
+
+    private static final class Field {
+        private final String[] path;
+        private final ValueGenerator generator;
+
+        private Field(final String name, final ValueGenerator generator) {
+            this.path = name.split("\\.");
+            this.generator = generator;
+        }
+    }
+}
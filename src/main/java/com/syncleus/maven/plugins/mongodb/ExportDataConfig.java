@@ -0,0 +1,79 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+public class ExportDataConfig {
+    public enum ExportFormat {
+        JSON, NDJSON, BSON
+    }
+
+    private String database;
+    private String collection;
+    private String file;
+    private String format = "json";
+    private String query;
+
+    public ExportDataConfig() {
+    }
+
+    public ExportDataConfig(final String database, final String collection, final String file, final String format, final String query) {
+        this.database = database;
+        this.collection = collection;
+        this.file = file;
+        this.format = format;
+        this.query = query;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * One of json, a JSON array as imported with the json format, ndjson,
+     * one document per line as read by the convert goal, or bson, as
+     * imported with the bson format.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * A JSON query selecting the documents exported, all when empty.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportDataConfig{" +
+            "database='" + database + '\'' +
+            ", collection='" + collection + '\'' +
+            ", file='" + file + '\'' +
+            ", format='" + format + '\'' +
+            ", query='" + query + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.syncleus.maven.plugins.mongodb.ExportDataConfig.ExportFormat;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+
+/**
+ * When invoked, this goal exports collections of the instance started by the
+ * start goal into fixture files, such as to capture the state after the
+ * tests or to refresh fixtures from a seeded database. Collections are
+ * exported in parallel, each streamed straight to its file.
+ */
+@Mojo(name = "export", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST)
+public class ExportFixturesMojo extends AbstractMongoMojo {
+
+    /**
+     * The collections to export.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(required = true)
+    private ExportDataConfig[] exports;
+
+    /**
+     * Default database to export from.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.defaultExportDatabase")
+    private String defaultExportDatabase;
+
+    /**
+     * The id of the instance to export from when the start goal started
+     * several instances.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.export.instance")
+    private String instance;
+
+    /**
+     * The number of collections exported at the same time, no value
+     * indicates the number of processors.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.export.threads")
+    private Integer threads;
+
+    /**
+     * The number of documents fetched from mongod at a time.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.export.batchSize", defaultValue = "1000")
+    private int batchSize = 1000;
+
+    /**
+     * Whether the files are gzip compressed. Compressed files need to be
+     * decompressed before they can be imported.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.export.compress", defaultValue = "false")
+    private boolean compress = false;
+
+    /**
+     * The user to export as, published by the start goal when it created
+     * users. Without one, the user the start goal published for the instance
+     * exported from is used.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.username")
+    private String username;
+
+    /**
+     * The password of the user to export as.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.password")
+    private String password;
+
+    /**
+     * The database the user to export as authenticates against.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.authenticationDatabase", defaultValue = "admin")
+    private String authenticationDatabase = "admin";
+
+    /**
+     * The maven project.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "project", readonly = true)
+    private MavenProject project;
+
+    public ExportFixturesMojo() {
+    }
+
+    //This constructor is only present for unit testing purposes.
+    ExportFixturesMojo(final ExportDataConfig[] exports, final String defaultExportDatabase, final boolean compress, final boolean skip) {
+        super(skip);
+        this.exports = exports;
+        this.defaultExportDatabase = defaultExportDatabase;
+        this.compress = compress;
+    }
+
+    @Override
+    public void start() throws MojoExecutionException, MojoFailureException {
+        if (exports == null || exports.length == 0)
+            throw new MojoFailureException("No exports were specified");
+        for (final ExportDataConfig export : exports) {
+            if (StringUtils.isBlank(export.getFile()))
+                throw new MojoFailureException("File is required on export tags: " + export);
+            if (StringUtils.isBlank(export.getCollection()))
+                throw new MojoFailureException("Collection is required on export tags: " + export);
+            if (StringUtils.isBlank(database(export)))
+                throw new MojoFailureException("Database is required you can either define a defaultExportDatabase or a <database> on export tags");
+            getFormat(export);
+            getQuery(export);
+        }
+
+        export(findPort());
+    }
+
+    void export(final int port) throws MojoExecutionException, MojoFailureException {
+        final MongoClient client = new MongoClient(new ServerAddress("localhost", port), getCredentials());
+        final FixtureExporter exporter = new FixtureExporter(batchSize, compress);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(exports.length,
+            threads != null ? threads : Runtime.getRuntime().availableProcessors())));
+        try {
+            final Map<ExportDataConfig, Future<Long>> pending = new LinkedHashMap<ExportDataConfig, Future<Long>>();
+            for (final ExportDataConfig export : exports) {
+                final ExportFormat format = getFormat(export);
+                final BsonDocument query = getQuery(export);
+                pending.put(export, executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return exporter.export(client.getDatabase(database(export)).getCollection(export.getCollection(), RawBsonDocument.class),
+                            query, format, new File(export.getFile()));
+                    }
+                }));
+            }
+            executor.shutdown();
+
+            MojoExecutionException failure = null;
+            for (final Map.Entry<ExportDataConfig, Future<Long>> entry : pending.entrySet()) {
+                final ExportDataConfig export = entry.getKey();
+                try {
+                    getLog().info("Exported " + entry.getValue().get() + " document(s) from " + database(export) + "." + export.getCollection()
+                        + " to '" + export.getFile() + "'");
+                } catch (final ExecutionException e) {
+                    getLog().error("Cannot export " + database(export) + "." + export.getCollection() + ": " + e.getCause().getMessage());
+                    if (failure == null)
+                        failure = new MojoExecutionException("Cannot export '" + export.getFile() + "'", e.getCause());
+                } catch (final InterruptedException e) {
+                    throw new MojoExecutionException("Interrupted while exporting", e);
+                }
+            }
+            if (failure != null)
+                throw failure;
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to export", e);
+        } finally {
+            executor.shutdownNow();
+            client.close();
+        }
+    }
+
+    private int findPort() throws MojoFailureException {
+        final InMemoryMongoServer server = (InMemoryMongoServer) getPluginContext().get(StartMongoMojo
+            .IN_MEMORY_SERVER_CONTEXT_PROPERTY_NAME);
+        if (server != null)
+            return server.getPort();
+
+        final String instanceId = getInstanceId();
+        if (instanceId != null)
+            return getInstances().get(instanceId).getConfig().net().getPort();
+
+        final MongodProcess mongod = (MongodProcess) getPluginContext().get(StartMongoMojo.MONGOD_CONTEXT_PROPERTY_NAME);
+        if (mongod == null)
+            throw new MojoFailureException("No mongod process found, it appears embedmongo:start was not called");
+        return mongod.getConfig().net().getPort();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, MongodProcess> getInstances() {
+        return (Map<String, MongodProcess>) getPluginContext().get(StartMongoMojo.MONGOD_INSTANCES_CONTEXT_PROPERTY_NAME);
+    }
+
+    /**
+     * @return the id of the instance to export from, or null when the start
+     * goal started a single mongod.
+     */
+    private String getInstanceId() throws MojoFailureException {
+        final Map<String, MongodProcess> instances = getInstances();
+        if (instances == null)
+            return null;
+        if (instance == null && instances.size() == 1)
+            return instances.keySet().iterator().next();
+        if (instance == null)
+            throw new MojoFailureException("Several instances were started, choose the one to export from with <instance>");
+        if (!instances.containsKey(instance))
+            throw new MojoFailureException("No instance '" + instance + "' was started");
+        return instance;
+    }
+
+    /**
+     * The configured user, or else the one the start goal published for the
+     * instance exported from, which qualifies its properties with the
+     * instance id.
+     */
+    private List<MongoCredential> getCredentials() throws MojoFailureException {
+        String user = username;
+        String userPassword = password;
+        String userDatabase = authenticationDatabase;
+        final String instanceId = getInstanceId();
+        if (StringUtils.isBlank(user) && instanceId != null && project != null) {
+            final Properties properties = project.getProperties();
+            user = properties.getProperty("mongodb." + instanceId + ".username");
+            userPassword = properties.getProperty("mongodb." + instanceId + ".password");
+            userDatabase = properties.getProperty("mongodb." + instanceId + ".authenticationDatabase", "admin");
+        }
+        if (StringUtils.isBlank(user))
+            return Collections.emptyList();
+        return Collections.singletonList(MongoCredential.createCredential(user, userDatabase, (userPassword != null ? userPassword : "").toCharArray()));
+    }
+
+    private String database(final ExportDataConfig export) {
+        return (StringUtils.isNotBlank(export.getDatabase()) ? export.getDatabase() : defaultExportDatabase);
+    }
+
+    private ExportFormat getFormat(final ExportDataConfig export) throws MojoFailureException {
+        try {
+            return ExportFormat.valueOf(export.getFormat().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected export format encountered: \"" + export.getFormat() + "\"");
+        }
+    }
+
+    private BsonDocument getQuery(final ExportDataConfig export) throws MojoFailureException {
+        if (StringUtils.isBlank(export.getQuery()))
+            return new BsonDocument();
+        try {
+            return BsonDocument.parse(export.getQuery());
+        } catch (final JsonParseException e) {
+            throw new MojoFailureException("Export query is not valid JSON: \"" + export.getQuery() + "\"");
+        }
+    }
+}
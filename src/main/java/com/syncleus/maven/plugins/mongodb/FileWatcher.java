@@ -0,0 +1,87 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Notices changes to a set of files and directories by comparing snapshots of
+ * their modification times and sizes. Changes are held back until none have
+ * been seen for the debounce period, so a burst of saves is reported once.
+ * Directories are watched one level deep, for new and changed files.
+ */
+public class FileWatcher {
+    private final List<File> roots;
+    private final long debounceMillis;
+    private Map<File, String> snapshot;
+    private final Set<File> pending = new LinkedHashSet<File>();
+    private long lastChange;
+
+    public FileWatcher(final Collection<File> roots, final long debounceMillis) {
+        this.roots = new ArrayList<File>(roots);
+        this.debounceMillis = debounceMillis;
+        this.snapshot = snapshot();
+    }
+
+    /**
+     * @return the files which changed, once the debounce period has passed
+     * since the last change, otherwise an empty set.
+     */
+    public Set<File> poll() {
+        return poll(System.currentTimeMillis());
+    }
+
+    Set<File> poll(final long now) {
+        final Map<File, String> current = snapshot();
+        for (final Map.Entry<File, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+                pending.add(entry.getKey());
+                lastChange = now;
+            }
+        }
+        snapshot = current;
+
+        if (pending.isEmpty() || now - lastChange < debounceMillis)
+            return Collections.emptySet();
+        final Set<File> changed = new LinkedHashSet<File>(pending);
+        pending.clear();
+        return changed;
+    }
+
+    private Map<File, String> snapshot() {
+        final Map<File, String> files = new HashMap<File, String>();
+        for (final File root : roots) {
+            if (root.isDirectory()) {
+                final File[] children = root.listFiles();
+                if (children != null) {
+                    for (final File child : children) {
+                        if (child.isFile())
+                            files.put(child.getAbsoluteFile(), state(child));
+                    }
+                }
+            } else if (root.isFile()) {
+                files.put(root.getAbsoluteFile(), state(root));
+            }
+        }
+        return files;
+    }
+
+    private static String state(final File file) {
+        return file.lastModified() + ":" + file.length();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.*;
+
+/**
+ * Converts JSON fixtures, either a single JSON array as read by
+ * {@code mongoimport --jsonArray} or one document per line, into files of
+ * concatenated BSON documents which can be imported with the bson format.
+ */
+public class FixtureConverter {
+    private static final String ENCODING = "UTF-8";
+
+    private final BsonDocumentCodec codec = new BsonDocumentCodec();
+
+    /**
+     * Converts the given JSON file, streaming it one document at a time. The
+     * BSON file is only replaced once the whole fixture converted.
+     *
+     * @return the number of documents written.
+     */
+    public long convert(final File jsonFile, final File bsonFile) throws IOException {
+        if (jsonFile.getCanonicalFile().equals(bsonFile.getCanonicalFile()))
+            throw new IOException("Unable to convert '" + jsonFile + "' onto itself");
+
+        final File written = new File(bsonFile.getPath() + ".tmp");
+        final long count;
+        boolean replaced = false;
+        try {
+            final OutputStream output = new BufferedOutputStream(new FileOutputStream(written));
+            try {
+                if (isArray(jsonFile))
+                    count = convertArray(jsonFile, output);
+                else
+                    count = convertLines(jsonFile, output);
+            } finally {
+                output.close();
+            }
+
+            if (!written.renameTo(bsonFile) && !(bsonFile.delete() && written.renameTo(bsonFile)))
+                throw new IOException("Unable to replace " + bsonFile);
+            replaced = true;
+        } finally {
+            if (!replaced)
+                written.delete();
+        }
+        return count;
+    }
+
+    private long convertArray(final File jsonFile, final OutputStream output) throws IOException {
+        final JsonArrayScanner scanner = JsonArrayScanner.open(jsonFile, true);
+        long count = 0;
+        try {
+            while (scanner.next()) {
+                write(BsonDocument.parse(scanner.document()), output);
+                count++;
+            }
+        } finally {
+            scanner.close();
+        }
+        return count;
+    }
+
+    private long convertLines(final File jsonFile, final OutputStream output) throws IOException {
+        final BufferedReader lines = new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile), ENCODING));
+        long count = 0;
+        try {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.trim().length() == 0)
+                    continue;
+                write(BsonDocument.parse(line), output);
+                count++;
+            }
+        } finally {
+            lines.close();
+        }
+        return count;
+    }
+
+    private void write(final BsonDocument document, final OutputStream output) throws IOException {
+        final BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        buffer.pipe(output);
+    }
+
+    /**
+     * @return whether the first character, after whitespace and a UTF-8 byte
+     * order mark, opens a JSON array.
+     */
+    private static boolean isArray(final File file) throws IOException {
+        final InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            int c;
+            while ((c = input.read()) != -1) {
+                if (c == '[')
+                    return true;
+                if (!Character.isWhitespace(c) && c != 0xEF && c != 0xBB && c != 0xBF)
+                    return false;
+            }
+            return false;
+        } finally {
+            input.close();
+        }
+    }
+}
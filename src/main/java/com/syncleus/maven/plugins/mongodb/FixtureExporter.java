@@ -0,0 +1,114 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.syncleus.maven.plugins.mongodb.ExportDataConfig.ExportFormat;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the documents of a collection into a fixture file in a format the
+ * imports read. Documents are fetched as {@link RawBsonDocument}s, so BSON
+ * exports write the bytes as the server sent them and are never decoded.
+ * The file is written aside and renamed once complete, so a failed export
+ * never leaves a truncated fixture behind.
+ */
+public class FixtureExporter {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int batchSize;
+    private final boolean compress;
+
+    /**
+     * @param batchSize the number of documents fetched from the server at a
+     *                  time.
+     * @param compress whether the file is gzip compressed.
+     */
+    public FixtureExporter(final int batchSize, final boolean compress) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+        this.compress = compress;
+    }
+
+    /**
+     * @return the number of documents written.
+     */
+    public long export(final MongoCollection<RawBsonDocument> collection, final BsonDocument query, final ExportFormat format, final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+            throw new IOException("Unable to create directory " + parent);
+
+        final File written = new File(file.getPath() + ".tmp");
+        long count = 0;
+        boolean replaced = false;
+        try {
+            final MongoCursor<RawBsonDocument> documents = collection.find(query).batchSize(batchSize).iterator();
+            try {
+                final OutputStream output = open(written);
+                try {
+                    if (format == ExportFormat.JSON)
+                        output.write("[".getBytes(UTF8));
+                    while (documents.hasNext()) {
+                        final RawBsonDocument document = documents.next();
+                        if (format == ExportFormat.BSON) {
+                            final ByteBuffer bytes = document.getByteBuffer().asNIO();
+                            output.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                        } else if (format == ExportFormat.NDJSON) {
+                            output.write((document.toJson() + "\n").getBytes(UTF8));
+                        } else {
+                            output.write(((count == 0 ? "\n" : ",\n") + document.toJson()).getBytes(UTF8));
+                        }
+                        count++;
+                    }
+                    if (format == ExportFormat.JSON)
+                        output.write((count > 0 ? "\n]\n" : "]\n").getBytes(UTF8));
+                } finally {
+                    output.close();
+                }
+            } finally {
+                documents.close();
+            }
+
+            if (!written.renameTo(file) && !(file.delete() && written.renameTo(file)))
+                throw new IOException("Unable to replace " + file);
+            replaced = true;
+        } finally {
+            // whatever failed, a partial file must not be left behind
+            if (!replaced)
+                written.delete();
+        }
+        return count;
+    }
+
+    private OutputStream open(final File file) throws IOException {
+        final OutputStream output = new FileOutputStream(file);
+        return (compress ? new GZIPOutputStream(output, BUFFER_SIZE) : new BufferedOutputStream(output, BUFFER_SIZE));
+    }
+}
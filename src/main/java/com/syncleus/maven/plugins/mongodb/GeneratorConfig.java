@@ -0,0 +1,101 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.util.HashMap;
+
+public class GeneratorConfig {
+    private String database;
+    private String collection;
+    private long count;
+    private long seed = 0;
+    private HashMap<String, String> fields;
+    private Boolean dropOnImport = true;
+    private int batchSize = 1000;
+    private int threads = 0;
+    private String writeConcern;
+
+    public GeneratorConfig() {
+    }
+
+    public GeneratorConfig(final String database, final String collection, final long count, final long seed, final HashMap<String, String> fields, final Boolean dropOnImport, final int batchSize, final int threads) {
+        this.database = database;
+        this.collection = collection;
+        this.count = count;
+        this.seed = seed;
+        this.fields = fields;
+        this.dropOnImport = dropOnImport;
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    public GeneratorConfig(final String database, final String collection, final long count, final long seed, final HashMap<String, String> fields, final Boolean dropOnImport, final int batchSize, final int threads, final String writeConcern) {
+        this(database, collection, count, seed, fields, dropOnImport, batchSize, threads);
+        this.writeConcern = writeConcern;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public HashMap<String, String> getFields() {
+        return fields;
+    }
+
+    public Boolean getDropOnImport() {
+        return dropOnImport;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public String getWriteConcern() {
+        return writeConcern;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratorConfig{" +
+            "database='" + database + '\'' +
+            ", collection='" + collection + '\'' +
+            ", count=" + count +
+            ", seed=" + seed +
+            ", fields=" + fields +
+            ", dropOnImport=" + dropOnImport +
+            ", batchSize=" + batchSize +
+            ", threads=" + threads +
+            ", writeConcern='" + writeConcern + '\'' +
+            '}';
+    }
+}
@@ -17,12 +17,21 @@
 package com.syncleus.maven.plugins.mongodb;
 
 public class ImportDataConfig {
+    public enum ImportFormat {
+        JSON, BSON
+    }
+
     private String database;
     private String collection;
     private String file;
     private Boolean dropOnImport = true;
     private Boolean upsertOnImport = true;
     private long timeout = 200000;
+    private String format = "json";
+    private int workers = 1;
+    private String writeConcern;
+    private Boolean ordered;
+    private Integer batchSize;
 
     public ImportDataConfig() {
     }
@@ -36,6 +45,23 @@ public class ImportDataConfig {
         this.timeout = timeout;
     }
 
+    public ImportDataConfig(final String database, final String collection, final String file, final Boolean dropOnImport, final Boolean upsertOnImport, final long timeout, final String format) {
+        this(database, collection, file, dropOnImport, upsertOnImport, timeout);
+        this.format = format;
+    }
+
+    public ImportDataConfig(final String database, final String collection, final String file, final Boolean dropOnImport, final Boolean upsertOnImport, final long timeout, final String format, final int workers) {
+        this(database, collection, file, dropOnImport, upsertOnImport, timeout, format);
+        this.workers = workers;
+    }
+
+    public ImportDataConfig(final String database, final String collection, final String file, final Boolean dropOnImport, final Boolean upsertOnImport, final long timeout, final String format, final int workers, final String writeConcern, final Boolean ordered, final Integer batchSize) {
+        this(database, collection, file, dropOnImport, upsertOnImport, timeout, format, workers);
+        this.writeConcern = writeConcern;
+        this.ordered = ordered;
+        this.batchSize = batchSize;
+    }
+
     public String getDatabase() {
 
         return database;
@@ -61,6 +87,26 @@ public class ImportDataConfig {
         return timeout;
     }
 
+    public String getFormat() {
+        return format;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public String getWriteConcern() {
+        return writeConcern;
+    }
+
+    public Boolean getOrdered() {
+        return ordered;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
     @Override
     public String toString() {
         return "ImportDataConfig{" +
@@ -70,6 +116,11 @@ public class ImportDataConfig {
             ", dropOnImport=" + dropOnImport +
             ", upsertOnImport=" + upsertOnImport +
             ", timeout=" + timeout +
+            ", format='" + format + '\'' +
+            ", workers=" + workers +
+            ", writeConcern='" + writeConcern + '\'' +
+            ", ordered=" + ordered +
+            ", batchSize=" + batchSize +
             '}';
     }
 }
@@ -23,6 +23,12 @@ public class InitializerConfig {
 
     private String databaseName;
 
+    private Boolean noLock = false;
+
+    private Integer batchSize;
+
+    private String encoding;
+
     public InitializerConfig() {
     }
 
@@ -31,6 +37,11 @@ public class InitializerConfig {
         this.databaseName = databaseName;
     }
 
+    public InitializerConfig(final File[] scripts, final String databaseName, final Boolean noLock) {
+        this(scripts, databaseName);
+        this.noLock = noLock;
+    }
+
     public File[] getScripts() {
         return scripts;
     }
@@ -38,4 +49,27 @@ public class InitializerConfig {
     public String getDatabaseName() {
         return databaseName;
     }
+
+    /**
+     * Whether the scripts are evaluated without holding the global lock.
+     */
+    public Boolean getNoLock() {
+        return noLock;
+    }
+
+    /**
+     * The number of statements evaluated at a time. When set the scripts are
+     * streamed statement by statement instead of being read whole, so
+     * variables declared in one batch are not visible in the next.
+     */
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The encoding of the scripts, the platform encoding when not set.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
 }
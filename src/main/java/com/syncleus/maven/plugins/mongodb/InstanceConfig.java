@@ -0,0 +1,151 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.File;
+
+/**
+ * Configuration of one of several independent mongod instances started by a
+ * single execution. Every option left unset is inherited from the plugin
+ * configuration.
+ */
+public class InstanceConfig {
+    private String id;
+    private String version;
+    private Integer port;
+    private Boolean randomPort;
+    private File databaseDirectory;
+    private String bindIp;
+    private Boolean authEnabled;
+    private String replSet;
+    private Integer oplogSize;
+    private Integer syncDelay;
+    private String[] features;
+    private ImportDataConfig[] imports;
+    private GeneratorConfig[] generators;
+    private String defaultImportDatabase;
+    private InitializerConfig[] initalizations;
+    private ReplSetInitiateConfig replSetInitiate;
+
+    public InstanceConfig() {
+    }
+
+    public InstanceConfig(final String id, final String version, final Integer port, final Boolean randomPort, final File databaseDirectory, final ImportDataConfig[] imports, final InitializerConfig[] initalizations) {
+        this.id = id;
+        this.version = version;
+        this.port = port;
+        this.randomPort = randomPort;
+        this.databaseDirectory = databaseDirectory;
+        this.imports = imports;
+        this.initalizations = initalizations;
+    }
+
+    /**
+     * A copy of this instance which runs the given version instead, as part
+     * of a version matrix. The copy is identified as {@code <id>-<version>}
+     * and gets a port and a database directory of its own.
+     */
+    InstanceConfig forVersion(final String matrixVersion) {
+        final InstanceConfig copy = new InstanceConfig(id + "-" + matrixVersion, matrixVersion, null, Boolean.TRUE,
+            (databaseDirectory != null ? new File(databaseDirectory, matrixVersion) : null), imports, initalizations);
+        copy.bindIp = bindIp;
+        copy.authEnabled = authEnabled;
+        copy.replSet = replSet;
+        copy.oplogSize = oplogSize;
+        copy.syncDelay = syncDelay;
+        copy.features = features;
+        copy.generators = generators;
+        copy.defaultImportDatabase = defaultImportDatabase;
+        copy.replSetInitiate = replSetInitiate;
+        return copy;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public Boolean getRandomPort() {
+        return randomPort;
+    }
+
+    public File getDatabaseDirectory() {
+        return databaseDirectory;
+    }
+
+    public String getBindIp() {
+        return bindIp;
+    }
+
+    public Boolean getAuthEnabled() {
+        return authEnabled;
+    }
+
+    public String getReplSet() {
+        return replSet;
+    }
+
+    public Integer getOplogSize() {
+        return oplogSize;
+    }
+
+    public Integer getSyncDelay() {
+        return syncDelay;
+    }
+
+    public String[] getFeatures() {
+        return features;
+    }
+
+    public ImportDataConfig[] getImports() {
+        return imports;
+    }
+
+    public GeneratorConfig[] getGenerators() {
+        return generators;
+    }
+
+    public String getDefaultImportDatabase() {
+        return defaultImportDatabase;
+    }
+
+    public InitializerConfig[] getInitalizations() {
+        return initalizations;
+    }
+
+    public ReplSetInitiateConfig getReplSetInitiate() {
+        return replSetInitiate;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceConfig{" +
+            "id='" + id + '\'' +
+            ", version='" + version + '\'' +
+            ", port=" + port +
+            ", randomPort=" + randomPort +
+            ", databaseDirectory=" + databaseDirectory +
+            '}';
+    }
+}
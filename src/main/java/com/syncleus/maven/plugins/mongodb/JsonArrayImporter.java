@@ -0,0 +1,153 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports a single large JSON array, the format read by
+ * {@code mongoimport --jsonArray}, using several workers. The file is first
+ * scanned for document boundaries and cut into byte ranges of whole
+ * documents, each range is then parsed and written in batches by a worker.
+ */
+public class JsonArrayImporter {
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final int batchSize;
+    private final int workers;
+    private final Boolean ordered;
+
+    public JsonArrayImporter(final int batchSize, final int workers) {
+        this(batchSize, workers, null);
+    }
+
+    /**
+     * @param ordered whether each batch stops at the first failed write, or
+     *                null for unordered inserts and ordered upserts, batches
+     *                of different workers are never ordered.
+     */
+    public JsonArrayImporter(final int batchSize, final int workers, final Boolean ordered) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        if (workers <= 0)
+            throw new IllegalArgumentException("workers must be positive");
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Imports every document in the given file.
+     *
+     * @return the number of documents imported.
+     */
+    public long importFile(final File file, final MongoCollection<BsonDocument> collection, final boolean drop, final boolean upsert) throws IOException {
+        final List<long[]> chunks = split(file, workers * CHUNKS_PER_WORKER);
+        if (drop)
+            collection.drop();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, chunks.size())));
+        final AtomicLong imported = new AtomicLong();
+        final List<Future<?>> pending = new ArrayList<Future<?>>(chunks.size());
+        for (final long[] chunk : chunks) {
+            pending.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    imported.addAndGet(importChunk(file, chunk[0], chunk[1], collection, upsert));
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+
+        try {
+            for (final Future<?> future : pending)
+                future.get();
+        } catch (final ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException("Unable to import '" + file + "'", e.getCause());
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing '" + file + "'", e);
+        }
+        return imported.get();
+    }
+
+    /**
+     * Cuts the array into at most the given number of byte ranges of roughly
+     * equal size, each starting and ending on a document boundary.
+     *
+     * @return the start and end offset of every range.
+     */
+    static List<long[]> split(final File file, final int chunks) throws IOException {
+        final long targetSize = Math.max(1, file.length() / chunks);
+        final List<long[]> ranges = new ArrayList<long[]>(chunks);
+
+        final JsonArrayScanner scanner = JsonArrayScanner.open(file, false);
+        try {
+            long chunkStart = -1;
+            long chunkEnd = -1;
+            while (scanner.next()) {
+                if (chunkStart < 0)
+                    chunkStart = scanner.start();
+                chunkEnd = scanner.end();
+                if (chunkEnd - chunkStart >= targetSize) {
+                    ranges.add(new long[]{chunkStart, chunkEnd});
+                    chunkStart = -1;
+                }
+            }
+            if (chunkStart >= 0)
+                ranges.add(new long[]{chunkStart, chunkEnd});
+        } finally {
+            scanner.close();
+        }
+        return ranges;
+    }
+
+    private long importChunk(final File file, final long start, final long end, final MongoCollection<BsonDocument> collection, final boolean upsert) throws IOException {
+        final JsonArrayScanner scanner = new JsonArrayScanner(file, start, end, true);
+        try {
+            final List<BsonDocument> batch = new ArrayList<BsonDocument>(batchSize);
+            long imported = 0;
+            while (scanner.next()) {
+                batch.add(BsonDocument.parse(scanner.document()));
+                if (batch.size() >= batchSize) {
+                    imported += BsonImporter.write(collection, batch, upsert, ordered);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty())
+                imported += BsonImporter.write(collection, batch, upsert, ordered);
+            return imported;
+        } finally {
+            scanner.close();
+        }
+    }
+}
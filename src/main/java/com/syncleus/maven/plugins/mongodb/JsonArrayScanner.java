@@ -0,0 +1,164 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.*;
+
+/**
+ * Finds the documents of a JSON array in a stream of bytes without parsing
+ * them, by tracking nesting outside of strings. Structural characters are all
+ * ASCII and never occur inside a multi-byte UTF-8 sequence, so the bytes can
+ * be scanned directly. Scanning starts between elements of the array, either
+ * just after its opening bracket or at the start of any document, and ends at
+ * the closing bracket or at the given limit.
+ */
+class JsonArrayScanner {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final long limit;
+    private final ByteArrayOutputStream document;
+    private long position;
+    private long start;
+    private long end;
+
+    /**
+     * @param capture whether the bytes of each document are kept, see
+     *                {@link #document()}.
+     */
+    JsonArrayScanner(final File file, final long offset, final long limit, final boolean capture) throws IOException {
+        final FileInputStream stream = new FileInputStream(file);
+        stream.getChannel().position(offset);
+        this.input = new BufferedInputStream(stream, BUFFER_SIZE);
+        this.position = offset;
+        this.limit = limit;
+        this.document = (capture ? new ByteArrayOutputStream() : null);
+    }
+
+    /**
+     * Positions a scanner just after the opening bracket of the array in the
+     * given file.
+     */
+    static JsonArrayScanner open(final File file, final boolean capture) throws IOException {
+        final InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            long offset = 0;
+            int c;
+            while ((c = input.read()) != -1) {
+                offset++;
+                if (c == '[')
+                    return new JsonArrayScanner(file, offset, Long.MAX_VALUE, capture);
+                // skip whitespace and a UTF-8 byte order mark
+                if (!isWhitespace(c) && c != 0xEF && c != 0xBB && c != 0xBF)
+                    break;
+            }
+            throw new IOException("'" + file + "' does not contain a JSON array");
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Advances to the next document.
+     *
+     * @return false at the end of the array or at the limit.
+     */
+    boolean next() throws IOException {
+        int c;
+        do {
+            if (position >= limit)
+                return false;
+            c = read();
+            if (c == -1)
+                throw new EOFException("Unexpected end of the JSON array at offset " + position);
+            if (c == ']')
+                return false;
+        } while (isWhitespace(c) || c == ',');
+        if (c != '{')
+            throw new IOException("Expected a document in the JSON array at offset " + (position - 1));
+
+        start = position - 1;
+        if (document != null) {
+            document.reset();
+            document.write(c);
+        }
+
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+        while (depth > 0) {
+            c = read();
+            if (c == -1)
+                throw new EOFException("Unexpected end of the document starting at offset " + start);
+            if (document != null)
+                document.write(c);
+
+            if (inString) {
+                if (escaped)
+                    escaped = false;
+                else if (c == '\\')
+                    escaped = true;
+                else if (c == '"')
+                    inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        end = position;
+        return true;
+    }
+
+    /**
+     * The offset of the first byte of the current document.
+     */
+    long start() {
+        return start;
+    }
+
+    /**
+     * The offset just after the last byte of the current document.
+     */
+    long end() {
+        return end;
+    }
+
+    /**
+     * The current document as UTF-8 text, only available when captured.
+     */
+    String document() throws UnsupportedEncodingException {
+        return document.toString("UTF-8");
+    }
+
+    void close() throws IOException {
+        input.close();
+    }
+
+    private int read() throws IOException {
+        final int c = input.read();
+        if (c != -1)
+            position++;
+        return c;
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
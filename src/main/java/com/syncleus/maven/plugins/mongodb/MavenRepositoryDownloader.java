@@ -0,0 +1,167 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.distribution.ArchiveType;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.store.IDownloader;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves MongoDB distributions as Maven artifacts through Maven's own
+ * resolver, so the local repository, mirrors, proxies, server credentials,
+ * checksum policies and offline mode of the build all apply. Whatever is
+ * resolved is kept in the local repository so later builds need no network
+ * at all. When no repository has the distribution the fallback downloader,
+ * if any, is used.
+ *
+ * The distributions are expected at
+ * groupId:artifactId:version:classifier:extension where the classifier names
+ * the platform and architecture, such as linux-x86_64, and the extension is
+ * that of the archive, such as tgz.
+ */
+public class MavenRepositoryDownloader implements IDownloader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String groupId;
+    private final String artifactId;
+    private final ArtifactFactory artifactFactory;
+    private final ArtifactResolver artifactResolver;
+    private final ArtifactRepository localRepository;
+    private final List<ArtifactRepository> repositories;
+    private final IDownloader fallback;
+    private final Log log;
+
+    /**
+     * @param repositories the remote repositories searched in order.
+     * @param fallback used when no repository has the distribution, may be
+     *                 null.
+     */
+    public MavenRepositoryDownloader(final String groupId, final String artifactId, final ArtifactFactory artifactFactory,
+                                     final ArtifactResolver artifactResolver, final ArtifactRepository localRepository,
+                                     final List<ArtifactRepository> repositories, final IDownloader fallback, final Log log) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.artifactFactory = artifactFactory;
+        this.artifactResolver = artifactResolver;
+        this.localRepository = localRepository;
+        this.repositories = new ArrayList<ArtifactRepository>(repositories);
+        this.fallback = fallback;
+        this.log = log;
+    }
+
+    @Override
+    public String getDownloadUrl(final IDownloadConfig config, final Distribution distribution) {
+        return groupId + ":" + artifactId + ":" + distribution.getVersion().asInDownloadPath() + ":"
+            + classifier(distribution) + ":" + extension(config, distribution);
+    }
+
+    @Override
+    public File download(final IDownloadConfig config, final Distribution distribution) throws IOException {
+        final File artifact = resolve(config, distribution);
+        if (artifact == null) {
+            if (fallback == null)
+                throw new FileNotFoundException("MongoDB distribution " + getDownloadUrl(config, distribution)
+                    + " was not found in the local repository or any of " + urls());
+            log.info("MongoDB distribution " + getDownloadUrl(config, distribution) + " was not found in any repository, downloading "
+                + fallback.getDownloadUrl(config, distribution));
+            return fallback.download(config, distribution);
+        }
+
+        // the artifact store moves what it is given and extracts from its
+        // own copy, so it gets a copy and the local repository keeps the
+        // original.
+        final File copy = File.createTempFile("mongodb-distribution", "." + extension(config, distribution));
+        copy(new FileInputStream(artifact), copy);
+        return copy;
+    }
+
+    /**
+     * Resolves the distribution into the local repository.
+     *
+     * @return the distribution in the local repository, or null when no
+     * repository has it.
+     * @throws IOException when a repository has it but it could not be
+     * fetched, such as on a checksum mismatch or a refused login.
+     */
+    // the request based replacement was renamed between Maven 3 releases,
+    // this method is the same in all of them.
+    @SuppressWarnings("deprecation")
+    public File resolve(final IDownloadConfig config, final Distribution distribution) throws IOException {
+        final Artifact artifact = artifactFactory.createArtifactWithClassifier(groupId, artifactId,
+            distribution.getVersion().asInDownloadPath(), extension(config, distribution), classifier(distribution));
+        try {
+            artifactResolver.resolve(artifact, repositories, localRepository);
+        } catch (final ArtifactNotFoundException e) {
+            return null;
+        } catch (final ArtifactResolutionException e) {
+            throw new IOException("Unable to resolve MongoDB distribution " + getDownloadUrl(config, distribution) + ": " + e.getMessage(), e);
+        }
+        return artifact.getFile();
+    }
+
+    private List<String> urls() {
+        final List<String> urls = new ArrayList<String>();
+        for (final ArtifactRepository repository : repositories)
+            urls.add(repository.getUrl());
+        return urls;
+    }
+
+    static String classifier(final Distribution distribution) {
+        final String platform;
+        final Platform detected = distribution.getPlatform();
+        if (detected == Platform.OS_X)
+            platform = "osx";
+        else
+            platform = detected.name().toLowerCase();
+        return platform + "-" + (distribution.getBitsize() == BitSize.B64 ? "x86_64" : "i386");
+    }
+
+    private static String extension(final IDownloadConfig config, final Distribution distribution) {
+        final ArchiveType archiveType = config.getPackageResolver().getArchiveType(distribution);
+        return (archiveType == ArchiveType.TBZ2 ? "tar.bz2" : archiveType.name().toLowerCase());
+    }
+
+    private static void copy(final InputStream in, final File destination) throws IOException {
+        try {
+            final OutputStream out = new FileOutputStream(destination);
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0)
+                    out.write(buffer, 0, read);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
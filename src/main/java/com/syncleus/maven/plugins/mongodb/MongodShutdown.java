@@ -0,0 +1,185 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.process.distribution.Platform;
+import org.apache.maven.plugin.logging.Log;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Stops a mongod process according to a {@link ShutdownStrategy}.
+ */
+public class MongodShutdown {
+    private static final long KILL_TIMEOUT_MILLIS = 10000;
+
+    public enum ShutdownStrategy {
+        /**
+         * Lets flapdoodle stop the process, this is the historical behaviour.
+         */
+        STANDARD,
+        /**
+         * Sends the shutdown command and waits for the process to exit, it is
+         * killed if it does not exit within the timeout.
+         */
+        GRACEFUL,
+        /**
+         * Kills the process outright, only suitable for throwaway data
+         * directories.
+         */
+        FAST,
+        /**
+         * Performs a graceful shutdown in the background and returns
+         * immediately.
+         */
+        ASYNC
+    }
+
+    private final ShutdownStrategy strategy;
+    private final long timeoutMillis;
+    private final List<MongoCredential> credentials;
+    private final Log log;
+
+    public MongodShutdown(final ShutdownStrategy strategy, final long timeoutMillis, final Log log) {
+        this(strategy, timeoutMillis, Collections.<MongoCredential>emptyList(), log);
+    }
+
+    /**
+     * @param credentials the credentials the shutdown command is sent with,
+     *                    mongod only accepts it anonymously while it has no
+     *                    users.
+     */
+    public MongodShutdown(final ShutdownStrategy strategy, final long timeoutMillis, final List<MongoCredential> credentials, final Log log) {
+        this.strategy = strategy;
+        this.timeoutMillis = timeoutMillis;
+        this.credentials = credentials;
+        this.log = log;
+    }
+
+    public void shutdown(final MongodProcess mongod) throws InterruptedException {
+        switch (strategy) {
+            case STANDARD:
+                mongod.stop();
+                break;
+            case GRACEFUL:
+                stopGracefully(mongod);
+                break;
+            case FAST:
+                kill(mongod);
+                mongod.stop();
+                break;
+            case ASYNC:
+                stopInBackground(mongod);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected shutdown strategy encountered: " + strategy);
+        }
+    }
+
+    private void stopGracefully(final MongodProcess mongod) throws InterruptedException {
+        sendShutdownCommand(mongod);
+        if (!waitForExit(mongod, timeoutMillis)) {
+            log.warn("mongod did not exit within " + timeoutMillis + "ms of the shutdown command, killing it");
+            kill(mongod);
+        }
+        // the process is gone, this only releases flapdoodle's resources
+        mongod.stop();
+    }
+
+    private void stopInBackground(final MongodProcess mongod) {
+        // the reaper holds the process's monitor for the whole shutdown.
+        // flapdoodle's shutdown hook calls the synchronized stop(), so should
+        // the build finish first the hook waits until the reaper is done. The
+        // reaper is not a daemon either, so a JVM exiting without System.exit
+        // waits for it as well.
+        final Thread reaper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronized (mongod) {
+                        stopGracefully(mongod);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "mongod-reaper-" + mongod.getProcessId());
+        reaper.start();
+    }
+
+    private void sendShutdownCommand(final MongodProcess mongod) {
+        final int port = mongod.getConfig().net().getPort();
+        final int timeoutSecs = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis));
+        final MongoClient client = new MongoClient(new ServerAddress("localhost", port), credentials,
+            MongoClientOptions.builder().serverSelectionTimeout((int) Math.min(timeoutMillis, Integer.MAX_VALUE)).build());
+        try {
+            client.getDatabase("admin").runCommand(new Document("shutdown", 1).append("force", true).append("timeoutSecs", timeoutSecs));
+        } catch (final MongoException e) {
+            // a successful shutdown closes the connection before replying
+            log.debug("shutdown command ended with: " + e.getMessage());
+        } finally {
+            client.close();
+        }
+    }
+
+    static boolean waitForExit(final MongodProcess mongod, final long timeoutMillis) throws InterruptedException {
+        final ExecutorService waiter = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> exit = waiter.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws InterruptedException {
+                    return mongod.waitFor();
+                }
+            });
+            exit.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final TimeoutException e) {
+            return false;
+        } catch (final ExecutionException e) {
+            return !mongod.isProcessRunning();
+        } finally {
+            waiter.shutdownNow();
+        }
+    }
+
+    static void kill(final MongodProcess mongod) throws InterruptedException {
+        final String pid = String.valueOf(mongod.getProcessId());
+        final ProcessBuilder kill;
+        if (Platform.detect() == Platform.Windows)
+            kill = new ProcessBuilder("taskkill", "/F", "/PID", pid);
+        else
+            kill = new ProcessBuilder("kill", "-9", pid);
+
+        try {
+            kill.redirectErrorStream(true).start().waitFor();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Unable to kill mongod process " + pid, e);
+        }
+        if (!waitForExit(mongod, KILL_TIMEOUT_MILLIS))
+            throw new IllegalStateException("mongod process " + pid + " is still running after being killed");
+    }
+}
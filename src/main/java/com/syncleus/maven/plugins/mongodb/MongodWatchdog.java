@@ -0,0 +1,215 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.syncleus.maven.plugins.mongodb.log.LogTail;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Watches a mongod process on a background thread once it has started. The
+ * server is considered to have crashed when the process exits or when it
+ * misses a number of consecutive pings. A crash is logged with the tail of
+ * the mongod output and appended to a failure marker file, so a dead server
+ * is noticed straight away rather than by every remaining test timing out.
+ * The server may then be restarted a limited number of times.
+ */
+public class MongodWatchdog {
+    /**
+     * The server being watched.
+     */
+    public interface Target {
+        boolean isRunning();
+
+        /**
+         * @return false when the server did not answer.
+         */
+        boolean ping();
+
+        /**
+         * Replaces the crashed server with a freshly started one.
+         */
+        void restart() throws Exception;
+
+        void close();
+    }
+
+    private final String name;
+    private final Target target;
+    private final long intervalMillis;
+    private final int maxMissedPings;
+    private final int maxRestarts;
+    private final LogTail tail;
+    private final File marker;
+    private final Log log;
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+    private final Object restarting = new Object();
+
+    private int missedPings;
+    private int restarts;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    /**
+     * @param tail the output of the server, may be null.
+     * @param marker the file crashes are appended to, may be null.
+     */
+    public MongodWatchdog(final String name, final Target target, final long intervalMillis, final int maxMissedPings,
+                          final int maxRestarts, final LogTail tail, final File marker, final Log log) {
+        this.name = name;
+        this.target = target;
+        this.intervalMillis = intervalMillis;
+        this.maxMissedPings = Math.max(1, maxMissedPings);
+        this.maxRestarts = maxRestarts;
+        this.tail = tail;
+        this.marker = marker;
+        this.log = log;
+    }
+
+    public synchronized void start() {
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!stopped) {
+                        Thread.sleep(intervalMillis);
+                        if (stopped || !check())
+                            break;
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "mongod-watchdog-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching, waiting for a restart in progress to finish so the
+     * server is not stopped from under it. No restart begins once stopped.
+     */
+    public synchronized void stop() throws InterruptedException {
+        stopped = true;
+        synchronized (restarting) {
+            // a restart in progress has now finished
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+            thread = null;
+        }
+        target.close();
+    }
+
+    /**
+     * @return the crashes seen so far, empty when the server never failed.
+     */
+    public List<String> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<String>(failures);
+        }
+    }
+
+    /**
+     * Checks the server once, restarting it when it crashed and restarts
+     * remain.
+     *
+     * @return false when the server is down for good and watching can stop.
+     */
+    boolean check() {
+        final String failure;
+        if (!target.isRunning()) {
+            failure = "the mongod process exited";
+        } else if (target.ping()) {
+            missedPings = 0;
+            return true;
+        } else if (++missedPings >= maxMissedPings) {
+            failure = "mongod missed " + missedPings + " consecutive pings";
+        } else {
+            log.warn("mongod '" + name + "' did not answer a ping");
+            return true;
+        }
+
+        missedPings = 0;
+        crashed(failure);
+        synchronized (restarting) {
+            if (stopped || restarts >= maxRestarts)
+                return false;
+
+            restarts++;
+            log.warn("Restarting mongod '" + name + "', restart " + restarts + " of " + maxRestarts);
+            try {
+                target.restart();
+                log.info("Restarted mongod '" + name + "'");
+                return true;
+            } catch (final Exception e) {
+                crashed("restarting mongod failed: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void crashed(final String failure) {
+        final String message = "mongod '" + name + "' crashed: " + failure;
+        failures.add(message);
+
+        final List<String> lines = (tail != null ? tail.getLines() : Collections.<String>emptyList());
+        log.error(message);
+        if (!lines.isEmpty()) {
+            log.error("Last " + lines.size() + " line(s) of mongod output:");
+            for (final String line : lines)
+                log.error("  " + line);
+        }
+
+        if (marker != null)
+            writeMarker(message, lines);
+    }
+
+    private void writeMarker(final String message, final List<String> lines) {
+        final File parent = marker.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            log.warn("Unable to create directory " + parent);
+            return;
+        }
+
+        // instances share the marker
+        synchronized (MongodWatchdog.class) {
+            try {
+                final Writer writer = new OutputStreamWriter(new FileOutputStream(marker, true), "UTF-8");
+                try {
+                    writer.write(new Date() + " " + message + "\n");
+                    for (final String line : lines)
+                        writer.write("  " + line + "\n");
+                } finally {
+                    writer.close();
+                }
+            } catch (final IOException e) {
+                log.warn("Unable to write the failure marker " + marker + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * When invoked, this goal makes sure the MongoDB distributions the start goal
+ * needs, for the single instance or every configured instance, are in the
+ * artifact store without starting anything. It takes the same configuration
+ * as the start goal and is intended to warm agents, or to fill the local
+ * repository while online when distributionSource is repository.
+ */
+@Mojo(name = "prefetch", defaultPhase = LifecyclePhase.INITIALIZE)
+public class PrefetchMojo extends StartMongoMojo {
+
+    @Override
+    public void start() throws MojoExecutionException, MojoFailureException {
+        prefetch();
+    }
+}
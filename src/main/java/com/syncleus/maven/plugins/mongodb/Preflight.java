@@ -0,0 +1,197 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks, before anything is downloaded or started, that the machine can run
+ * mongod with the given settings: enough free space for the data and the
+ * distribution, enough memory for the configured cache and a high enough
+ * open file limit. A failure that would otherwise only show up as a timeout
+ * after boot is reported straight away with its reason.
+ */
+public class Preflight {
+    public enum Mode {
+        OFF, WARN, FAIL, SCALE
+    }
+
+    public static final long MINIMUM_OPEN_FILES = 256;
+    private static final long MEGABYTE = 1024L * 1024;
+    private static final long GIGABYTE = 1024L * MEGABYTE;
+
+    /**
+     * The facts about the machine the checks are based on, a negative value
+     * means the fact could not be determined and the check is skipped.
+     */
+    public interface Resources {
+        long usableSpace(File directory);
+
+        long availableMemory();
+
+        long openFileLimit();
+    }
+
+    private final Resources resources;
+    private final long minimumFreeSpaceMegabytes;
+
+    private final List<String> problems = new ArrayList<String>();
+    private Integer cacheSizeGB;
+
+    public Preflight(final long minimumFreeSpaceMegabytes) {
+        this(new SystemResources(), minimumFreeSpaceMegabytes);
+    }
+
+    Preflight(final Resources resources, final long minimumFreeSpaceMegabytes) {
+        this.resources = resources;
+        this.minimumFreeSpaceMegabytes = minimumFreeSpaceMegabytes;
+    }
+
+    /**
+     * @param directory the directory to check, or the first of its parents
+     *                  that exists when it does not exist yet.
+     * @param extraMegabytes space needed on top of the minimum, such as the
+     *                       oplog.
+     */
+    public Preflight checkFreeSpace(final String purpose, final File directory, final long extraMegabytes) {
+        File existing = directory.getAbsoluteFile();
+        while (existing != null && !existing.exists())
+            existing = existing.getParentFile();
+        if (existing == null)
+            return this;
+
+        final long usable = resources.usableSpace(existing);
+        final long required = (minimumFreeSpaceMegabytes + extraMegabytes) * MEGABYTE;
+        if (usable >= 0 && usable < required)
+            problems.add("Only " + usable / MEGABYTE + "MB free for the " + purpose + " in " + existing + ", "
+                + required / MEGABYTE + "MB are required");
+        return this;
+    }
+
+    /**
+     * Checks the WiredTiger cache fits in the available memory. When scaling
+     * the cache is shrunk to half the available memory instead, see
+     * {@link #getCacheSizeGB()}.
+     */
+    public Preflight checkCacheSize(final Integer cacheSizeGB, final boolean scale) {
+        this.cacheSizeGB = cacheSizeGB;
+        if (cacheSizeGB == null)
+            return this;
+
+        final long available = resources.availableMemory();
+        if (available < 0 || cacheSizeGB * GIGABYTE <= available)
+            return this;
+
+        final int scaled = (int) (available / 2 / GIGABYTE);
+        if (scale && scaled >= 1)
+            this.cacheSizeGB = scaled;
+        else
+            problems.add("The " + cacheSizeGB + "GB WiredTiger cache does not fit in the " + available / MEGABYTE
+                + "MB of available memory");
+        return this;
+    }
+
+    public Preflight checkOpenFileLimit() {
+        final long limit = resources.openFileLimit();
+        if (limit >= 0 && limit < MINIMUM_OPEN_FILES)
+            problems.add("The open file limit is " + limit + ", mongod needs at least " + MINIMUM_OPEN_FILES
+                + ", raise it with ulimit -n");
+        return this;
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * The cache size to use, scaled down when it did not fit.
+     */
+    public Integer getCacheSizeGB() {
+        return cacheSizeGB;
+    }
+
+    static class SystemResources implements Resources {
+        private static final Pattern MEMINFO_AVAILABLE = Pattern.compile("^MemAvailable:\\s+(\\d+) kB$");
+        private static final Pattern LIMITS_OPEN_FILES = Pattern.compile("^Max open files\\s+(\\S+)\\s+.*$");
+
+        @Override
+        public long usableSpace(final File directory) {
+            final long usable = directory.getUsableSpace();
+            // 0 is also returned when the space can not be determined
+            return (usable > 0 ? usable : -1);
+        }
+
+        @Override
+        public long availableMemory() {
+            final String available = find(new File("/proc/meminfo"), MEMINFO_AVAILABLE);
+            if (available != null)
+                return Long.parseLong(available) * 1024;
+            return operatingSystemAttribute("getFreePhysicalMemorySize");
+        }
+
+        @Override
+        public long openFileLimit() {
+            final String limit = find(new File("/proc/self/limits"), LIMITS_OPEN_FILES);
+            if (limit != null)
+                return ("unlimited".equals(limit) ? Long.MAX_VALUE : Long.parseLong(limit));
+            return operatingSystemAttribute("getMaxFileDescriptorCount");
+        }
+
+        private static String find(final File file, final Pattern pattern) {
+            if (!file.canRead())
+                return null;
+            try {
+                final BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final Matcher matcher = pattern.matcher(line);
+                        if (matcher.matches())
+                            return matcher.group(1);
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (final IOException e) {
+                // treated as unknown
+            }
+            return null;
+        }
+
+        private static long operatingSystemAttribute(final String getter) {
+            // the com.sun.management extensions are not available on every JVM
+            final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+            try {
+                final Method method = operatingSystem.getClass().getMethod(getter);
+                method.setAccessible(true);
+                return ((Number) method.invoke(operatingSystem)).longValue();
+            } catch (final Exception e) {
+                return -1;
+            }
+        }
+    }
+}
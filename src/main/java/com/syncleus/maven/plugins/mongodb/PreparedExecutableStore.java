@@ -0,0 +1,214 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Extracts an executable once and hands the same copy to everyone asking
+ * for it, rather than extracting it again for every process. Without a
+ * directory the copy lives as long as the JVM, so it is shared by every
+ * execution in a Maven session. With a directory it is kept there for every
+ * later build on the machine, builds running at the same time coordinate
+ * through a lock file and only use a copy once it is complete.
+ * <p>
+ * The store owns every file set it hands out. {@link #removeFileSet} does
+ * nothing, callers need not release what they were given, and only
+ * {@link #close()} removes the copies of this JVM.
+ */
+public class PreparedExecutableStore implements IArtifactStore {
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // a FileLock is held by the whole JVM, so stores of one JVM sharing a
+    // directory must not try to take it at the same time
+    private static final Map<String, Object> JVM_LOCKS = new HashMap<String, Object>();
+
+    private final IArtifactStore delegate;
+    private final File directory;
+    private final String executableName;
+    private final Map<Distribution, IExtractedFileSet> prepared = new HashMap<Distribution, IExtractedFileSet>();
+
+    /**
+     * @param delegate the store extracting the executable, its file sets are
+     *                 never removed while in use.
+     * @param directory where to keep extracted executables across builds, or
+     *                  null to keep them for this JVM only.
+     */
+    public PreparedExecutableStore(final IArtifactStore delegate, final File directory, final String executableName) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.executableName = executableName;
+    }
+
+    @Override
+    public synchronized boolean checkDistribution(final Distribution distribution) throws IOException {
+        if (prepared.containsKey(distribution))
+            return true;
+        if (directory != null && new File(target(distribution), COMPLETE_MARKER).isFile())
+            return true;
+        return delegate.checkDistribution(distribution);
+    }
+
+    @Override
+    public synchronized IExtractedFileSet extractFileSet(final Distribution distribution) throws IOException {
+        IExtractedFileSet fileSet = prepared.get(distribution);
+        if (fileSet == null) {
+            fileSet = (directory == null ? delegate.extractFileSet(distribution) : extractPersistent(distribution));
+            prepared.put(distribution, fileSet);
+        }
+        return fileSet;
+    }
+
+    @Override
+    public void removeFileSet(final Distribution distribution, final IExtractedFileSet files) {
+        // owned by the store, kept for everyone who asks next
+    }
+
+    /**
+     * Removes what this JVM extracted, the persistent copies are kept.
+     */
+    public synchronized void close() {
+        if (directory == null) {
+            for (final Map.Entry<Distribution, IExtractedFileSet> entry : prepared.entrySet())
+                delegate.removeFileSet(entry.getKey(), entry.getValue());
+        }
+        prepared.clear();
+    }
+
+    private IExtractedFileSet extractPersistent(final Distribution distribution) throws IOException {
+        final File target = target(distribution);
+        if (!new File(target, COMPLETE_MARKER).isFile()) {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Unable to create directory " + directory);
+
+            final File lockPath = new File(directory, target.getName() + ".lock");
+            synchronized (jvmLock(lockPath)) {
+                final RandomAccessFile lockFile = new RandomAccessFile(lockPath, "rw");
+                try {
+                    final FileChannel channel = lockFile.getChannel();
+                    final FileLock lock = channel.lock();
+                    try {
+                        // another build may have finished while this one waited
+                        if (!new File(target, COMPLETE_MARKER).isFile())
+                            extractInto(distribution, target);
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    lockFile.close();
+                }
+            }
+        }
+        return fileSet(target);
+    }
+
+    private static Object jvmLock(final File lockPath) throws IOException {
+        final String path = lockPath.getCanonicalPath();
+        synchronized (JVM_LOCKS) {
+            Object lock = JVM_LOCKS.get(path);
+            if (lock == null) {
+                lock = new Object();
+                JVM_LOCKS.put(path, lock);
+            }
+            return lock;
+        }
+    }
+
+    private void extractInto(final Distribution distribution, final File target) throws IOException {
+        if (!delegate.checkDistribution(distribution))
+            throw new IOException("Unable to provide " + executableName + " from " + distribution);
+
+        final IExtractedFileSet extracted = delegate.extractFileSet(distribution);
+        try {
+            if (target.isDirectory()) {
+                // left over from a build which did not complete
+                final File[] stale = target.listFiles();
+                if (stale != null) {
+                    for (final File file : stale) {
+                        if (!file.delete())
+                            throw new IOException("Unable to delete " + file);
+                    }
+                }
+            } else if (!target.mkdirs()) {
+                throw new IOException("Unable to create directory " + target);
+            }
+
+            final File executable = new File(target, executableName);
+            copy(extracted.executable(), executable);
+            if (!executable.setExecutable(true))
+                throw new IOException("Unable to make " + executable + " executable");
+            for (final File library : extracted.files(FileType.Library))
+                copy(library, new File(target, library.getName()));
+
+            if (!new File(target, COMPLETE_MARKER).createNewFile())
+                throw new IOException("Unable to mark " + target + " as complete");
+        } finally {
+            delegate.removeFileSet(distribution, extracted);
+        }
+    }
+
+    private IExtractedFileSet fileSet(final File target) {
+        final File executable = new File(target, executableName);
+        final ImmutableExtractedFileSet.Builder builder = ImmutableExtractedFileSet.builder(target).executable(executable);
+        final File[] files = target.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (!file.equals(executable) && !file.getName().equals(COMPLETE_MARKER))
+                    builder.file(FileType.Library, file);
+            }
+        }
+        return builder.build();
+    }
+
+    private File target(final Distribution distribution) {
+        return new File(directory, executableName + "-" + distribution.getVersion().asInDownloadPath()
+            + "-" + distribution.getPlatform().name().toLowerCase() + "-" + distribution.getBitsize().name().toLowerCase());
+    }
+
+    private static void copy(final File source, final File destination) throws IOException {
+        final InputStream in = new FileInputStream(source);
+        try {
+            final OutputStream out = new FileOutputStream(destination);
+            try {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) >= 0)
+                    out.write(buffer, 0, read);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
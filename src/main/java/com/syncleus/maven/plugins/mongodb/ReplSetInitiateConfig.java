@@ -16,17 +16,33 @@
  */
 package com.syncleus.maven.plugins.mongodb;
 
-import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
-import org.apache.maven.plugins.annotations.Parameter;
+import com.mongodb.MongoClient;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ReplSetInitiateConfig {
+    private static final ReplSetInitiateConfigEncoder ENCODER = new ReplSetInitiateConfigEncoder();
+    private static final int MAXIMUM_MEMBER_ID = 255;
+    private static final int MAXIMUM_PRIORITY = 1000;
+
     private String _id;
     private Integer version;
     private MembersConfig[] members;
     private SettingsConfig settings;
 
+    private BsonDocument command;
+
     public ReplSetInitiateConfig() {
     }
 
@@ -53,21 +69,88 @@ public class ReplSetInitiateConfig {
         return settings;
     }
 
+    /**
+     * The configuration as the replSetInitiate command expects it. It is
+     * encoded once and shared, callers must not modify it.
+     */
+    public synchronized BsonDocument toBsonDocument() {
+        if (command == null) {
+            final BsonDocument document = new BsonDocument();
+            ENCODER.encode(new BsonDocumentWriter(document), this, EncoderContext.builder().build());
+            command = document;
+        }
+        return command;
+    }
+
+    /**
+     * @deprecated use {@link #toBsonDocument()}.
+     */
+    @Deprecated
     public BasicDBObject makeCommand() {
-        final BasicDBObject cmd = new BasicDBObject();
-        if( _id != null && !_id.isEmpty())
-            cmd.put("_id", _id);
-        if(version != null)
-            cmd.put("version", version);
-        if( members != null && members.length > 0) {
-            final BasicDBList dbMembers = new BasicDBList();
-            for(final MembersConfig member : members )
-                dbMembers.add(member.makeCommand());
-            cmd.put("members", dbMembers);
-        }
-        if(settings != null)
-            cmd.put("settings", settings.makeCommand());
-        return cmd;
+        return toDBObject(toBsonDocument());
+    }
+
+    private static BasicDBObject toDBObject(final BsonDocument document) {
+        return MongoClient.getDefaultCodecRegistry().get(BasicDBObject.class).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    /**
+     * Checks the configuration for mistakes the server would only report
+     * once it is running.
+     *
+     * @return a description of every problem found, empty when there are
+     * none.
+     */
+    public List<String> validate() {
+        final List<String> problems = new ArrayList<String>();
+        if (members == null || members.length == 0) {
+            problems.add("replSetInitiate requires at least one member");
+            return problems;
+        }
+
+        final Set<Integer> ids = new HashSet<Integer>();
+        final Set<String> hosts = new HashSet<String>();
+        for (final MembersConfig member : members) {
+            final String name = (member.getHost() == null ? "member " + member.get_id() : member.getHost());
+            if (member.get_id() == null)
+                problems.add(name + " has no _id");
+            else if (member.get_id() < 0 || member.get_id() > MAXIMUM_MEMBER_ID)
+                problems.add(name + " has an _id outside 0 to " + MAXIMUM_MEMBER_ID + ": " + member.get_id());
+            else if (!ids.add(member.get_id()))
+                problems.add("the _id " + member.get_id() + " is used by more than one member");
+
+            if (member.getHost() == null || member.getHost().trim().isEmpty())
+                problems.add(name + " has no host");
+            else if (!hosts.add(member.getHost().trim().toLowerCase()))
+                problems.add("the host " + member.getHost() + " is used by more than one member");
+
+            final Integer priority = member.getPriority();
+            if (priority != null && (priority < 0 || priority > MAXIMUM_PRIORITY))
+                problems.add(name + " has a priority outside 0 to " + MAXIMUM_PRIORITY + ": " + priority);
+            if (Boolean.TRUE.equals(member.getArbiterOnly()) && priority != null && priority != 0)
+                problems.add(name + " is an arbiter, its priority must be 0");
+            if (Boolean.TRUE.equals(member.getHidden()) && (priority == null || priority != 0))
+                problems.add(name + " is hidden, its priority must be 0");
+            if (member.getVotes() != null && member.getVotes() != 0 && member.getVotes() != 1)
+                problems.add(name + " has " + member.getVotes() + " votes, only 0 or 1 is allowed");
+        }
+
+        if (settings != null && settings.getGetLastErrorModes() != null) {
+            for (final SettingsConfig.GetLastErrorModesConfig mode : settings.getGetLastErrorModes()) {
+                if (mode.getWriteConcern() == null || mode.getWriteConcern().trim().isEmpty()) {
+                    problems.add("a getLastErrorMode has no writeConcern name");
+                    continue;
+                }
+                if (mode.getTags() == null)
+                    continue;
+                for (final Map.Entry<String, String> tag : mode.getTags().entrySet()) {
+                    if (tag.getValue() == null || !tag.getValue().trim().matches("[1-9][0-9]{0,8}"))
+                        problems.add("the getLastErrorMode " + mode.getWriteConcern() + " requires a positive count for the tag "
+                            + tag.getKey() + ": \"" + tag.getValue() + "\"");
+                }
+            }
+        }
+        return problems;
     }
 
     public static class MembersConfig {
@@ -132,25 +215,15 @@ public class ReplSetInitiateConfig {
             return votes;
         }
 
+        /**
+         * @deprecated members are encoded as part of
+         * {@link ReplSetInitiateConfig#toBsonDocument()}.
+         */
+        @Deprecated
         public BasicDBObject makeCommand() {
-            final BasicDBObject cmd = new BasicDBObject();
-            if(_id != null)
-                cmd.put("_id", _id);
-            if(host != null && !host.isEmpty())
-                cmd.put("host", host);
-            if(arbiterOnly != null)
-                cmd.put("arbiterOnly", arbiterOnly);
-            if(hidden != null)
-                cmd.put("hidden", arbiterOnly);
-            if(priority != null)
-                cmd.put("priority", priority);
-            if( tags != null && tags.size() > 0)
-                cmd.put("tags", new BasicDBObject(tags));
-            if(slaveDelay != null)
-                cmd.put("slaveDelay", slaveDelay);
-            if(votes != null)
-                cmd.put("votes", votes);
-            return cmd;
+            final BsonDocument document = new BsonDocument();
+            ReplSetInitiateConfigEncoder.encodeMember(new BsonDocumentWriter(document), this);
+            return toDBObject(document);
         }
     }
 
@@ -182,20 +255,15 @@ public class ReplSetInitiateConfig {
             return getLastErrorModes;
         }
 
+        /**
+         * @deprecated settings are encoded as part of
+         * {@link ReplSetInitiateConfig#toBsonDocument()}.
+         */
+        @Deprecated
         public BasicDBObject makeCommand() {
-            final BasicDBObject cmd = new BasicDBObject();
-            if(chainingAllowed != null)
-                cmd.put("chainingAllowed", chainingAllowed);
-            if(heartbeatTimeoutSecs != null)
-                cmd.put("heartbeatTimeoutSecs", heartbeatTimeoutSecs);
-            if(getLastErrorModes != null && getLastErrorModes.length > 0) {
-                final BasicDBObject dbGetLastErrorModes = new BasicDBObject();
-                for( final GetLastErrorModesConfig getLastErrorMode : getLastErrorModes) {
-                    getLastErrorMode.makeCommand(dbGetLastErrorModes);
-                }
-                cmd.put("getLastErrorModes", dbGetLastErrorModes);
-            }
-            return cmd;
+            final BsonDocument document = new BsonDocument();
+            ReplSetInitiateConfigEncoder.encodeSettings(new BsonDocumentWriter(document), this);
+            return toDBObject(document);
         }
 
         public static class GetLastErrorModesConfig {
@@ -218,14 +286,15 @@ public class ReplSetInitiateConfig {
                 return tags;
             }
 
+            /**
+             * @deprecated modes are encoded as part of
+             * {@link ReplSetInitiateConfig#toBsonDocument()}.
+             */
+            @Deprecated
             public void makeCommand(final BasicDBObject cmd) {
-                if( tags != null && !tags.isEmpty()) {
-                    final BasicDBObject dbTags = new BasicDBObject();
-                    dbTags.putAll(tags);
-                    cmd.put(writeConcern, dbTags);
-                }
-                else
-                    cmd.put(writeConcern, new BasicDBObject());
+                final BsonDocument document = new BsonDocument();
+                ReplSetInitiateConfigEncoder.encodeGetLastErrorMode(new BsonDocumentWriter(document), this);
+                cmd.put(writeConcern, toDBObject(document));
             }
         }
     }
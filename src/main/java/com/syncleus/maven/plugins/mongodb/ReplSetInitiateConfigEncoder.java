@@ -0,0 +1,113 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.MembersConfig;
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.SettingsConfig;
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.SettingsConfig.GetLastErrorModesConfig;
+import org.bson.BsonWriter;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+
+import java.util.Map;
+
+/**
+ * Writes a replica set configuration straight to BSON in the shape the
+ * replSetInitiate and replSetReconfig commands expect, leaving out every
+ * option that was not configured.
+ */
+public class ReplSetInitiateConfigEncoder implements Encoder<ReplSetInitiateConfig> {
+    @Override
+    public void encode(final BsonWriter writer, final ReplSetInitiateConfig config, final EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (config.get_id() != null && !config.get_id().isEmpty())
+            writer.writeString("_id", config.get_id());
+        if (config.getVersion() != null)
+            writer.writeInt32("version", config.getVersion());
+        if (config.getMembers() != null && config.getMembers().length > 0) {
+            writer.writeStartArray("members");
+            for (final MembersConfig member : config.getMembers())
+                encodeMember(writer, member);
+            writer.writeEndArray();
+        }
+        if (config.getSettings() != null) {
+            writer.writeName("settings");
+            encodeSettings(writer, config.getSettings());
+        }
+        writer.writeEndDocument();
+    }
+
+    static void encodeMember(final BsonWriter writer, final MembersConfig member) {
+        writer.writeStartDocument();
+        if (member.get_id() != null)
+            writer.writeInt32("_id", member.get_id());
+        if (member.getHost() != null && !member.getHost().isEmpty())
+            writer.writeString("host", member.getHost());
+        if (member.getArbiterOnly() != null)
+            writer.writeBoolean("arbiterOnly", member.getArbiterOnly());
+        if (member.getBuildIndexes() != null)
+            writer.writeBoolean("buildIndexes", member.getBuildIndexes());
+        if (member.getHidden() != null)
+            writer.writeBoolean("hidden", member.getHidden());
+        if (member.getPriority() != null)
+            writer.writeInt32("priority", member.getPriority());
+        if (member.getTags() != null && !member.getTags().isEmpty()) {
+            writer.writeStartDocument("tags");
+            for (final Map.Entry<String, String> tag : member.getTags().entrySet())
+                writer.writeString(tag.getKey(), tag.getValue());
+            writer.writeEndDocument();
+        }
+        if (member.getSlaveDelay() != null)
+            writer.writeInt32("slaveDelay", member.getSlaveDelay());
+        if (member.getVotes() != null)
+            writer.writeInt32("votes", member.getVotes());
+        writer.writeEndDocument();
+    }
+
+    static void encodeSettings(final BsonWriter writer, final SettingsConfig settings) {
+        writer.writeStartDocument();
+        if (settings.getChainingAllowed() != null)
+            writer.writeBoolean("chainingAllowed", settings.getChainingAllowed());
+        if (settings.getHeartbeatTimeoutSecs() != null)
+            writer.writeInt32("heartbeatTimeoutSecs", settings.getHeartbeatTimeoutSecs());
+        if (settings.getGetLastErrorModes() != null && settings.getGetLastErrorModes().length > 0) {
+            writer.writeStartDocument("getLastErrorModes");
+            for (final GetLastErrorModesConfig mode : settings.getGetLastErrorModes()) {
+                writer.writeName(mode.getWriteConcern());
+                encodeGetLastErrorMode(writer, mode);
+            }
+            writer.writeEndDocument();
+        }
+        writer.writeEndDocument();
+    }
+
+    static void encodeGetLastErrorMode(final BsonWriter writer, final GetLastErrorModesConfig mode) {
+        writer.writeStartDocument();
+        if (mode.getTags() != null) {
+            // a mode counts the distinct values of each tag, the server only
+            // accepts those counts as numbers.
+            for (final Map.Entry<String, String> tag : mode.getTags().entrySet())
+                writer.writeInt32(tag.getKey(), Integer.parseInt(tag.getValue().trim()));
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<ReplSetInitiateConfig> getEncoderClass() {
+        return ReplSetInitiateConfig.class;
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings a replica set into the configured state and waits until it can be
+ * used. A fresh set is initiated, a set found in a reused database directory
+ * is reconfigured when its configuration differs, and in either case the
+ * initiator waits until a primary is elected and every other member is a
+ * secondary or an arbiter, then verifies the applied configuration.
+ */
+public class ReplicaSetInitiator {
+    private enum State {
+        CHECK, INITIATE, RECONFIGURE, AWAIT, VERIFY, DONE
+    }
+
+    private static final int PRIMARY = 1;
+    private static final int SECONDARY = 2;
+    private static final int ARBITER = 7;
+    private static final int NOT_YET_INITIALIZED = 94;
+    private static final int COMMAND_NOT_FOUND = 59;
+    private static final long INITIAL_BACKOFF_MILLIS = 20;
+    private static final long MAX_BACKOFF_MILLIS = 500;
+
+    private final MongoClient mongoClient;
+    private final long timeoutMillis;
+    private final Log log;
+
+    public ReplicaSetInitiator(final MongoClient mongoClient, final long timeoutMillis, final Log log) {
+        this.mongoClient = mongoClient;
+        this.timeoutMillis = timeoutMillis;
+        this.log = log;
+    }
+
+    public void initiate(final BsonDocument config) throws MojoExecutionException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        BsonDocument applied = null;
+        State state = State.CHECK;
+        while (state != State.DONE) {
+            switch (state) {
+                case CHECK:
+                    applied = appliedConfig();
+                    if (applied == null)
+                        state = State.INITIATE;
+                    else if (matches(config, applied))
+                        state = State.AWAIT;
+                    else
+                        state = State.RECONFIGURE;
+                    break;
+                case INITIATE:
+                    log.info("Initiating replica set: " + config.toJson());
+                    admin().runCommand(new BsonDocument("replSetInitiate", config));
+                    state = State.AWAIT;
+                    break;
+                case RECONFIGURE:
+                    // a reconfiguration has to go through the primary of the
+                    // existing set.
+                    awaitConvergence(deadline);
+                    final BsonDocument reconfig = new BsonDocument();
+                    reconfig.putAll(config);
+                    reconfig.put("version", new BsonInt32(version(applied) + 1));
+                    log.info("Reconfiguring replica set: " + reconfig.toJson());
+                    admin().runCommand(new BsonDocument("replSetReconfig", reconfig));
+                    state = State.AWAIT;
+                    break;
+                case AWAIT:
+                    awaitConvergence(deadline);
+                    state = State.VERIFY;
+                    break;
+                case VERIFY:
+                    applied = appliedConfig();
+                    if (applied == null || !matches(config, applied))
+                        throw new MojoExecutionException("The applied replica set configuration " + (applied == null ? "is missing" : applied.toJson())
+                            + " does not match the configured " + config.toJson());
+                    state = State.DONE;
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+        log.info("Replica set is ready");
+    }
+
+    private void awaitConvergence(final long deadline) throws MojoExecutionException, InterruptedException {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        String lastStatus = "no status";
+        while (true) {
+            try {
+                final BsonDocument status = admin().runCommand(new BsonDocument("replSetGetStatus", new BsonInt32(1)), BsonDocument.class);
+                if (isConverged(status))
+                    return;
+                lastStatus = summary(status);
+            } catch (final MongoCommandException e) {
+                // the set is still loading its configuration
+                lastStatus = e.getErrorMessage();
+            }
+
+            if (System.currentTimeMillis() + backoff > deadline)
+                throw new MojoExecutionException("The replica set did not converge within " + timeoutMillis + "ms: " + lastStatus);
+            TimeUnit.MILLISECONDS.sleep(backoff);
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    /**
+     * @return the configuration the set runs with, or null when it has not
+     * been initiated.
+     */
+    private BsonDocument appliedConfig() {
+        try {
+            return admin().runCommand(new BsonDocument("replSetGetConfig", new BsonInt32(1)), BsonDocument.class).getDocument("config");
+        } catch (final MongoCommandException e) {
+            if (isNotYetInitialized(e))
+                return null;
+            if (e.getErrorCode() != COMMAND_NOT_FOUND)
+                throw e;
+        }
+        // before 3.0 the configuration can only be read directly
+        return mongoClient.getDatabase("local").getCollection("system.replset", BsonDocument.class).find().first();
+    }
+
+    private MongoDatabase admin() {
+        return mongoClient.getDatabase("admin");
+    }
+
+    private static boolean isNotYetInitialized(final MongoCommandException e) {
+        return e.getErrorCode() == NOT_YET_INITIALIZED
+            || (e.getErrorMessage() != null && e.getErrorMessage().contains("no replset config"));
+    }
+
+    static boolean isConverged(final BsonDocument status) {
+        if (!status.containsKey("members"))
+            return false;
+        int primaries = 0;
+        for (final BsonValue member : status.getArray("members")) {
+            final int state = member.asDocument().getNumber("state").intValue();
+            if (state == PRIMARY)
+                primaries++;
+            else if (state != SECONDARY && state != ARBITER)
+                return false;
+        }
+        return primaries == 1;
+    }
+
+    private static String summary(final BsonDocument status) {
+        final StringBuilder summary = new StringBuilder();
+        if (status.containsKey("members")) {
+            for (final BsonValue member : status.getArray("members")) {
+                final BsonDocument document = member.asDocument();
+                if (summary.length() > 0)
+                    summary.append(", ");
+                summary.append(document.containsKey("name") ? document.getString("name").getValue() : "?")
+                    .append(" is ")
+                    .append(document.containsKey("stateStr") ? document.getString("stateStr").getValue() : document.get("state"));
+            }
+        }
+        return summary.toString();
+    }
+
+    private static int version(final BsonDocument config) {
+        return (config.containsKey("version") ? config.getNumber("version").intValue() : 0);
+    }
+
+    /**
+     * Whether everything the configuration asks for is in the applied
+     * configuration. The server fills in defaults and bumps the version, so
+     * only the configured fields are compared, the version not at all, and
+     * members are matched by their id.
+     */
+    static boolean matches(final BsonDocument configured, final BsonDocument applied) {
+        for (final String key : configured.keySet()) {
+            if ("version".equals(key))
+                continue;
+            if (!applied.containsKey(key) || !matches(configured.get(key), applied.get(key)))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(final BsonValue configured, final BsonValue applied) {
+        if (configured.isNumber() && applied.isNumber())
+            return configured.asNumber().doubleValue() == applied.asNumber().doubleValue();
+        if (configured.isDocument() && applied.isDocument())
+            return matches(configured.asDocument(), applied.asDocument());
+        if (configured.isArray() && applied.isArray())
+            return matches(configured.asArray(), applied.asArray());
+        return configured.equals(applied);
+    }
+
+    private static boolean matches(final BsonArray configured, final BsonArray applied) {
+        if (configured.size() != applied.size())
+            return false;
+        for (int index = 0; index < configured.size(); index++) {
+            final BsonValue element = configured.get(index);
+            final BsonValue match = (element.isDocument() && element.asDocument().containsKey("_id") ? findById(applied, element.asDocument().get("_id")) : applied.get(index));
+            if (match == null || !matches(element, match))
+                return false;
+        }
+        return true;
+    }
+
+    private static BsonValue findById(final BsonArray documents, final BsonValue id) {
+        for (final BsonValue document : documents) {
+            if (document.isDocument() && document.asDocument().containsKey("_id") && matches(id, document.asDocument().get("_id")))
+                return document;
+        }
+        return null;
+    }
+}
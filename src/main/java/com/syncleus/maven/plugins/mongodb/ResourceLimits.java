@@ -0,0 +1,204 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a mongod from taking more than its share of a machine shared by
+ * several builds. The limits are applied by wrapping mongod's command line:
+ * nice lowers its scheduling priority and, where cgroup v2 is delegated to
+ * the build's user, mongod is started inside a cgroup of its own capped at
+ * the given CPUs and memory. Limits which can not be applied are reported as
+ * problems and mongod runs without them.
+ */
+public class ResourceLimits {
+    private static final long CPU_PERIOD_MICROS = 100000;
+    private static final long MEGABYTE = 1024L * 1024;
+
+    /**
+     * The smallest memory limit the smallest WiredTiger cache, 1GB, fits in
+     * along with the rest of mongod.
+     */
+    public static final long MINIMUM_CACHE_MEMORY_MEGABYTES = 2048;
+
+    private final File cgroupRoot;
+    private final File processCgroups;
+    private final Integer niceness;
+    private final Double cpus;
+    private final Long memoryMegabytes;
+
+    private final List<String> problems = new ArrayList<String>();
+    private File cgroup;
+
+    /**
+     * @param niceness the niceness to run mongod with, or null.
+     * @param cpus the number of CPUs mongod may use, or null for no limit.
+     * @param memoryMegabytes the memory mongod may use, or null for no limit.
+     */
+    public ResourceLimits(final Integer niceness, final Double cpus, final Long memoryMegabytes) {
+        this(new File("/sys/fs/cgroup"), new File("/proc/self/cgroup"), niceness, cpus, memoryMegabytes);
+    }
+
+    ResourceLimits(final File cgroupRoot, final File processCgroups, final Integer niceness, final Double cpus, final Long memoryMegabytes) {
+        this.cgroupRoot = cgroupRoot;
+        this.processCgroups = processCgroups;
+        this.niceness = niceness;
+        this.cpus = cpus;
+        this.memoryMegabytes = memoryMegabytes;
+    }
+
+    /**
+     * The WiredTiger cache size for a memory limit, sized the way WiredTiger
+     * sizes it for the machine's memory: half of what is left after 1GB, and
+     * at least 1GB.
+     *
+     * @return the cache size, or null without a memory limit or with one
+     * below {@link #MINIMUM_CACHE_MEMORY_MEGABYTES}, which no cache size fits.
+     */
+    public static Integer deriveCacheSizeGB(final Long memoryMegabytes) {
+        if (memoryMegabytes == null || memoryMegabytes < MINIMUM_CACHE_MEMORY_MEGABYTES)
+            return null;
+        return (int) Math.max(1, (memoryMegabytes - 1024) / 2 / 1024);
+    }
+
+    /**
+     * Creates the cgroup mongod is started in as a sibling of the build's own
+     * cgroup, which is where a delegated hierarchy lets the build create
+     * one. Does nothing without a CPU or memory limit.
+     */
+    public ResourceLimits createCgroup(final String name) {
+        if (cpus == null && memoryMegabytes == null)
+            return this;
+
+        if (!new File(cgroupRoot, "cgroup.controllers").isFile()) {
+            problems.add("CPU and memory limits require cgroup v2, which is not available");
+            return this;
+        }
+        final String own = ownCgroup();
+        if (own == null) {
+            problems.add("CPU and memory limits require cgroup v2, the build is not running in a cgroup v2 hierarchy");
+            return this;
+        }
+
+        final File ownDirectory = new File(cgroupRoot, own);
+        final File parent = ("/".equals(own) ? cgroupRoot : ownDirectory.getParentFile());
+        final List<String> controllers = Arrays.asList(read(new File(parent, "cgroup.subtree_control")).trim().split("\\s+"));
+        if ((cpus != null && !controllers.contains("cpu")) || (memoryMegabytes != null && !controllers.contains("memory"))) {
+            problems.add("CPU and memory limits require the cpu and memory controllers to be delegated to " + parent);
+            return this;
+        }
+
+        final File created = new File(parent, name);
+        if (!created.isDirectory() && !created.mkdir()) {
+            problems.add("Unable to create the cgroup " + created + ", the hierarchy is not delegated to this user");
+            return this;
+        }
+        try {
+            if (cpus != null)
+                write(new File(created, "cpu.max"), Math.round(cpus * CPU_PERIOD_MICROS) + " " + CPU_PERIOD_MICROS);
+            if (memoryMegabytes != null)
+                write(new File(created, "memory.max"), String.valueOf(memoryMegabytes * MEGABYTE));
+        } catch (final IOException e) {
+            problems.add("Unable to limit the cgroup " + created + ": " + e.getMessage());
+            created.delete();
+            return this;
+        }
+        // the kernel lets the empty cgroup be removed once mongod is gone
+        created.deleteOnExit();
+        cgroup = created;
+        return this;
+    }
+
+    /**
+     * @return the command line which applies the limits and then runs the
+     * given one in place of itself, keeping its process id.
+     */
+    public List<String> wrap(final List<String> args) {
+        final List<String> wrapped = new ArrayList<String>();
+        if (cgroup != null) {
+            wrapped.add("sh");
+            wrapped.add("-c");
+            wrapped.add("echo $$ > \"$0\" && exec \"$@\"");
+            wrapped.add(new File(cgroup, "cgroup.procs").getPath());
+        }
+        if (niceness != null) {
+            wrapped.add("nice");
+            wrapped.add("-n");
+            wrapped.add(String.valueOf(niceness));
+        }
+        wrapped.addAll(args);
+        return wrapped;
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * The cgroup mongod is started in, or null when there is none.
+     */
+    public File getCgroup() {
+        return cgroup;
+    }
+
+    private String ownCgroup() {
+        // cgroup v2 is the hierarchy with id 0 and no controllers listed
+        final String cgroups = read(processCgroups);
+        for (final String line : cgroups.split("\n")) {
+            if (line.startsWith("0::"))
+                return line.substring(3).trim();
+        }
+        return null;
+    }
+
+    private static String read(final File file) {
+        if (!file.canRead())
+            return "";
+        final StringBuilder content = new StringBuilder();
+        try {
+            final BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null)
+                    content.append(line).append('\n');
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException e) {
+            // treated as empty
+        }
+        return content.toString();
+    }
+
+    private static void write(final File file, final String value) throws IOException {
+        final Writer writer = new FileWriter(file);
+        try {
+            writer.write(value);
+        } finally {
+            writer.close();
+        }
+    }
+}
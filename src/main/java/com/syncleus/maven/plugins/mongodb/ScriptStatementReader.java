@@ -0,0 +1,236 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the statements of a JavaScript file one at a time, so scripts of
+ * any size can be evaluated in batches without ever holding the whole
+ * script. A statement ends at a semicolon, or at the end of a line which
+ * ends with a closing bracket, outside any brackets, strings and comments,
+ * unless the next token continues it: else, catch, finally, while after a do
+ * block, a member access or a binary operator. Comments are dropped. Regular expression literals containing quotes or
+ * brackets are not recognised and confuse the reader.
+ */
+public class ScriptStatementReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<String> CONTINUING_WORDS = new HashSet<String>(Arrays.asList("else", "catch", "finally"));
+    private static final String CONTINUING_OPERATORS = ".+-*/%=&|^?:<>,";
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder unread = new StringBuilder();
+
+    private final StringBuilder statement = new StringBuilder();
+    private int depth;
+    private char quote;
+    private boolean escaped;
+    private boolean lineComment;
+    private boolean blockComment;
+    private char significant;
+    private boolean endPending;
+    private boolean doBlock;
+
+    public ScriptStatementReader(final File file, final Charset charset) throws IOException {
+        this(Channels.newReader(new FileInputStream(file).getChannel(),
+            charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT), BUFFER_SIZE));
+    }
+
+    ScriptStatementReader(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the next statement, or null at the end of the script.
+     */
+    public String next() throws IOException {
+        statement.setLength(0);
+        significant = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            final char ch = (char) c;
+
+            if (lineComment) {
+                if (ch == '\n') {
+                    lineComment = false;
+                    if (endsAtLineEnd())
+                        endPending = true;
+                    statement.append(ch);
+                }
+                continue;
+            }
+            if (blockComment) {
+                if (ch == '*' && peek() == '/') {
+                    read();
+                    blockComment = false;
+                    statement.append(' ');
+                }
+                continue;
+            }
+            if (quote != 0) {
+                statement.append(ch);
+                if (escaped)
+                    escaped = false;
+                else if (ch == '\\')
+                    escaped = true;
+                else if (ch == quote)
+                    quote = 0;
+                continue;
+            }
+
+            if (ch == '/' && peek() == '/') {
+                read();
+                lineComment = true;
+                continue;
+            }
+            if (ch == '/' && peek() == '*') {
+                read();
+                blockComment = true;
+                continue;
+            }
+
+            if (endPending && !Character.isWhitespace(ch)) {
+                endPending = false;
+                final String token = token(ch);
+                if (!continues(token) && !(doBlock && "while".equals(token))) {
+                    unread.insert(0, token);
+                    return take();
+                }
+                unread.insert(0, token.substring(1));
+                if ("while".equals(token))
+                    doBlock = false;
+            }
+
+            if (ch == ';' && depth == 0) {
+                statement.append(ch);
+                final String taken = take();
+                if (taken != null)
+                    return taken;
+                continue;
+            }
+            if (ch == '\n' && endsAtLineEnd())
+                endPending = true;
+
+            statement.append(ch);
+            if (ch == '\'' || ch == '"' || ch == '`')
+                quote = ch;
+            else if (ch == '(' || ch == '[' || ch == '{') {
+                if (ch == '{' && depth == 0 && endsWithWord("do"))
+                    doBlock = true;
+                depth++;
+            } else if ((ch == ')' || ch == ']' || ch == '}') && depth > 0)
+                depth--;
+            if (!Character.isWhitespace(ch))
+                significant = ch;
+        }
+        return take();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean endsAtLineEnd() {
+        return depth == 0 && (significant == ')' || significant == ']' || significant == '}');
+    }
+
+    /**
+     * @return the token starting with the given character, whole words and
+     * increments or decrements, the character alone otherwise.
+     */
+    private String token(final char first) throws IOException {
+        final StringBuilder token = new StringBuilder().append(first);
+        if (Character.isJavaIdentifierStart(first)) {
+            int c;
+            while ((c = peek()) >= 0 && Character.isJavaIdentifierPart((char) c))
+                token.append((char) read());
+        } else if ((first == '+' || first == '-') && peek() == first) {
+            token.append((char) read());
+        }
+        return token.toString();
+    }
+
+    /**
+     * @return whether the statement, without the character just appended,
+     * ends with the given word.
+     */
+    private boolean endsWithWord(final String word) {
+        int end = statement.length() - 1;
+        while (end > 0 && Character.isWhitespace(statement.charAt(end - 1)))
+            end--;
+        final int start = end - word.length();
+        return start >= 0 && statement.substring(start, end).equals(word)
+            && (start == 0 || !Character.isJavaIdentifierPart(statement.charAt(start - 1)));
+    }
+
+    private static boolean continues(final String token) {
+        return CONTINUING_WORDS.contains(token) || (token.length() == 1 && CONTINUING_OPERATORS.indexOf(token.charAt(0)) >= 0);
+    }
+
+    /**
+     * @return the statement read so far, or null when it is blank.
+     */
+    private String take() {
+        significant = 0;
+        doBlock = false;
+        final String taken = statement.toString().trim();
+        statement.setLength(0);
+        return (taken.length() == 0 || ";".equals(taken) ? null : taken);
+    }
+
+    private int read() throws IOException {
+        if (unread.length() > 0) {
+            final char c = unread.charAt(0);
+            unread.deleteCharAt(0);
+            return c;
+        }
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (unread.length() > 0)
+            return unread.charAt(0);
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        final int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0)
+            return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
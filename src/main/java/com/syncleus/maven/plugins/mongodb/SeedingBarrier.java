@@ -0,0 +1,65 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+
+/**
+ * Waits until data seeded with unacknowledged writes is in place. mongod
+ * handles the requests of a connection one after the other, so a
+ * getLastError sent over the connection which carried the writes only
+ * returns once every one of them has been applied. Clients seeding without
+ * acknowledgement are therefore limited to a single connection, which
+ * {@link #await(MongoClient)} checks before the client is closed. Once all
+ * seeding is done {@link #flush(MongoClient)} writes the data files to disk
+ * with fsync.
+ */
+public final class SeedingBarrier {
+    private SeedingBarrier() {
+    }
+
+    /**
+     * Options for a client writing without acknowledgement.
+     *
+     * @param writers the number of threads sharing the client's single
+     *                connection.
+     */
+    public static MongoClientOptions clientOptions(final int writers) {
+        return MongoClientOptions.builder()
+            .connectionsPerHost(1)
+            .threadsAllowedToBlockForConnectionMultiplier(Math.max(writers, 1))
+            .build();
+    }
+
+    /**
+     * Waits until every write sent through the client has been applied. The
+     * client must have been created with {@link #clientOptions(int)}.
+     */
+    public static void await(final MongoClient mongoClient) {
+        mongoClient.getDatabase("admin").runCommand(new BsonDocument("getLastError", new BsonInt32(1)));
+    }
+
+    /**
+     * Flushes the seeded data to disk.
+     */
+    public static void flush(final MongoClient mongoClient) {
+        mongoClient.getDatabase("admin").runCommand(new BsonDocument("fsync", new BsonInt32(1)));
+    }
+}
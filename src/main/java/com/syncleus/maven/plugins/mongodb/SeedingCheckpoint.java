@@ -0,0 +1,194 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Records the seeding steps which completed, so a rerun against the same
+ * database directory resumes from the first step which did not. A step is
+ * only skipped when both the state file in the database directory and the
+ * metadata collection in mongod hold it with the same checksum of its
+ * configuration and input files, so a changed fixture or a database which
+ * lost its data is seeded again. Once a step runs every later step runs as
+ * well, since it may depend on what the earlier ones left.
+ */
+public class SeedingCheckpoint {
+    /**
+     * The database holding the metadata collection.
+     */
+    public static final String DATABASE = "seedingCheckpoint";
+    /**
+     * The metadata collection, one document per completed step with its name
+     * as _id and its checksum.
+     */
+    public static final String COLLECTION = "steps";
+    /**
+     * The state file, kept in the database directory.
+     */
+    public static final String STATE_FILE = ".seeding-checkpoint";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoClient client;
+    private final MongoCollection<BsonDocument> steps;
+    private final File stateFile;
+    private final Properties state = new Properties();
+    private boolean resuming = true;
+
+    /**
+     * @param client the client the metadata collection is accessed through,
+     *               closed with the checkpoint.
+     */
+    public SeedingCheckpoint(final MongoClient client, final File databaseDirectory) throws IOException {
+        this.client = client;
+        this.steps = client.getDatabase(DATABASE).getCollection(COLLECTION, BsonDocument.class);
+        this.stateFile = new File(databaseDirectory, STATE_FILE);
+        if (stateFile.isFile()) {
+            final InputStream in = new FileInputStream(stateFile);
+            try {
+                state.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    public static final class Step {
+        private final String name;
+        private final String checksum;
+
+        public Step(final String name, final String checksum) {
+            this.name = name;
+            this.checksum = checksum;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * @param description the step's configuration, part of the checksum.
+     * @param files the step's input files, directories are included with
+     *              every file in them.
+     */
+    public static Step step(final String name, final String description, final File... files) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", e);
+        }
+        digest.update(description.getBytes(UTF8));
+        for (final File file : files)
+            update(digest, file);
+
+        final StringBuilder checksum = new StringBuilder();
+        for (final byte b : digest.digest())
+            checksum.append(String.format("%02x", b));
+        return new Step(name, checksum.toString());
+    }
+
+    /**
+     * @return true when the step completed in an earlier run with the same
+     * checksum, and every step asked about before it did as well.
+     */
+    public synchronized boolean isComplete(final Step step) {
+        if (!resuming)
+            return false;
+        resuming = step.getChecksum().equals(state.getProperty(step.getName()))
+            && steps.count(new BsonDocument("_id", new BsonString(step.getName())).append("checksum", new BsonString(step.getChecksum()))) > 0;
+        return resuming;
+    }
+
+    public synchronized void complete(final Step step) throws IOException {
+        steps.replaceOne(new BsonDocument("_id", new BsonString(step.getName())),
+            new BsonDocument("_id", new BsonString(step.getName()))
+                .append("checksum", new BsonString(step.getChecksum()))
+                .append("completed", new BsonDateTime(System.currentTimeMillis())),
+            new UpdateOptions().upsert(true));
+
+        state.setProperty(step.getName(), step.getChecksum());
+        // written aside and renamed so an interrupted run never leaves a
+        // truncated state file
+        final File written = new File(stateFile.getPath() + ".tmp");
+        final OutputStream out = new FileOutputStream(written);
+        try {
+            state.store(out, "Completed seeding steps");
+        } finally {
+            out.close();
+        }
+        if (!written.renameTo(stateFile) && !(stateFile.delete() && written.renameTo(stateFile)))
+            throw new IOException("Unable to replace " + stateFile);
+    }
+
+    public void close() {
+        client.close();
+    }
+
+    private static void update(final MessageDigest digest, final File file) throws IOException {
+        if (file.isDirectory()) {
+            final File[] children = file.listFiles();
+            if (children == null)
+                throw new IOException("Unable to list " + file);
+            Arrays.sort(children);
+            for (final File child : children) {
+                digest.update(child.getName().getBytes(UTF8));
+                update(digest, child);
+            }
+            return;
+        }
+
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                digest.update(buffer, 0, read);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -22,19 +22,24 @@
 package com.syncleus.maven.plugins.mongodb;
 
 import com.mongodb.*;
+import com.mongodb.client.MongoCollection;
+import com.syncleus.maven.plugins.mongodb.ImportDataConfig.ImportFormat;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import com.syncleus.maven.plugins.mongodb.log.LogTail;
 import com.syncleus.maven.plugins.mongodb.log.Loggers;
 import com.syncleus.maven.plugins.mongodb.log.Loggers.LoggingStyle;
+import com.syncleus.maven.plugins.mongodb.log.SlowOperationCollector;
 import de.flapdoodle.embed.mongo.*;
 import de.flapdoodle.embed.mongo.config.*;
 import de.flapdoodle.embed.mongo.distribution.Feature;
 import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
-import de.flapdoodle.embed.mongo.distribution.Version;
-import de.flapdoodle.embed.mongo.distribution.Versions;
 import de.flapdoodle.embed.process.config.IRuntimeConfig;
 import de.flapdoodle.embed.process.config.io.ProcessOutput;
 import de.flapdoodle.embed.process.distribution.Distribution;
-import de.flapdoodle.embed.process.distribution.IVersion;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.store.Downloader;
 import de.flapdoodle.embed.process.exceptions.DistributionException;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
 import de.flapdoodle.embed.process.extract.ITempNaming;
 import de.flapdoodle.embed.process.extract.UUIDTempNaming;
 import de.flapdoodle.embed.process.extract.UserTempNaming;
@@ -45,19 +50,31 @@ import de.flapdoodle.embed.process.runtime.Network;
 import de.flapdoodle.embed.process.store.IArtifactStore;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.maven.artifact.UnknownRepositoryLayoutException;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.repository.ArtifactRepositoryFactory;
+import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonParseException;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.*;
+import java.nio.charset.Charset;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 import static java.util.Collections.singletonList;
 
@@ -69,10 +86,21 @@ import static java.util.Collections.singletonList;
  * href="http://github.com/flapdoodle-oss/embedmongo.flapdoodle.de">http://github.com/flapdoodle-oss/embedmongo.flapdoodle.de</a>
  */
 @Mojo(name = "start", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST)
-public class StartMongoMojo extends AbstractMongoMojo {
+public class StartMongoMojo extends AbstractMongoMojo implements Cloneable {
 
     private static final String PACKAGE_NAME = StartMongoMojo.class.getPackage().getName();
     public static final String MONGOD_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".mongod";
+    public static final String MONGOD_INSTANCES_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".mongod.instances";
+    public static final String SLOW_OPERATIONS_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".slowOperations";
+    public static final String IN_MEMORY_SERVER_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".inMemoryServer";
+    public static final String WATCHDOGS_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".watchdogs";
+    public static final String CREDENTIALS_CONTEXT_PROPERTY_NAME = PACKAGE_NAME + ".credentials";
+    private static final long WATCH_POLL_MILLIS = 250;
+    private static final int BSON_IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_SCRIPT_BATCH_CHARS = 1024 * 1024;
+    private static final int WATCHDOG_LOG_TAIL_LINES = 50;
+    private static final int UNAUTHORIZED = 13;
+    private static final Map<String, PreparedExecutableStore> MONGO_IMPORT_STORES = new HashMap<String, PreparedExecutableStore>();
 
     /**
      * The port MongoDB should run on.
@@ -93,6 +121,19 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter(property = "mongodb.randomPort", defaultValue = "false")
     private boolean randomPort;
 
+    /**
+     * The server to start. Must be one of the following: mongod,
+     * inMemoryJava. The inMemoryJava backend runs a stand-in inside the Maven
+     * JVM which speaks the MongoDB wire protocol and keeps all data in
+     * memory. It starts in milliseconds without any download but supports
+     * only basic CRUD: imports and generators work, initialization scripts,
+     * replica sets, instances and versions do not.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.backend", defaultValue = "mongod")
+    private String backend = "mongod";
+
     /**
      * The version of MongoDB to run e.g. 2.1.1, 1.6 v1.8.2, V2_0_4,
      *
@@ -145,13 +186,132 @@ public class StartMongoMojo extends AbstractMongoMojo {
     private boolean wait;
 
     /**
-     * Specifies where log output goes to. Must be one of the following: file, console, none.
+     * While waiting, watch the import files and initialization scripts and
+     * re-run the imports and scripts whose files change. Imports are re-run
+     * as configured, so dropOnImport or upsertOnImport keeps the collection
+     * in step with the file.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watch", defaultValue = "false")
+    private boolean watch;
+
+    /**
+     * The time in milliseconds without further changes after which watched
+     * changes are reloaded.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchDebounce", defaultValue = "500")
+    private long watchDebounce = 500;
+
+    /**
+     * Watches mongod once it has started, until the stop goal runs. When the
+     * process exits or stops answering pings the tail of its output is logged
+     * and written to the failure marker, and the stop goal fails with the
+     * cause.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchdog", defaultValue = "false")
+    private boolean watchdog;
+
+    /**
+     * The time in milliseconds between the watchdog's pings, also the time a
+     * ping may take.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchdogInterval", defaultValue = "5000")
+    private long watchdogInterval = 5000;
+
+    /**
+     * The number of consecutive pings mongod may miss before the watchdog
+     * considers it to have crashed.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchdogMissedPings", defaultValue = "3")
+    private int watchdogMissedPings = 3;
+
+    /**
+     * The number of times the watchdog restarts a crashed mongod. A restarted
+     * mongod with a temporary data directory is seeded again from scratch
+     * and its database pool copied again, keeping the leases held before the
+     * crash. With a databaseDirectory restarts require resumableSeeding, the
+     * restarted mongod then resumes from the checkpoint and keeps its pool.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchdogRestarts", defaultValue = "0")
+    private int watchdogRestarts;
+
+    /**
+     * The file the watchdog writes crashes to, it is removed when the start
+     * goal runs so tests may check for it. Published as the
+     * mongodb.failureMarker property.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.watchdogMarker", defaultValue = "${project.build.directory}/mongodb-failure.txt")
+    private File watchdogMarker;
+
+    /**
+     * Specifies where log output goes to. Must be one of the following: file, console, none, structured.
      *
      * @since 1.0.0
      */
     @Parameter(property = "mongodb.logging", defaultValue = "console")
     private String logging;
 
+    /**
+     * The minimum level of mongod output logged when logging is structured.
+     * Must be one of the following: debug, info, warning, error, fatal.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.logLevel", defaultValue = "info")
+    private String logLevel = "info";
+
+    /**
+     * The mongod log components, such as NETWORK or STORAGE, logged when
+     * logging is structured. All components are logged when none are given,
+     * errors are always logged.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private String[] logComponents;
+
+    /**
+     * Collects the slow operations mongod logs so the stop goal can report
+     * them. Works with every logging style.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.slowOperations", defaultValue = "false")
+    private boolean slowOperations;
+
+    /**
+     * The duration in milliseconds past which mongod logs an operation as
+     * slow, passed to mongod as --slowms. Defaults to mongod's own default of
+     * 100ms.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.slowOperationMillis")
+    private Integer slowOperationMillis;
+
+    /**
+     * The number of distinct slow operations, by namespace and plan summary,
+     * kept for the report. Those which took the least time in total are
+     * dropped first.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.slowOperationsLimit", defaultValue = "20")
+    private int slowOperationsLimit = 20;
+
     /**
      * The file to log the output to.
      *
@@ -198,6 +358,47 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter(property = "mongodb.authEnabled", defaultValue = "false")
     private boolean authEnabled;
 
+    /**
+     * Users created right after mongod starts, through the localhost
+     * exception, so authEnabled needs no restart. The first user needs a role
+     * which can create users, such as root, and is the one imports,
+     * generators and initializations run as. Initializations are evaluated
+     * with eval, which needs a role granting anyAction on anyResource, and
+     * root does not. JSON imports run through the driver rather than
+     * mongoimport, so the password never appears on a command line. Its
+     * credentials are published
+     * as mongodb.username, mongodb.password and
+     * mongodb.authenticationDatabase, the password of every user as
+     * mongodb.user.&lt;username&gt;.password.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private UserConfig[] users;
+
+    /**
+     * Copies the seeded database into a pool of identical databases once
+     * seeding is done, so parallel test forks can each lease one of their
+     * own with DatabasePoolLease. The names are published as the comma
+     * separated mongodb.databasePool property.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private DatabasePoolConfig databasePool;
+
+    /**
+     * Records completed imports, generators and initialization scripts so a
+     * rerun against the same databaseDirectory resumes seeding from the
+     * first step which did not complete. A step is redone when its
+     * configuration or files changed since, and every step after it is
+     * redone as well.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.resumableSeeding", defaultValue = "false")
+    private boolean resumableSeeding = false;
+
     /**
      * Sets a value for the --replSet
      */
@@ -226,6 +427,80 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter(property = "mongodb.artifactDirectory")
     private String artifactDirectory;
 
+    /**
+     * Where MongoDB distributions come from. Must be one of the following:
+     * download, repository. The repository source resolves distributions as
+     * Maven artifacts from the local repository, the distributionRepositories
+     * and the project's repositories, downloading from downloadPath only when
+     * none has it and Maven is not offline.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.distributionSource", defaultValue = "download")
+    private String distributionSource = "download";
+
+    /**
+     * The group id of distributions resolved from a repository.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.distributionGroupId", defaultValue = "org.mongodb")
+    private String distributionGroupId = "org.mongodb";
+
+    /**
+     * The artifact id of distributions resolved from a repository.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.distributionArtifactId", defaultValue = "mongodb-distribution")
+    private String distributionArtifactId = "mongodb-distribution";
+
+    /**
+     * How long an extracted mongoimport is kept for reuse. Must be one of the
+     * following: session, agent. With session it is extracted once per
+     * version for the whole Maven session, with agent it is kept in the
+     * executables directory of the artifactDirectory and reused by every
+     * later build on the machine.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.mongoImportCache", defaultValue = "session")
+    private String mongoImportCache = "session";
+
+    /**
+     * Repository URLs, such as a file:// directory mirror, searched for
+     * distributions before the project's repositories.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private String[] distributionRepositories;
+
+    /**
+     * The local Maven repository.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(defaultValue = "${localRepository}", readonly = true)
+    private ArtifactRepository localRepository;
+
+    @Component
+    private ArtifactFactory artifactFactory;
+
+    @Component
+    private ArtifactResolver artifactResolver;
+
+    @Component
+    private ArtifactRepositoryFactory artifactRepositoryFactory;
+
+    /**
+     * Whether Maven runs offline.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(defaultValue = "${settings.offline}", readonly = true)
+    private boolean offline;
+
     /**
      * Specifies the sync delay for MongoDB, 0 never syncs to disk, no value indicates default.
      *
@@ -234,6 +509,76 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter(property = "mongodb.syncDelay")
     private Integer syncDelay;
 
+    /**
+     * The storage engine mongod uses, such as mmapv1 or wiredTiger, no value
+     * indicates the default of the version.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.storageEngine")
+    private String storageEngine;
+
+    /**
+     * The size of the WiredTiger cache in gigabytes, no value indicates
+     * default.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.wiredTigerCacheSizeGB")
+    private Integer wiredTigerCacheSizeGB;
+
+    /**
+     * What to do when the pre-flight checks of free space, memory and open
+     * file limit, run before anything is downloaded, find a problem. Must be
+     * one of the following: off, warn, fail, scale. The scale mode shrinks the
+     * WiredTiger cache to fit the available memory and fails on the rest.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.preflight", defaultValue = "fail")
+    private String preflight = "fail";
+
+    /**
+     * The free space in megabytes required in the database directory and in
+     * the artifact directory, in addition to the oplog.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.minimumFreeSpace", defaultValue = "256")
+    private long minimumFreeSpace = 256;
+
+    /**
+     * The niceness mongod runs with, such as 10 to give the build's other
+     * processes priority, no value indicates mongod runs at the build's
+     * priority. Ignored on Windows.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.niceness")
+    private Integer niceness;
+
+    /**
+     * The number of CPUs mongod may use, such as 1.5, enforced through a
+     * cgroup v2 cgroup when the hierarchy is delegated to the build's user.
+     * No value indicates no limit.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.cpuLimit")
+    private Double cpuLimit;
+
+    /**
+     * The memory in megabytes mongod may use, enforced through a cgroup v2
+     * cgroup when the hierarchy is delegated to the build's user. Unless
+     * wiredTigerCacheSizeGB is given, the WiredTiger cache is sized to fit
+     * when mongod uses WiredTiger. Below 2048 no cache size fits and only a
+     * warning is logged. No value indicates no limit.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.memoryLimit")
+    private Long memoryLimit;
+
     /**
      * The maven project.
      *
@@ -258,6 +603,14 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter
     private ImportDataConfig[] imports;
 
+    /**
+     * A list of synthetic data sets to generate straight into the database.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private GeneratorConfig[] generators;
+
     /**
      * Default database to use when importing.
      *
@@ -285,6 +638,45 @@ public class StartMongoMojo extends AbstractMongoMojo {
     @Parameter
     private ReplSetInitiateConfig replSetInitiate;
 
+    /**
+     * How long to wait, in milliseconds, for the replica set to elect a
+     * primary and bring every other member to secondary after it has been
+     * initiated or reconfigured.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.replSetTimeout", defaultValue = "60000")
+    private long replSetTimeout = 60000;
+
+    /**
+     * A list of independent instances to start instead of a single one. Each
+     * instance inherits every option it does not set itself, its port is
+     * published as {@code mongodb.<id>.port}. The instances are started
+     * concurrently.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private InstanceConfig[] instances;
+
+    /**
+     * Versions to certify against in one build, each is started as an
+     * instance of its own, concurrently, with the version as its id so its
+     * port is published as {@code mongodb.<version>.port}. Combined with
+     * instances every instance is started once per version, identified as
+     * {@code <id>-<version>}. The versions are published as the comma
+     * separated mongodb.versions property.
+     *
+     * @since 1.2.0
+     */
+    @Parameter
+    private String[] versions;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private String instanceId = null;
+
     /**
      * Not a mojo configuration parameter, this is used internally.
      */
@@ -295,6 +687,57 @@ public class StartMongoMojo extends AbstractMongoMojo {
      */
     private Set<Feature> setFeatures = null;
 
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private IFeatureAwareVersion setVersion = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally and shared
+     * between instances.
+     */
+    private SlowOperationCollector slowOperationCollector = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private Collection<StartMongoMojo> startedInstances = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private Future<IExtractedFileSet> preparedMongoImport = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private ResourceLimits resourceLimits = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private SeedingCheckpoint seedingCheckpoint = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private MongodExecutable executable = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private MongodProcess mongod = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private LogTail logTail = null;
+
+    /**
+     * Not a mojo configuration parameter, this is used internally.
+     */
+    private volatile List<BsonDocument> databasePoolLeases = null;
+
     public StartMongoMojo() {
     }
 
@@ -366,11 +809,61 @@ public class StartMongoMojo extends AbstractMongoMojo {
             this.addProxySelector();
         }
 
-        final MongodExecutable executable;
-        try {
-            final IRuntimeConfig runtimeConfig = createRuntimeConfig();
+        if (getBackend() == Backend.INMEMORYJAVA) {
+            final InMemoryMongoServer server = startInMemory();
+            this.executeWait();
+            if(getPluginContext() != null)
+                getPluginContext().put(IN_MEMORY_SERVER_CONTEXT_PROPERTY_NAME, server);
+            return;
+        }
+
+        if (watchdog)
+            clearFailureMarker();
+
+        if (slowOperations) {
+            slowOperationCollector = new SlowOperationCollector(slowOperationsLimit);
+            if(getPluginContext() != null)
+                getPluginContext().put(SLOW_OPERATIONS_CONTEXT_PROPERTY_NAME, slowOperationCollector);
+        }
+
+        // the stop goal shuts a mongod with users down as the first user
+        if(getPluginContext() != null)
+            getPluginContext().put(CREDENTIALS_CONTEXT_PROPERTY_NAME, getCredentials());
+
+        final InstanceConfig[] matrix = getInstanceMatrix();
+        if (matrix.length > 0) {
+            final Map<String, MongodProcess> mongods = startInstances(matrix);
+            if(getPluginContext() != null)
+                getPluginContext().put(MONGOD_INSTANCES_CONTEXT_PROPERTY_NAME, mongods);
+            startWatchdogs(startedInstances);
+            this.executeWait();
+            return;
+        }
 
+        startInstance();
+
+        if(getPluginContext() != null)
+            getPluginContext().put(MONGOD_CONTEXT_PROPERTY_NAME, mongod);
+        startWatchdogs(singletonList(this));
+        this.executeWait();
+    }
+
+    private MongodProcess startInstance() throws MojoExecutionException, MojoFailureException {
+        // resolve the version and check the machine before anything is
+        // downloaded so a bad version or a full disk fails the build straight
+        // away.
+        createVersion();
+        validateReplSetInitiate();
+        validateUsers();
+        validateWatchdogRestarts();
+        deriveCacheSize();
+        runPreflight();
+
+        try {
             getPort();
+            createResourceLimits();
+
+            final IRuntimeConfig runtimeConfig = createRuntimeConfig();
 
             final IMongodConfig config = createMongodConfig();
 
@@ -380,62 +873,722 @@ public class StartMongoMojo extends AbstractMongoMojo {
             throw new MojoExecutionException("Failed to download MongoDB distribution: " + e.withDistribution(), e);
         }
 
-        final MongodProcess mongod;
+        prepareMongoImport();
+
         try {
             mongod = executable.start();
         } catch (final IOException e) {
             throw new MojoExecutionException("Unable to start the mongod", e);
         }
 
+        seed(false);
+        return mongod;
+    }
+
+    /**
+     * Brings a freshly started mongod into the state the build expects. A
+     * restarted mongod which kept its data directory keeps its database pool,
+     * the pool of one which lost it is copied again.
+     */
+    private void seed(final boolean restarting) throws MojoExecutionException, MojoFailureException {
         startReplSetInitiate();
-        startImport();
-        startInitialization();
+        provisionUsers();
 
-        this.executeWait();
-        if(getPluginContext() != null)
-            getPluginContext().put(MONGOD_CONTEXT_PROPERTY_NAME, mongod);
+        openSeedingCheckpoint();
+        try {
+            startImport();
+            startGeneration();
+            startInitialization();
+            if (isSeedingUnacknowledged())
+                flushSeeding();
+        } finally {
+            closeSeedingCheckpoint();
+        }
+        if (!restarting)
+            createDatabasePool();
+        else if (getDataDirectory() == null)
+            recreateDatabasePool();
     }
 
-    private void executeWait() {
-        if (wait) {
-            while (true) {
-                try {
-                    TimeUnit.MINUTES.sleep(5);
-                } catch (final InterruptedException e) {
-                    break;
-                }
-            }
+    private InMemoryMongoServer startInMemory() throws MojoExecutionException, MojoFailureException {
+        if ((instances != null && instances.length > 0) || (versions != null && versions.length > 0))
+            throw new MojoFailureException("The inMemoryJava backend does not support instances or versions");
+        if (replSetInitiate != null)
+            throw new MojoFailureException("The inMemoryJava backend does not support replica sets");
+        if (initalizations != null && initalizations.length > 0)
+            throw new MojoFailureException("The inMemoryJava backend can not run initialization scripts, they require JavaScript");
+        if (users != null && users.length > 0)
+            throw new MojoFailureException("The inMemoryJava backend does not support users");
+
+        final InMemoryMongoServer server = new InMemoryMongoServer(bindIp, getPort());
+        try {
+            server.start();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to start the in-memory server on port " + getPort(), e);
         }
-    }
+        getLog().info("Started the in-memory server on port " + getPort());
 
-    private IMongodConfig createMongodConfig() throws MojoExecutionException {
+        boolean seeded = false;
         try {
-            MongodConfigBuilder configBuilder = new MongodConfigBuilder()
-                .version(createVersion())
-                .net(new Net(bindIp, getPort(), Network.localhostIsIPv6()))
-                .replication(new Storage(getDataDirectory(), replSet, oplogSize));
+            startImport();
+            startGeneration();
+            if (isSeedingUnacknowledged())
+                flushSeeding();
+            createDatabasePool();
+            seeded = true;
+        } finally {
+            // the stop goal never sees a server which failed to seed, so it must not keep its port
+            if (!seeded)
+                server.stop();
+        }
 
-            configBuilder.cmdOptions(this.createCmdOptions().build());
+        return server;
+    }
 
-            return configBuilder.build();
-        } catch (final UnknownHostException e) {
-            throw new MojoExecutionException("Unable to determine if localhost is ipv6", e);
-        } catch (final IOException e) {
-            throw new MojoExecutionException("Unable to Config MongoDB: ", e);
+    private Backend getBackend() throws MojoFailureException {
+        try {
+            return Backend.valueOf(backend.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected backend encountered: \"" + backend + "\"");
         }
     }
 
-    private MongoCmdOptionsBuilder createCmdOptions() {
-        MongoCmdOptionsBuilder config = new MongoCmdOptionsBuilder();
-        config = this.configureSyncDelay(config);
-        config = this.configureTextSearch(config);
-        return config;
+    private enum Backend {
+        MONGOD, INMEMORYJAVA
     }
 
-    private MongoCmdOptionsBuilder configureSyncDelay(final MongoCmdOptionsBuilder config) {
-        if (this.syncDelay == null)
-            return config.defaultSyncDelay();
-        return config.syncDelay(this.syncDelay);
+    private void deriveCacheSize() throws MojoFailureException {
+        if (wiredTigerCacheSizeGB != null || memoryLimit == null || !usesWiredTiger())
+            return;
+        wiredTigerCacheSizeGB = ResourceLimits.deriveCacheSizeGB(memoryLimit);
+        if (wiredTigerCacheSizeGB == null) {
+            getLog().warn("The " + memoryLimit + "MB memory limit is too small for the smallest WiredTiger cache of 1GB, mongod may be killed"
+                + " once its cache grows. Use at least " + ResourceLimits.MINIMUM_CACHE_MEMORY_MEGABYTES + "MB or the mmapv1 storage engine");
+            return;
+        }
+        getLog().info("Sizing the WiredTiger cache to " + wiredTigerCacheSizeGB + "GB to fit the " + memoryLimit + "MB memory limit");
+    }
+
+    private boolean usesWiredTiger() throws MojoFailureException {
+        if (storageEngine != null)
+            return "wiredTiger".equalsIgnoreCase(storageEngine);
+        // WiredTiger became the default in 3.2, 3.0 defaults to mmapv1 and
+        // 2.x does not know the cache option at all
+        return VersionResolver.isAtLeast(createVersion(), 3, 2);
+    }
+
+    private void createResourceLimits() {
+        if (niceness == null && cpuLimit == null && memoryLimit == null)
+            return;
+
+        Integer applicableNiceness = niceness;
+        if (niceness != null && Platform.detect() == Platform.Windows) {
+            getLog().warn("Ignoring the niceness, it is not supported on Windows");
+            applicableNiceness = null;
+        }
+        resourceLimits = new ResourceLimits(applicableNiceness, cpuLimit, memoryLimit).createCgroup("embedmongo-" + getPort());
+        for (final String problem : resourceLimits.getProblems())
+            getLog().warn(problem + ", mongod runs without the limit");
+        if (resourceLimits.getCgroup() != null)
+            getLog().info("Starting mongod in the cgroup " + resourceLimits.getCgroup());
+    }
+
+    private void runPreflight() throws MojoFailureException {
+        final Preflight.Mode mode;
+        try {
+            mode = Preflight.Mode.valueOf(preflight.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected preflight mode encountered: \"" + preflight + "\"");
+        }
+        if (mode == Preflight.Mode.OFF)
+            return;
+
+        final File dataDirectory = (getDataDirectory() != null ? new File(getDataDirectory()) : new File(System.getProperty("java.io.tmpdir")));
+        final File artifactStore = getArtifactStoreDirectory();
+        final Preflight checks = new Preflight(minimumFreeSpace)
+            .checkFreeSpace("database", dataDirectory, (replSet != null ? oplogSize : 0))
+            .checkFreeSpace("MongoDB distribution", artifactStore, 0)
+            .checkCacheSize(wiredTigerCacheSizeGB, mode == Preflight.Mode.SCALE)
+            .checkOpenFileLimit();
+
+        if (checks.getCacheSizeGB() != null && !checks.getCacheSizeGB().equals(wiredTigerCacheSizeGB)) {
+            getLog().warn("Scaling the WiredTiger cache down from " + wiredTigerCacheSizeGB + "GB to " + checks.getCacheSizeGB() + "GB to fit the available memory");
+            wiredTigerCacheSizeGB = checks.getCacheSizeGB();
+        }
+
+        if (checks.getProblems().isEmpty())
+            return;
+        for (final String problem : checks.getProblems())
+            getLog().warn("Preflight: " + problem);
+        if (mode != Preflight.Mode.WARN)
+            throw new MojoFailureException("Preflight checks failed: " + StringUtils.join(checks.getProblems(), "; ")
+                + ". Set preflight to warn to start anyway.");
+    }
+
+    private void validateReplSetInitiate() throws MojoFailureException {
+        if (replSetInitiate == null)
+            return;
+        final List<String> problems = replSetInitiate.validate();
+        if (!problems.isEmpty())
+            throw new MojoFailureException("Invalid replSetInitiate configuration: " + StringUtils.join(problems, "; "));
+    }
+
+    private void validateUsers() throws MojoFailureException {
+        if (users == null)
+            return;
+        for (final UserConfig user : users) {
+            if (StringUtils.isBlank(user.getUsername()) || StringUtils.isEmpty(user.getPassword()) || StringUtils.isBlank(user.getDatabase()))
+                throw new MojoFailureException("Every user requires a <username>, <password> and <database>: " + user);
+        }
+    }
+
+    private void validateWatchdogRestarts() throws MojoFailureException {
+        // seeding again on top of the crashed mongod's data would duplicate it
+        if (watchdog && watchdogRestarts > 0 && getDataDirectory() != null && !resumableSeeding)
+            throw new MojoFailureException("watchdogRestarts with a databaseDirectory requires resumableSeeding");
+    }
+
+    private void provisionUsers() throws MojoExecutionException {
+        if (users == null || users.length == 0)
+            return;
+
+        final MongoClient anonymous = new MongoClient(new ServerAddress("localhost", getPort()));
+        final MongoClient authenticated = connectToMongo();
+        try {
+            new UserProvisioner(getLog()).provision(users, anonymous, authenticated);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to create users", e);
+        } finally {
+            anonymous.close();
+            authenticated.close();
+        }
+
+        project.getProperties().put(propertyName("username"), users[0].getUsername());
+        project.getProperties().put(propertyName("password"), users[0].getPassword());
+        project.getProperties().put(propertyName("authenticationDatabase"), users[0].getDatabase());
+        for (final UserConfig user : users)
+            project.getProperties().put(propertyName("user." + user.getUsername() + ".password"), user.getPassword());
+    }
+
+    private void openSeedingCheckpoint() throws MojoExecutionException {
+        if (!resumableSeeding)
+            return;
+        if (getDataDirectory() == null) {
+            getLog().warn("resumableSeeding requires a databaseDirectory which outlives the build, seeding starts from scratch");
+            return;
+        }
+
+        final MongoClient client = connectToMongo();
+        try {
+            seedingCheckpoint = new SeedingCheckpoint(client, new File(getDataDirectory()));
+        } catch (final IOException e) {
+            client.close();
+            throw new MojoExecutionException("Unable to read the seeding checkpoint in " + getDataDirectory(), e);
+        }
+    }
+
+    private void closeSeedingCheckpoint() {
+        if (seedingCheckpoint == null)
+            return;
+        seedingCheckpoint.close();
+        seedingCheckpoint = null;
+    }
+
+    /**
+     * @return the step to check and record, or null when seeding is not
+     * resumable.
+     */
+    private SeedingCheckpoint.Step seedingStep(final String name, final String description, final File... files) throws MojoExecutionException {
+        if (seedingCheckpoint == null)
+            return null;
+        try {
+            return SeedingCheckpoint.step(name, description, files);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to checksum " + name, e);
+        }
+    }
+
+    private boolean isSeeded(final SeedingCheckpoint.Step step) {
+        if (step == null || !seedingCheckpoint.isComplete(step))
+            return false;
+        getLog().info("Skipping " + step + ", it completed in an earlier run");
+        return true;
+    }
+
+    private void seeded(final SeedingCheckpoint.Step step) throws MojoExecutionException {
+        if (step == null)
+            return;
+        try {
+            seedingCheckpoint.complete(step);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to record " + step + " in the seeding checkpoint", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to record " + step + " in the seeding checkpoint", e);
+        }
+    }
+
+    /**
+     * @return the database the pool is copied from, or null without a pool.
+     */
+    private String getDatabasePoolSource() throws MojoFailureException {
+        if (databasePool == null || databasePool.getSize() <= 0)
+            return null;
+
+        final String source = (StringUtils.isNotBlank(databasePool.getDatabase()) ? databasePool.getDatabase() : defaultImportDatabase);
+        if (StringUtils.isBlank(source))
+            throw new MojoFailureException("Database is required you can either define a defaultImportDatabase or a <database> on the databasePool");
+        return source;
+    }
+
+    private void createDatabasePool() throws MojoExecutionException, MojoFailureException {
+        final String source = getDatabasePoolSource();
+        if (source == null)
+            return;
+
+        final List<String> names = DatabasePool.names(databasePool.getPrefix() != null ? databasePool.getPrefix() : source + "_", databasePool.getSize());
+
+        final MongoClient client = connectToMongo();
+        try {
+            new DatabasePool(client, getLog()).create(source, names);
+        } catch (final ExecutionException e) {
+            throw new MojoExecutionException("Unable to copy " + source + " into the database pool", e.getCause());
+        } catch (final InterruptedException e) {
+            throw new MojoExecutionException("Interrupted while copying " + source + " into the database pool", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to register the database pool", e);
+        } finally {
+            client.close();
+        }
+        getLog().info("Copied " + source + " into the database pool: " + StringUtils.join(names, ", "));
+
+        project.getProperties().put(propertyName("databasePool"), StringUtils.join(names, ","));
+        project.getProperties().put(propertyName("databasePool.source"), source);
+    }
+
+    /**
+     * Copies the pool into a restarted mongod which lost it, registering the
+     * leases held before the crash again so their holders keep their
+     * databases.
+     */
+    private void recreateDatabasePool() throws MojoExecutionException, MojoFailureException {
+        createDatabasePool();
+        final List<BsonDocument> leases = databasePoolLeases;
+        if (leases == null || leases.isEmpty())
+            return;
+
+        final MongoClient client = connectToMongo();
+        try {
+            new DatabasePool(client, getLog()).restoreLeases(leases);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to register the leases of the database pool again", e);
+        } finally {
+            client.close();
+        }
+    }
+
+    private void flushSeeding() throws MojoExecutionException {
+        final MongoClient mongoClient = connectToMongo();
+        try {
+            SeedingBarrier.flush(mongoClient);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to flush the seeded data", e);
+        } finally {
+            mongoClient.close();
+        }
+    }
+
+    /**
+     * The instances to start, every instance once per version of the version
+     * matrix, or none to start a single mongod.
+     */
+    private InstanceConfig[] getInstanceMatrix() throws MojoFailureException {
+        if (versions == null || versions.length == 0)
+            return (instances != null ? instances : new InstanceConfig[0]);
+
+        final List<InstanceConfig> matrix = new ArrayList<InstanceConfig>();
+        for (final String matrixVersion : versions) {
+            if (StringUtils.isBlank(matrixVersion))
+                throw new MojoFailureException("The versions must not be blank");
+            if (instances == null || instances.length == 0) {
+                matrix.add(new InstanceConfig(matrixVersion, matrixVersion, null, Boolean.TRUE, null, null, null));
+            } else {
+                for (final InstanceConfig instance : instances)
+                    matrix.add(instance.forVersion(matrixVersion));
+            }
+        }
+        project.getProperties().put(propertyName("versions"), StringUtils.join(versions, ","));
+        return matrix.toArray(new InstanceConfig[matrix.size()]);
+    }
+
+    private Map<String, MongodProcess> startInstances(final InstanceConfig[] matrix) throws MojoExecutionException, MojoFailureException {
+        final Map<String, StartMongoMojo> instanceMojos = new LinkedHashMap<String, StartMongoMojo>();
+        for (final InstanceConfig instance : matrix) {
+            if (StringUtils.isBlank(instance.getId()))
+                throw new MojoFailureException("Every instance requires an <id>");
+            if (instanceMojos.containsKey(instance.getId()))
+                throw new MojoFailureException("Duplicate instance id: \"" + instance.getId() + "\"");
+            instanceMojos.put(instance.getId(), forInstance(instance));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(instanceMojos.size());
+        final Map<String, Future<MongodProcess>> pending = new LinkedHashMap<String, Future<MongodProcess>>();
+        for (final Map.Entry<String, StartMongoMojo> entry : instanceMojos.entrySet()) {
+            final StartMongoMojo instanceMojo = entry.getValue();
+            pending.put(entry.getKey(), executor.submit(new Callable<MongodProcess>() {
+                @Override
+                public MongodProcess call() throws MojoExecutionException, MojoFailureException {
+                    return instanceMojo.startInstance();
+                }
+            }));
+        }
+        executor.shutdown();
+
+        final Map<String, MongodProcess> mongods = new LinkedHashMap<String, MongodProcess>();
+        Exception failure = null;
+        for (final Map.Entry<String, Future<MongodProcess>> entry : pending.entrySet()) {
+            try {
+                mongods.put(entry.getKey(), entry.getValue().get());
+                getLog().info("Instance '" + entry.getKey() + "' started on port " + instanceMojos.get(entry.getKey()).getPort());
+            } catch (final ExecutionException e) {
+                getLog().error("Instance '" + entry.getKey() + "' failed to start: " + e.getCause().getMessage());
+                if (failure == null)
+                    failure = (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (final InterruptedException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+
+        startedInstances = instanceMojos.values();
+        if (failure != null) {
+            // an instance which failed while seeding has a running mongod too
+            for (final StartMongoMojo instanceMojo : instanceMojos.values()) {
+                if (instanceMojo.mongod != null)
+                    instanceMojo.mongod.stop();
+            }
+            if (failure instanceof MojoExecutionException)
+                throw (MojoExecutionException) failure;
+            if (failure instanceof MojoFailureException)
+                throw (MojoFailureException) failure;
+            throw new MojoExecutionException("Unable to start the mongod instances", failure);
+        }
+        return mongods;
+    }
+
+    /**
+     * Creates a copy of this mojo which starts the given instance, every
+     * option the instance does not set is inherited from this mojo.
+     */
+    StartMongoMojo forInstance(final InstanceConfig instance) {
+        final StartMongoMojo mojo;
+        try {
+            mojo = (StartMongoMojo) this.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+
+        mojo.instanceId = instance.getId();
+        mojo.instances = null;
+        mojo.versions = null;
+        mojo.setPort = null;
+        mojo.setFeatures = null;
+        mojo.setVersion = null;
+        mojo.preparedMongoImport = null;
+        mojo.resourceLimits = null;
+        mojo.seedingCheckpoint = null;
+        mojo.executable = null;
+        mojo.mongod = null;
+        mojo.logTail = null;
+        // instances writing to one file would interleave their output
+        mojo.logFile = instanceLogFile(logFile, instance.getId());
+
+        if (instance.getVersion() != null)
+            mojo.version = instance.getVersion();
+        if (instance.getPort() != null)
+            mojo.port = instance.getPort();
+        if (instance.getRandomPort() != null)
+            mojo.randomPort = instance.getRandomPort();
+        else if (instance.getPort() == null)
+            // instances can not share the inherited port.
+            mojo.randomPort = true;
+        if (instance.getDatabaseDirectory() != null)
+            mojo.databaseDirectory = instance.getDatabaseDirectory();
+        else if (databaseDirectory != null)
+            mojo.databaseDirectory = new File(databaseDirectory, instance.getId());
+        if (instance.getBindIp() != null)
+            mojo.bindIp = instance.getBindIp();
+        if (instance.getAuthEnabled() != null)
+            mojo.authEnabled = instance.getAuthEnabled();
+        if (instance.getReplSet() != null)
+            mojo.replSet = instance.getReplSet();
+        if (instance.getOplogSize() != null)
+            mojo.oplogSize = instance.getOplogSize();
+        if (instance.getSyncDelay() != null)
+            mojo.syncDelay = instance.getSyncDelay();
+        if (instance.getFeatures() != null)
+            mojo.features = instance.getFeatures();
+        if (instance.getImports() != null)
+            mojo.imports = instance.getImports();
+        if (instance.getGenerators() != null)
+            mojo.generators = instance.getGenerators();
+        if (instance.getDefaultImportDatabase() != null)
+            mojo.defaultImportDatabase = instance.getDefaultImportDatabase();
+        if (instance.getInitalizations() != null)
+            mojo.initalizations = instance.getInitalizations();
+        if (instance.getReplSetInitiate() != null)
+            mojo.replSetInitiate = instance.getReplSetInitiate();
+        return mojo;
+    }
+
+    private void clearFailureMarker() throws MojoExecutionException {
+        if (watchdogMarker.exists() && !watchdogMarker.delete())
+            throw new MojoExecutionException("Unable to delete the failure marker " + watchdogMarker);
+        project.getProperties().put("mongodb.failureMarker", watchdogMarker.getAbsolutePath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startWatchdogs(final Collection<StartMongoMojo> mojos) throws MojoFailureException {
+        if (!watchdog)
+            return;
+
+        final List<MongodWatchdog> watchdogs = new ArrayList<MongodWatchdog>();
+        for (final StartMongoMojo mojo : mojos) {
+            final MongodWatchdog mongodWatchdog = mojo.createWatchdog();
+            mongodWatchdog.start();
+            watchdogs.add(mongodWatchdog);
+        }
+        if(getPluginContext() != null)
+            getPluginContext().put(WATCHDOGS_CONTEXT_PROPERTY_NAME, watchdogs);
+        getLog().info("Watching " + watchdogs.size() + " mongod process(es) every " + watchdogInterval + "ms");
+    }
+
+    private MongodWatchdog createWatchdog() throws MojoFailureException {
+        final int timeout = (int) Math.min(watchdogInterval, Integer.MAX_VALUE);
+        final MongoClient client = connectToMongo(MongoClientOptions.builder()
+            .serverSelectionTimeout(timeout).connectTimeout(timeout).socketTimeout(timeout).build());
+        // kept up to date so a mongod which loses its pool can restore them
+        final String poolSource = (getDataDirectory() == null ? getDatabasePoolSource() : null);
+
+        final MongodWatchdog.Target target = new MongodWatchdog.Target() {
+            @Override
+            public boolean isRunning() {
+                return mongod.isProcessRunning();
+            }
+
+            @Override
+            public boolean ping() {
+                try {
+                    client.getDatabase("admin").runCommand(new Document("ping", 1));
+                } catch (final MongoException e) {
+                    return false;
+                }
+                if (poolSource != null) {
+                    try {
+                        databasePoolLeases = new DatabasePool(client, getLog()).leases(poolSource);
+                    } catch (final MongoException e) {
+                        getLog().debug("Unable to read the leases of the database pool: " + e.getMessage());
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void restart() throws MojoExecutionException, MojoFailureException {
+                StartMongoMojo.this.restart();
+            }
+
+            @Override
+            public void close() {
+                client.close();
+            }
+        };
+        return new MongodWatchdog((instanceId != null ? instanceId : "localhost:" + getPort()), target, watchdogInterval,
+            watchdogMissedPings, watchdogRestarts, logTail, watchdogMarker, getLog());
+    }
+
+    /**
+     * Replaces a crashed mongod with a new one on the same port and data
+     * directory, and seeds it again. Seeding a databaseDirectory resumes
+     * from its checkpoint, see {@link #validateWatchdogRestarts()}.
+     */
+    @SuppressWarnings("unchecked")
+    private void restart() throws MojoExecutionException, MojoFailureException {
+        // releases what flapdoodle holds for the old process, a temporary
+        // data directory goes with it and is seeded again below.
+        mongod.stop();
+        try {
+            mongod = executable.start();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to restart the mongod", e);
+        }
+
+        if (getPluginContext() != null) {
+            if (instanceId == null) {
+                getPluginContext().put(MONGOD_CONTEXT_PROPERTY_NAME, mongod);
+            } else {
+                final Map<String, MongodProcess> mongods = (Map<String, MongodProcess>) getPluginContext().get(MONGOD_INSTANCES_CONTEXT_PROPERTY_NAME);
+                if (mongods != null)
+                    mongods.put(instanceId, mongod);
+            }
+        }
+        seed(true);
+    }
+
+    /**
+     * Qualifies the log file with the instance id, before its extension.
+     */
+    static String instanceLogFile(final String logFile, final String id) {
+        if (logFile == null)
+            return null;
+        final int separator = Math.max(logFile.lastIndexOf('/'), logFile.lastIndexOf(File.separatorChar));
+        final int extension = logFile.lastIndexOf('.');
+        if (extension <= separator + 1)
+            return logFile + "-" + id;
+        return logFile.substring(0, extension) + "-" + id + logFile.substring(extension);
+    }
+
+    /**
+     * The name of the project property publishing the given value, properties
+     * of instances are qualified with the instance id.
+     */
+    private String propertyName(final String name) {
+        if (instanceId == null)
+            return "mongodb." + name;
+        return "mongodb." + instanceId + "." + name;
+    }
+
+    private void executeWait() {
+        if (wait && watch) {
+            executeWatch();
+        } else if (wait) {
+            while (true) {
+                try {
+                    TimeUnit.MINUTES.sleep(5);
+                } catch (final InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void executeWatch() {
+        final List<StartMongoMojo> watched = new ArrayList<StartMongoMojo>();
+        if (startedInstances != null)
+            watched.addAll(startedInstances);
+        else
+            watched.add(this);
+
+        final Set<File> roots = new LinkedHashSet<File>();
+        for (final StartMongoMojo mojo : watched)
+            roots.addAll(mojo.getWatchedFiles());
+        final FileWatcher watcher = new FileWatcher(roots, watchDebounce);
+        getLog().info("Watching " + roots.size() + " import file(s) and script(s) for changes");
+
+        while (true) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(WATCH_POLL_MILLIS);
+            } catch (final InterruptedException e) {
+                break;
+            }
+
+            final Set<File> changed = watcher.poll();
+            if (changed.isEmpty())
+                continue;
+            for (final StartMongoMojo mojo : watched) {
+                try {
+                    mojo.reload(changed);
+                } catch (final Exception e) {
+                    // keep watching, the next save may well fix it.
+                    getLog().error("Reload failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Set<File> getWatchedFiles() {
+        final Set<File> files = new LinkedHashSet<File>();
+        if (imports != null) {
+            for (final ImportDataConfig importData : imports) {
+                if (StringUtils.isNotBlank(importData.getFile()))
+                    files.add(new File(importData.getFile()).getAbsoluteFile());
+            }
+        }
+        if (initalizations != null) {
+            for (final InitializerConfig initConfig : initalizations) {
+                for (final File script : initConfig.getScripts())
+                    files.add(script.getAbsoluteFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Re-runs the imports and initialization scripts of the changed files.
+     */
+    // initializations only exist on the deprecated DB API
+    @SuppressWarnings("deprecation")
+    private void reload(final Set<File> changed) throws MojoExecutionException, MojoFailureException {
+        if (imports != null) {
+            for (final ImportDataConfig importData : imports) {
+                if (StringUtils.isNotBlank(importData.getFile()) && changed.contains(new File(importData.getFile()).getAbsoluteFile())) {
+                    final MongoImportProcess importProcess = startImport(importData);
+                    if (importProcess != null)
+                        waitFor(importProcess);
+                }
+            }
+        }
+
+        if (initalizations != null) {
+            final MongoClient mongoClient = connectToMongo();
+            try {
+                for (final InitializerConfig initConfig : initalizations) {
+                    for (final File script : initConfig.getScripts()) {
+                        final File absoluteScript = script.getAbsoluteFile();
+                        for (final File file : changed) {
+                            if (file.equals(absoluteScript) || (script.isDirectory() && absoluteScript.equals(file.getParentFile())))
+                                processScriptFile(mongoClient.getDB(initConfig.getDatabaseName()), file, initConfig);
+                        }
+                    }
+                }
+            } finally {
+                mongoClient.close();
+            }
+        }
+
+        // the copies would otherwise keep the fixtures from before the change
+        createDatabasePool();
+    }
+
+    private IMongodConfig createMongodConfig() throws MojoExecutionException, MojoFailureException {
+        try {
+            MongodConfigBuilder configBuilder = new MongodConfigBuilder()
+                .version(createVersion())
+                .net(new Net(bindIp, getPort(), Network.localhostIsIPv6()))
+                .replication(new Storage(getDataDirectory(), replSet, oplogSize));
+
+            configBuilder.cmdOptions(this.createCmdOptions().build());
+
+            return configBuilder.build();
+        } catch (final UnknownHostException e) {
+            throw new MojoExecutionException("Unable to determine if localhost is ipv6", e);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to Config MongoDB: ", e);
+        }
+    }
+
+    private MongoCmdOptionsBuilder createCmdOptions() {
+        MongoCmdOptionsBuilder config = new MongoCmdOptionsBuilder();
+        config = this.configureSyncDelay(config);
+        config = this.configureTextSearch(config);
+        if (storageEngine != null)
+            config = config.useStorageEngine(storageEngine);
+        return config;
+    }
+
+    private MongoCmdOptionsBuilder configureSyncDelay(final MongoCmdOptionsBuilder config) {
+        if (this.syncDelay == null)
+            return config.defaultSyncDelay();
+        return config.syncDelay(this.syncDelay);
     }
 
     private MongoCmdOptionsBuilder configureTextSearch(final MongoCmdOptionsBuilder config) {
@@ -445,6 +1598,17 @@ public class StartMongoMojo extends AbstractMongoMojo {
     }
 
     private ProcessOutput getOutputConfig() throws MojoFailureException {
+        ProcessOutput output = getLoggingOutputConfig();
+        if (slowOperationCollector != null)
+            output = Loggers.collectSlowOperations(output, slowOperationCollector);
+        if (watchdog) {
+            logTail = new LogTail(WATCHDOG_LOG_TAIL_LINES);
+            output = Loggers.tail(output, logTail);
+        }
+        return output;
+    }
+
+    private ProcessOutput getLoggingOutputConfig() throws MojoFailureException {
 
         final LoggingStyle loggingStyle = LoggingStyle.valueOf(logging.toUpperCase());
 
@@ -455,6 +1619,12 @@ public class StartMongoMojo extends AbstractMongoMojo {
                 return Loggers.file(logFile, logFileEncoding);
             case NONE:
                 return Loggers.none();
+            case STRUCTURED:
+                try {
+                    return Loggers.structured(getLog(), logLevel, logComponents);
+                } catch (final IllegalArgumentException e) {
+                    throw new MojoFailureException("Unexpected log level encountered: \"" + logLevel + "\"");
+                }
             default:
                 throw new MojoFailureException("Unexpected logging style encountered: \"" + logging + "\" -> " +
                     loggingStyle);
@@ -464,12 +1634,24 @@ public class StartMongoMojo extends AbstractMongoMojo {
 
     private IRuntimeConfig createRuntimeConfig() throws MojoFailureException {
         final ICommandLinePostProcessor commandLinePostProcessor;
-        if (authEnabled) {
+        if (authEnabled || slowOperationMillis != null || wiredTigerCacheSizeGB != null || resourceLimits != null) {
             commandLinePostProcessor = new ICommandLinePostProcessor() {
                 @Override
                 public List<String> process(final Distribution distribution, final List<String> args) {
-                    args.remove("--noauth");
-                    args.add("--auth");
+                    if (authEnabled) {
+                        args.remove("--noauth");
+                        args.add("--auth");
+                    }
+                    if (slowOperationMillis != null) {
+                        args.add("--slowms");
+                        args.add(String.valueOf(slowOperationMillis));
+                    }
+                    if (wiredTigerCacheSizeGB != null) {
+                        args.add("--wiredTigerCacheSizeGB");
+                        args.add(String.valueOf(wiredTigerCacheSizeGB));
+                    }
+                    if (resourceLimits != null)
+                        return resourceLimits.wrap(args);
                     return args;
                 }
             };
@@ -486,6 +1668,10 @@ public class StartMongoMojo extends AbstractMongoMojo {
     }
 
     private IArtifactStore createArtifactStore() throws MojoFailureException {
+        return createArtifactStore(Command.MongoD, true);
+    }
+
+    private IArtifactStore createArtifactStore(final Command command, final boolean useCache) throws MojoFailureException {
         final ITempNaming naming;
         if (executableNaming == null)
             throw new IllegalStateException("executableNaming should never be null!");
@@ -496,47 +1682,105 @@ public class StartMongoMojo extends AbstractMongoMojo {
         else
             throw new MojoFailureException("Unexpected executable naming type encountered: \"" + executableNaming + "\"");
 
-        de.flapdoodle.embed.process.config.store.DownloadConfigBuilder downloadConfig = new DownloadConfigBuilder().defaultsForCommand(Command.MongoD).downloadPath(downloadPath);
+        de.flapdoodle.embed.process.config.store.DownloadConfigBuilder downloadConfig = new DownloadConfigBuilder().defaultsForCommand(command).downloadPath(downloadPath);
         if (artifactDirectory != null) {
             final IDirectory storePath = new FixedPath(artifactDirectory);
             downloadConfig = downloadConfig.artifactStorePath(storePath);
         }
-        return new ArtifactStoreBuilder().defaults(Command.MongoD).download(downloadConfig.build()).executableNaming(naming).build();
+        final ArtifactStoreBuilder artifactStore = new ArtifactStoreBuilder().defaults(command);
+        if (getDistributionSource() == DistributionSource.REPOSITORY)
+            artifactStore.downloader(createRepositoryDownloader());
+        return artifactStore.download(downloadConfig.build()).executableNaming(naming).useCache(useCache).build();
+    }
+
+    private DistributionSource getDistributionSource() throws MojoFailureException {
+        try {
+            return DistributionSource.valueOf(distributionSource.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected distribution source encountered: \"" + distributionSource + "\"");
+        }
     }
 
-    private IFeatureAwareVersion createVersion() {
+    private MavenRepositoryDownloader createRepositoryDownloader() throws MojoFailureException {
+        if (localRepository == null || artifactFactory == null || artifactResolver == null)
+            throw new MojoFailureException("The repository distribution source requires Maven's artifact resolver");
+
+        final List<ArtifactRepository> repositories = new ArrayList<ArtifactRepository>();
+        if (distributionRepositories != null) {
+            for (int index = 0; index < distributionRepositories.length; index++) {
+                final String url = distributionRepositories[index];
+                // a corrupt download over the network must not end up in the
+                // local repository, a plain directory mirror rarely has
+                // checksums.
+                final String checksumPolicy = (url.startsWith("file:") ? ArtifactRepositoryPolicy.CHECKSUM_POLICY_WARN
+                    : ArtifactRepositoryPolicy.CHECKSUM_POLICY_FAIL);
+                final ArtifactRepositoryPolicy policy = new ArtifactRepositoryPolicy(true, ArtifactRepositoryPolicy.UPDATE_POLICY_NEVER, checksumPolicy);
+                try {
+                    repositories.add(artifactRepositoryFactory.createArtifactRepository("mongodb-distribution-" + index, url,
+                        ArtifactRepositoryFactory.DEFAULT_LAYOUT_ID, policy, policy));
+                } catch (final UnknownRepositoryLayoutException e) {
+                    throw new MojoFailureException("Unable to use the distribution repository " + url, e);
+                }
+            }
+        }
+        // these already carry the mirrors, proxies and credentials of the
+        // settings.
+        if (project != null && project.getRemoteArtifactRepositories() != null)
+            repositories.addAll(project.getRemoteArtifactRepositories());
 
-        final Feature[] features = getFeatures().toArray(new Feature[getFeatures().size()]);
+        return new MavenRepositoryDownloader(distributionGroupId, distributionArtifactId, artifactFactory, artifactResolver,
+            localRepository, repositories, (offline ? null : new Downloader()), getLog());
+    }
 
-        if (this.version == null || this.version.equals("")) {
-            if (features.length == 0)
-                return Version.Main.PRODUCTION;
-            this.version = Version.Main.PRODUCTION.asInDownloadPath();
+    /**
+     * Makes sure the distribution of this configuration, and of every
+     * instance and version, is in the artifact store.
+     */
+    void prefetch() throws MojoExecutionException, MojoFailureException {
+        if (this.proxyHost != null && this.proxyHost.length() > 0) {
+            this.addProxySelector();
         }
 
-        String versionEnumName = this.version.toUpperCase().replaceAll("\\.", "_");
+        final InstanceConfig[] matrix = getInstanceMatrix();
+        if (matrix.length > 0) {
+            for (final InstanceConfig instance : matrix)
+                forInstance(instance).prefetchDistribution();
+        } else {
+            prefetchDistribution();
+        }
+    }
 
-        if (versionEnumName.charAt(0) != 'V') {
-            versionEnumName = "V" + versionEnumName;
+    private void prefetchDistribution() throws MojoExecutionException, MojoFailureException {
+        final Distribution distribution = Distribution.detectFor(createVersion());
+        try {
+            if (!createArtifactStore().checkDistribution(distribution))
+                throw new MojoExecutionException("Unable to provide MongoDB distribution " + distribution);
+        } catch (final DistributionException e) {
+            throw new MojoExecutionException("Failed to download MongoDB distribution: " + e.withDistribution(), e);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Failed to download MongoDB distribution " + distribution, e);
         }
+        getLog().info("MongoDB distribution " + distribution + " is available");
+    }
+
+    private enum DistributionSource {
+        DOWNLOAD, REPOSITORY
+    }
+
+    private enum MongoImportCache {
+        SESSION, AGENT
+    }
+
+    private IFeatureAwareVersion createVersion() throws MojoFailureException {
+        if (setVersion != null)
+            return setVersion;
 
-        IVersion determinedVersion;
         try {
-            determinedVersion = Version.valueOf(versionEnumName);
+            setVersion = VersionResolver.resolve(this.version, getFeatures(), getLog());
         } catch (final IllegalArgumentException e) {
-            getLog().warn("Unrecognised MongoDB version '" + this.version + "', this might be a new version that we don't yet know about. Attemping download anyway...");
-            determinedVersion = new IVersion() {
-                @Override
-                public String asInDownloadPath() {
-                    return version;
-                }
-            };
+            throw new MojoFailureException(e.getMessage());
         }
-
-        if (features.length == 0)
-            return Versions.withFeatures(determinedVersion);
-        else
-            return Versions.withFeatures(determinedVersion, features);
+        return setVersion;
     }
 
     private void addProxySelector() {
@@ -588,7 +1832,7 @@ public class StartMongoMojo extends AbstractMongoMojo {
             setPort = PortUtils.allocateRandomPort();
         else
             setPort = Integer.valueOf(port);
-        project.getProperties().put("mongodb.port", String.valueOf(setPort));
+        project.getProperties().put(propertyName("port"), String.valueOf(setPort));
         return setPort;
     }
 
@@ -600,55 +1844,453 @@ public class StartMongoMojo extends AbstractMongoMojo {
         }
     }
 
-    private void startImport() throws MojoExecutionException {
+    private void startImport() throws MojoExecutionException, MojoFailureException {
         if (imports == null || imports.length == 0)
             return;
 
         final List<MongoImportProcess> pendingMongoProcess = new ArrayList<MongoImportProcess>();
+        final List<SeedingCheckpoint.Step> pendingSteps = new ArrayList<SeedingCheckpoint.Step>();
 
         getLog().info("Default import database: " + defaultImportDatabase);
 
+        awaitMongoImport();
+        try {
+            for (final ImportDataConfig importData : imports) {
+                verify(importData);
+                final SeedingCheckpoint.Step step = seedingStep("import of " + importData.getFile() + " into "
+                    + (StringUtils.isBlank(importData.getDatabase()) ? defaultImportDatabase : importData.getDatabase()) + "." + importData.getCollection(),
+                    importData.toString(), new File(importData.getFile()));
+                if (isSeeded(step))
+                    continue;
+
+                final MongoImportProcess importProcess = startImport(importData);
+                if (importProcess == null) {
+                    seeded(step);
+                    continue;
+                }
+
+                if (parallelImport) {
+                    pendingMongoProcess.add(importProcess);
+                    pendingSteps.add(step);
+                } else {
+                    waitFor(importProcess);
+                    seeded(step);
+                }
+            }
+
+            for (int index = 0; index < pendingMongoProcess.size(); index++) {
+                waitFor(pendingMongoProcess.get(index));
+                seeded(pendingSteps.get(index));
+            }
+        } finally {
+            // the extracted mongoimport stays with its store
+            preparedMongoImport = null;
+        }
+    }
+
+    /**
+     * Downloads and extracts mongoimport on a background thread while mongod
+     * boots, unless an earlier execution already did.
+     */
+    private void prepareMongoImport() throws MojoFailureException {
+        if (!usesMongoImport())
+            return;
+
+        final IArtifactStore artifactStore = getMongoImportArtifactStore();
+        final Distribution distribution = Distribution.detectFor(createVersion());
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        preparedMongoImport = executor.submit(new Callable<IExtractedFileSet>() {
+            @Override
+            public IExtractedFileSet call() throws IOException {
+                if (!artifactStore.checkDistribution(distribution))
+                    throw new IOException("Unable to provide mongoimport from " + distribution);
+                return artifactStore.extractFileSet(distribution);
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void awaitMongoImport() throws MojoExecutionException {
+        if (preparedMongoImport == null)
+            return;
+        try {
+            preparedMongoImport.get();
+        } catch (final ExecutionException e) {
+            preparedMongoImport = null;
+            throw new MojoExecutionException("Unable to prepare mongoimport", e.getCause());
+        } catch (final InterruptedException e) {
+            throw new MojoExecutionException("Interrupted while preparing mongoimport", e);
+        }
+    }
+
+    private boolean usesMongoImport() throws MojoFailureException {
+        if (imports == null)
+            return false;
         for (final ImportDataConfig importData : imports) {
+            if (usesMongoImport(importData))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the import runs mongoimport rather than the driver. The
+     * in-memory backend has no mongoimport binary to run, and mongoimport
+     * could only be given credentials on its command line, where every user
+     * of the machine can read them.
+     */
+    private boolean usesMongoImport(final ImportDataConfig importData) throws MojoFailureException {
+        return getImportFormat(importData) == ImportFormat.JSON && importData.getWorkers() == 1
+            && getBackend() != Backend.INMEMORYJAVA && getCredentials().isEmpty();
+    }
+
+    /**
+     * The store mongoimport is extracted from, shared by every import and
+     * every execution in the session with the same distribution settings so
+     * each version is extracted once rather than once per import.
+     */
+    private IArtifactStore getMongoImportArtifactStore() throws MojoFailureException {
+        final MongoImportCache cache = getMongoImportCache();
+        final String key = cache + "|" + downloadPath + "|" + artifactDirectory + "|" + distributionSource + "|" + executableNaming;
+        synchronized (MONGO_IMPORT_STORES) {
+            PreparedExecutableStore store = MONGO_IMPORT_STORES.get(key);
+            if (store == null) {
+                final File directory = (cache == MongoImportCache.AGENT ? new File(getArtifactStoreDirectory(), "executables") : null);
+                store = new PreparedExecutableStore(createArtifactStore(Command.MongoImport, false), directory,
+                    Command.MongoImport.commandName() + (Platform.detect() == Platform.Windows ? ".exe" : ""));
+                if (MONGO_IMPORT_STORES.isEmpty())
+                    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (MONGO_IMPORT_STORES) {
+                                for (final PreparedExecutableStore prepared : MONGO_IMPORT_STORES.values())
+                                    prepared.close();
+                            }
+                        }
+                    }, "mongoimport-cleanup"));
+                MONGO_IMPORT_STORES.put(key, store);
+            }
+            return store;
+        }
+    }
+
+    private MongoImportCache getMongoImportCache() throws MojoFailureException {
+        try {
+            return MongoImportCache.valueOf(mongoImportCache.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected mongoimport cache encountered: \"" + mongoImportCache + "\"");
+        }
+    }
 
-            getLog().info("Import " + importData);
+    private File getArtifactStoreDirectory() {
+        return (artifactDirectory != null ? new File(artifactDirectory) : new File(System.getProperty("user.home"), ".embedmongo"));
+    }
+
+    /**
+     * Starts a single import.
+     *
+     * @return the mongoimport process still to be waited for, or null when
+     * the import has already completed.
+     */
+    private MongoImportProcess startImport(final ImportDataConfig importData) throws MojoExecutionException, MojoFailureException {
+        getLog().info("Import " + importData);
+
+        verify(importData);
+        String database = importData.getDatabase();
+
+        if (StringUtils.isBlank(database)) {
+            database = defaultImportDatabase;
+        }
+
+        if (getImportFormat(importData) == ImportFormat.BSON) {
+            importBson(importData, database);
+            return null;
+        }
+
+        if (!usesMongoImport(importData)) {
+            importJsonArray(importData, database);
+            return null;
+        }
+
+        try {
+            final IMongoImportConfig mongoImportConfig = new MongoImportConfigBuilder()
+                .version(createVersion())
+                .net(new Net(bindIp, getPort(), Network.localhostIsIPv6()))
+                .db(database)
+                .collection(importData.getCollection())
+                .upsert(importData.getUpsertOnImport())
+                .dropCollection(importData.getDropOnImport())
+                .importFile(importData.getFile())
+                .jsonArray(true)
+                .timeout(new Timeout(importData.getTimeout()))
+                .build();
+
+            final MongoImportExecutable mongoImport = createMongoImportStarter(importData).prepare(mongoImportConfig);
+
+            return mongoImport.start();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unexpected IOException encountered", e);
+        }
+    }
 
-            verify(importData);
-            String database = importData.getDatabase();
+    private void startGeneration() throws MojoExecutionException, MojoFailureException {
+        if (generators == null || generators.length == 0)
+            return;
 
-            if (StringUtils.isBlank(database)) {
-                database = defaultImportDatabase;
+        try {
+            for (final GeneratorConfig generatorConfig : generators) {
+                getLog().info("Generate " + generatorConfig);
+
+                String database = generatorConfig.getDatabase();
+                if (StringUtils.isBlank(database))
+                    database = defaultImportDatabase;
+                if (StringUtils.isBlank(database))
+                    throw new MojoFailureException("Database is required you can either define a defaultImportDatabase or a <database> on generator tags");
+                if (StringUtils.isBlank(generatorConfig.getCollection()))
+                    throw new MojoFailureException("Collection is required on generator tags");
+                if (generatorConfig.getCount() < 0)
+                    throw new MojoFailureException("Generator count must not be negative");
+                final SeedingCheckpoint.Step step = seedingStep("generation of " + database + "." + generatorConfig.getCollection(), generatorConfig.toString());
+                if (isSeeded(step))
+                    continue;
+
+                final DataGenerator dataGenerator;
+                try {
+                    dataGenerator = new DataGenerator(new DocumentGenerator(generatorConfig.getSeed(), generatorConfig.getFields()),
+                        generatorConfig.getBatchSize(), generatorConfig.getThreads());
+                } catch (final IllegalArgumentException e) {
+                    throw new MojoFailureException(e.getMessage());
+                }
+
+                final WriteConcern writeConcern = getWriteConcern(generatorConfig.getWriteConcern());
+                final int threads = (generatorConfig.getThreads() > 0 ? generatorConfig.getThreads() : Runtime.getRuntime().availableProcessors());
+                final MongoClient mongoClient = connectForSeeding(writeConcern, threads);
+                try {
+                    MongoCollection<BsonDocument> collection = mongoClient.getDatabase(database).getCollection(generatorConfig.getCollection(), BsonDocument.class);
+                    if (writeConcern != null)
+                        collection = collection.withWriteConcern(writeConcern);
+                    if (generatorConfig.getDropOnImport())
+                        collection.drop();
+
+                    final long started = System.currentTimeMillis();
+                    dataGenerator.generate(collection, generatorConfig.getCount());
+                    awaitSeeding(mongoClient, writeConcern);
+                    getLog().info("Generated " + generatorConfig.getCount() + " document(s) in " + (System.currentTimeMillis() - started) + "ms");
+                } finally {
+                    mongoClient.close();
+                }
+                seeded(step);
             }
+        } catch (final ExecutionException e) {
+            throw new MojoExecutionException("Unable to generate data", e.getCause());
+        } catch (final InterruptedException e) {
+            throw new MojoExecutionException("Thread execution interrupted", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to generate data", e);
+        }
+    }
 
-            try {
-                final IMongoImportConfig mongoImportConfig = new MongoImportConfigBuilder()
-                    .version(createVersion())
-                    .net(new Net(bindIp, getPort(), Network.localhostIsIPv6()))
-                    .db(database)
-                    .collection(importData.getCollection())
-                    .upsert(importData.getUpsertOnImport())
-                    .dropCollection(importData.getDropOnImport())
-                    .importFile(importData.getFile())
-                    .jsonArray(true)
-                    .timeout(new Timeout(importData.getTimeout()))
-                    .build();
-
-                final MongoImportExecutable mongoImport = MongoImportStarter.getDefaultInstance().prepare(mongoImportConfig);
-
-                final MongoImportProcess importProcess = mongoImport.start();
-
-                if (parallelImport)
-                    pendingMongoProcess.add(importProcess);
-                else
-                    waitFor(importProcess);
-            } catch (final IOException e) {
-                throw new MojoExecutionException("Unexpected IOException encountered", e);
+    private MongoImportStarter createMongoImportStarter(final ImportDataConfig importData) throws MojoFailureException {
+        final WriteConcern configured = getWriteConcern(importData.getWriteConcern());
+        final WriteConcern writeConcern;
+        if (isUnacknowledged(configured)) {
+            // the writes of another process can not be waited for
+            getLog().warn("mongoimport can not import '" + importData.getFile() + "' unacknowledged, it is imported with the default write concern");
+            writeConcern = null;
+        } else {
+            writeConcern = configured;
+        }
+        final boolean ordered = Boolean.TRUE.equals(importData.getOrdered());
+        final ICommandLinePostProcessor commandLinePostProcessor;
+        if (writeConcern != null || ordered) {
+            commandLinePostProcessor = new ICommandLinePostProcessor() {
+                @Override
+                public List<String> process(final Distribution distribution, final List<String> args) {
+                    if (writeConcern != null) {
+                        args.add("--writeConcern");
+                        args.add(writeConcern.asDocument().toJson());
+                    }
+                    if (ordered)
+                        args.add("--maintainInsertionOrder");
+                    return args;
+                }
+            };
+        } else {
+            commandLinePostProcessor = new ICommandLinePostProcessor.Noop();
+        }
+
+        return MongoImportStarter.getInstance(new RuntimeConfigBuilder()
+            .defaults(Command.MongoImport)
+            .artifactStore(getMongoImportArtifactStore())
+            .commandLinePostProcessor(commandLinePostProcessor)
+            .build());
+    }
+
+    /**
+     * @return the configured write concern, or null when none is configured.
+     */
+    private WriteConcern getWriteConcern(final String configured) throws MojoFailureException {
+        if (StringUtils.isBlank(configured))
+            return null;
+        final WriteConcern writeConcern = parseWriteConcern(configured);
+        if (writeConcern == null)
+            throw new MojoFailureException("Unexpected write concern encountered: \"" + configured + "\"");
+        return writeConcern;
+    }
+
+    /**
+     * Parses a write concern given either by name, such as unacknowledged or
+     * majority, or in the w:&lt;n&gt;, w:majority and j:&lt;boolean&gt; forms
+     * of the mongo shell.
+     *
+     * @return the write concern, or null when it is not recognized.
+     */
+    static WriteConcern parseWriteConcern(final String configured) {
+        final String name = configured.toLowerCase().replace(" ", "");
+        if ("w:0".equals(name) || "w0".equals(name) || "unacknowledged".equals(name))
+            return WriteConcern.UNACKNOWLEDGED;
+        if ("w:1".equals(name) || "w1".equals(name) || "acknowledged".equals(name))
+            return WriteConcern.ACKNOWLEDGED;
+        if ("w:majority".equals(name) || "majority".equals(name))
+            return WriteConcern.MAJORITY;
+        if ("j:true".equals(name) || "journaled".equals(name))
+            return WriteConcern.JOURNALED;
+        if ("j:false".equals(name))
+            return new WriteConcern(1, 0, false, false);
+        if (name.matches("w:[0-9]+"))
+            return new WriteConcern(Integer.parseInt(name.substring(2)));
+        return WriteConcern.valueOf(name);
+    }
+
+    private static boolean isUnacknowledged(final WriteConcern writeConcern) {
+        return (writeConcern != null && !writeConcern.isAcknowledged());
+    }
+
+    /**
+     * Connects for seeding with the given write concern. Unacknowledged
+     * writes share a single connection so they can be waited for.
+     */
+    private MongoClient connectForSeeding(final WriteConcern writeConcern, final int writers) {
+        return (isUnacknowledged(writeConcern) ? connectToMongo(SeedingBarrier.clientOptions(writers)) : connectToMongo());
+    }
+
+    private static void awaitSeeding(final MongoClient mongoClient, final WriteConcern writeConcern) {
+        if (isUnacknowledged(writeConcern))
+            SeedingBarrier.await(mongoClient);
+    }
+
+    private int getBatchSize(final ImportDataConfig importData) {
+        return (importData.getBatchSize() != null ? importData.getBatchSize() : BSON_IMPORT_BATCH_SIZE);
+    }
+
+    /**
+     * Whether any import or generator is written without acknowledgement, so
+     * the seeded data is flushed once seeding is done.
+     */
+    private boolean isSeedingUnacknowledged() throws MojoFailureException {
+        if (imports != null) {
+            for (final ImportDataConfig importData : imports) {
+                if (isUnacknowledged(getWriteConcern(importData.getWriteConcern())))
+                    return true;
+            }
+        }
+        if (generators != null) {
+            for (final GeneratorConfig generatorConfig : generators) {
+                if (isUnacknowledged(getWriteConcern(generatorConfig.getWriteConcern())))
+                    return true;
             }
+        }
+        return false;
+    }
+
+    private ImportFormat getImportFormat(final ImportDataConfig importData) throws MojoFailureException {
+        if (StringUtils.isBlank(importData.getFormat()))
+            return ImportFormat.JSON;
+        try {
+            return ImportFormat.valueOf(importData.getFormat().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected import format encountered: \"" + importData.getFormat() + "\"");
+        }
+    }
+
+    private void importBson(final ImportDataConfig importData, final String database) throws MojoExecutionException, MojoFailureException {
+        final WriteConcern writeConcern = getWriteConcern(importData.getWriteConcern());
+        final MongoClient mongoClient = connectForSeeding(writeConcern, 1);
+        try {
+            MongoCollection<RawBsonDocument> collection = mongoClient.getDatabase(database).getCollection(importData.getCollection(), RawBsonDocument.class);
+            if (writeConcern != null)
+                collection = collection.withWriteConcern(writeConcern);
+            final long count = new BsonImporter(getBatchSize(importData), importData.getOrdered()).importFile(new File(importData.getFile()), collection, importData.getDropOnImport(), importData.getUpsertOnImport());
+            awaitSeeding(mongoClient, writeConcern);
+            getLog().info("Imported " + count + " document(s) from '" + importData.getFile() + "'");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Cannot import '" + importData.getFile() + "'", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Cannot import '" + importData.getFile() + "'", e);
+        } finally {
+            mongoClient.close();
+        }
+    }
 
+    private void importJsonArray(final ImportDataConfig importData, final String database) throws MojoExecutionException, MojoFailureException {
+        final int workers = (importData.getWorkers() > 0 ? importData.getWorkers() : Runtime.getRuntime().availableProcessors());
+        final WriteConcern writeConcern = getWriteConcern(importData.getWriteConcern());
+        final MongoClient mongoClient = connectForSeeding(writeConcern, workers);
+        try {
+            MongoCollection<BsonDocument> collection = mongoClient.getDatabase(database).getCollection(importData.getCollection(), BsonDocument.class);
+            if (writeConcern != null)
+                collection = collection.withWriteConcern(writeConcern);
+            final long count = new JsonArrayImporter(getBatchSize(importData), workers, importData.getOrdered()).importFile(new File(importData.getFile()), collection, importData.getDropOnImport(), importData.getUpsertOnImport());
+            awaitSeeding(mongoClient, writeConcern);
+            getLog().info("Imported " + count + " document(s) from '" + importData.getFile() + "' with " + workers + " worker(s)");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Cannot import '" + importData.getFile() + "'", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Cannot import '" + importData.getFile() + "'", e);
+        } catch (final JsonParseException e) {
+            throw new MojoExecutionException("Cannot import '" + importData.getFile() + "'", e);
+        } finally {
+            mongoClient.close();
         }
+    }
 
-        for (final MongoImportProcess importProcess : pendingMongoProcess)
-            waitFor(importProcess);
+    /**
+     * Connects as the first configured user, or without credentials when
+     * there is none.
+     */
+    MongoClient connectToMongo() {
+        return connectToMongo(MongoClientOptions.builder().build());
+    }
+
+    private MongoClient connectToMongo(final MongoClientOptions options) {
+        return new MongoClient(new ServerAddress("localhost", getPort()), getCredentials(), options);
+    }
+
+    /**
+     * Connects as the first user once it exists. Until then, in a fresh
+     * database directory, mongod only accepts the anonymous connections of
+     * the localhost exception.
+     */
+    private MongoClient connectBeforeUsers() {
+        final MongoClient authenticated = connectToMongo();
+        if (getCredentials().isEmpty())
+            return authenticated;
+        try {
+            authenticated.getDatabase("admin").runCommand(new Document("ping", 1));
+            return authenticated;
+        } catch (final MongoSecurityException e) {
+            authenticated.close();
+            return new MongoClient(new ServerAddress("localhost", getPort()));
+        }
+    }
 
+    /**
+     * @return the credentials of the first user, or none.
+     */
+    private List<MongoCredential> getCredentials() {
+        if (users != null && users.length > 0)
+            return singletonList(UserProvisioner.credential(users[0]));
+        return Collections.emptyList();
     }
 
     private void waitFor(final MongoImportProcess importProcess) throws MojoExecutionException {
@@ -690,9 +2332,9 @@ public class StartMongoMojo extends AbstractMongoMojo {
 
             for (final File scriptFile : initConfig.getScripts()) {
                 if (scriptFile.isDirectory())
-                    this.processScriptDirectory(db, scriptFile);
+                    this.processScriptDirectory(db, scriptFile, initConfig);
                 else
-                    this.processScriptFile(db, scriptFile);
+                    this.processScriptFile(db, scriptFile, initConfig);
             }
         }
     }
@@ -703,60 +2345,142 @@ public class StartMongoMojo extends AbstractMongoMojo {
             throw new MojoExecutionException("Database name is missing");
         }
 
-        final MongoClient mongoClient = new MongoClient(new ServerAddress("localhost", getPort()));
+        final MongoClient mongoClient = connectToMongo();
         getLog().info("Connected to MongoDB");
         return mongoClient.getDB(databaseName);
     }
 
     @Deprecated
-    private void processScriptDirectory(final DB db, final File scriptDirectory) throws MojoExecutionException {
+    private void processScriptDirectory(final DB db, final File scriptDirectory, final InitializerConfig initConfig) throws MojoExecutionException, MojoFailureException {
         final File[] files = scriptDirectory.listFiles();
         getLog().info("Folder " + scriptDirectory.getAbsolutePath() + " contains " + files.length + " file(s):");
         for (final File file : files) {
-            this.processScriptFile(db, file);
+            this.processScriptFile(db, file, initConfig);
         }
         getLog().info("Data initialized with success");
     }
 
     @Deprecated
-    private void processScriptFile(final DB db, final File scriptFile) throws MojoExecutionException {
-        Scanner scanner = null;
-        final StringBuilder instructions = new StringBuilder();
-        try {
-            scanner = new Scanner(scriptFile);
-            while (scanner.hasNextLine()) {
-                instructions.append(scanner.nextLine()).append("\n");
+    private void processScriptFile(final DB db, final File scriptFile, final InitializerConfig initConfig) throws MojoExecutionException, MojoFailureException {
+        final boolean noLock = Boolean.TRUE.equals(initConfig.getNoLock());
+        final Charset charset = getScriptCharset(initConfig);
+        final SeedingCheckpoint.Step step = seedingStep("script " + scriptFile.getAbsolutePath() + " on " + db.getName(),
+            "noLock=" + noLock + ", batchSize=" + initConfig.getBatchSize() + ", encoding=" + charset, scriptFile);
+        if (isSeeded(step))
+            return;
+
+        if (initConfig.getBatchSize() != null) {
+            streamScriptFile(db, scriptFile, noLock, charset, initConfig.getBatchSize());
+        } else {
+            Scanner scanner = null;
+            final StringBuilder instructions = new StringBuilder();
+            try {
+                scanner = new Scanner(scriptFile, charset.name());
+                while (scanner.hasNextLine()) {
+                    instructions.append(scanner.nextLine()).append("\n");
+                }
+            } catch (final FileNotFoundException e) {
+                throw new MojoExecutionException("Unable to find file with name '" + scriptFile.getName() + "'", e);
+            } finally {
+                if (scanner != null) {
+                    scanner.close();
+                }
             }
-        } catch (final FileNotFoundException e) {
+            evaluate(db, scriptFile, instructions, noLock);
+        }
+        getLog().info("- file " + scriptFile.getName() + " parsed successfully");
+        seeded(step);
+    }
+
+    /**
+     * Evaluates the script a batch of statements at a time, so no more than a
+     * batch of it is ever held in memory.
+     */
+    @Deprecated
+    private void streamScriptFile(final DB db, final File scriptFile, final boolean noLock, final Charset charset, final int batchSize) throws MojoExecutionException, MojoFailureException {
+        if (batchSize <= 0)
+            throw new MojoFailureException("Initialization batchSize must be positive");
+
+        final ScriptStatementReader reader;
+        try {
+            reader = new ScriptStatementReader(scriptFile, charset);
+        } catch (final IOException e) {
             throw new MojoExecutionException("Unable to find file with name '" + scriptFile.getName() + "'", e);
+        }
+        try {
+            final StringBuilder batch = new StringBuilder();
+            int statements = 0;
+            long batches = 0;
+            String statement;
+            while ((statement = reader.next()) != null) {
+                batch.append(statement).append('\n');
+                if (++statements >= batchSize || batch.length() >= MAX_SCRIPT_BATCH_CHARS) {
+                    evaluate(db, scriptFile, batch, noLock);
+                    batch.setLength(0);
+                    statements = 0;
+                    batches++;
+                }
+            }
+            if (statements > 0) {
+                evaluate(db, scriptFile, batch, noLock);
+                batches++;
+            }
+            getLog().debug("- file " + scriptFile.getName() + " evaluated in " + batches + " batch(es)");
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to read file with name '" + scriptFile.getName() + "'", e);
         } finally {
-            if (scanner != null) {
-                scanner.close();
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                getLog().debug("Unable to close " + scriptFile, e);
             }
         }
+    }
+
+    private Charset getScriptCharset(final InitializerConfig initConfig) throws MojoFailureException {
+        if (initConfig.getEncoding() == null)
+            return Charset.defaultCharset();
+        try {
+            return Charset.forName(initConfig.getEncoding());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected initialization encoding encountered: \"" + initConfig.getEncoding() + "\"");
+        }
+    }
+
+    @Deprecated
+    private void evaluate(final DB db, final File scriptFile, final CharSequence instructions, final boolean noLock) throws MojoExecutionException {
         final CommandResult result;
         try {
-            final String evalString = "(function() {" + instructions.toString() + "})();";
-            result = db.doEval(evalString, new Object[0]);
+            final String evalString = new StringBuilder(instructions.length() + 32).append("(function() {").append(instructions).append("})();").toString();
+            if (noLock)
+                result = db.command(new BasicDBObject("$eval", evalString).append("args", new Object[0]).append("nolock", true));
+            else
+                result = db.doEval(evalString, new Object[0]);
         } catch (final MongoException e) {
             throw new MojoExecutionException("Unable to execute file with name '" + scriptFile.getName() + "'", e);
         }
         if (!result.ok()) {
             getLog().error("- file " + scriptFile.getName() + " parsed with error: " + result.getErrorMessage());
-            throw new MojoExecutionException("Error while executing instructions from file '" + scriptFile.getName() + "': " + result.getErrorMessage(), result.getException());
+            throw new MojoExecutionException("Error while executing instructions from file '" + scriptFile.getName() + "': " + result.getErrorMessage()
+                + (result.getInt("code", 0) == UNAUTHORIZED ? ", eval needs a role granting anyAction on anyResource, which root does not" : ""),
+                result.getException());
         }
-        getLog().info("- file " + scriptFile.getName() + " parsed successfully");
     }
 
     private void startReplSetInitiate() throws MojoExecutionException, MojoFailureException {
         if(replSetInitiate == null)
             return;
 
-        final MongoClient mongoClient = new MongoClient(new ServerAddress("localhost", getPort()));
+        final MongoClient mongoClient = connectBeforeUsers();
         getLog().info("Connected to MongoDB");
-        final DB db = mongoClient.getDB("admin");
-
-        getLog().info("would have initated: " + replSetInitiate.makeCommand().toString());
-        db.command(new BasicDBObject("replSetInitiate", replSetInitiate.makeCommand()));
+        try {
+            new ReplicaSetInitiator(mongoClient, replSetTimeout, getLog()).initiate(replSetInitiate.toBsonDocument());
+        } catch (final InterruptedException e) {
+            throw new MojoExecutionException("Interrupted while waiting for the replica set", e);
+        } catch (final MongoException e) {
+            throw new MojoExecutionException("Unable to initiate the replica set", e);
+        } finally {
+            mongoClient.close();
+        }
     }
 }
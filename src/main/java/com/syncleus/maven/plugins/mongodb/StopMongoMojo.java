@@ -21,15 +21,29 @@
  */
 package com.syncleus.maven.plugins.mongodb;
 
+import com.mongodb.MongoCredential;
+import com.syncleus.maven.plugins.mongodb.MongodShutdown.ShutdownStrategy;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import com.syncleus.maven.plugins.mongodb.log.SlowOperationCollector;
 import de.flapdoodle.embed.mongo.MongodProcess;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
-import javax.inject.Inject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * When invoked, this goal stops an instance of mojo that was started by this
@@ -39,24 +53,191 @@ import javax.inject.Inject;
 @Mojo(name = "stop", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST)
 public class StopMongoMojo extends AbstractMongoMojo {
 
+    /**
+     * How mongod is shut down. Must be one of the following: standard,
+     * graceful, fast, async. The fast strategy kills the process and should
+     * only be used with throwaway data directories.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.shutdown", defaultValue = "standard")
+    private String shutdown;
+
+    /**
+     * The time in milliseconds a graceful shutdown may take before the process
+     * is killed.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.shutdownTimeout", defaultValue = "10000")
+    private long shutdownTimeout;
+
+    /**
+     * The file the slow operation report is written to when slow operations
+     * were collected by the start goal. The report is always logged.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.slowOperationsReport")
+    private File slowOperationsReport;
+
+    /**
+     * Fails the build when any operation mongod logged as slow took longer
+     * than this many milliseconds. Disabled when 0.
+     *
+     * @since 1.2.0
+     */
+    @Parameter(property = "mongodb.maxSlowOperationMillis", defaultValue = "0")
+    private long maxSlowOperationMillis;
+
     public StopMongoMojo() {
         super();
     }
 
     //This constructor is only present for unit testing purposes.
     StopMongoMojo(boolean skip) {
+        this("standard", 10000, skip);
+    }
+
+    //This constructor is only present for unit testing purposes.
+    StopMongoMojo(final String shutdown, final long shutdownTimeout, final boolean skip) {
         super(skip);
+        this.shutdown = shutdown;
+        this.shutdownTimeout = shutdownTimeout;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void start() throws MojoExecutionException, MojoFailureException {
+        final InMemoryMongoServer server = (InMemoryMongoServer) getPluginContext().get(StartMongoMojo
+            .IN_MEMORY_SERVER_CONTEXT_PROPERTY_NAME);
+        if (server != null) {
+            server.stop();
+            getLog().info("Stopped the in-memory server on port " + server.getPort());
+            return;
+        }
+
+        // the watchdogs would otherwise take the shutdown for a crash
+        final List<String> failures = stopWatchdogs();
+
+        List<MongoCredential> credentials = (List<MongoCredential>) getPluginContext().get(StartMongoMojo
+            .CREDENTIALS_CONTEXT_PROPERTY_NAME);
+        if (credentials == null)
+            credentials = Collections.emptyList();
+        final MongodShutdown mongodShutdown = new MongodShutdown(getShutdownStrategy(), shutdownTimeout, credentials, getLog());
+
+        final Map<String, MongodProcess> instances = (Map<String, MongodProcess>) getPluginContext().get(StartMongoMojo
+            .MONGOD_INSTANCES_CONTEXT_PROPERTY_NAME);
+        if (instances != null)
+            stopInstances(mongodShutdown, instances);
+        else
+            stopInstance(mongodShutdown);
+
+        final SlowOperationCollector slowOperations = (SlowOperationCollector) getPluginContext().get(StartMongoMojo
+            .SLOW_OPERATIONS_CONTEXT_PROPERTY_NAME);
+        if (slowOperations != null)
+            reportSlowOperations(slowOperations);
+
+        if (!failures.isEmpty())
+            throw new MojoFailureException("mongod failed while the build was running: " + StringUtils.join(failures, "; "));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> stopWatchdogs() throws MojoExecutionException {
+        final List<String> failures = new ArrayList<String>();
+        final List<MongodWatchdog> watchdogs = (List<MongodWatchdog>) getPluginContext().get(StartMongoMojo
+            .WATCHDOGS_CONTEXT_PROPERTY_NAME);
+        if (watchdogs == null)
+            return failures;
+
+        for (final MongodWatchdog watchdog : watchdogs) {
+            try {
+                watchdog.stop();
+            } catch (final InterruptedException e) {
+                throw new MojoExecutionException("Interrupted while stopping the watchdog", e);
+            }
+            failures.addAll(watchdog.getFailures());
+        }
+        return failures;
+    }
+
+    private void stopInstance(final MongodShutdown mongodShutdown) throws MojoExecutionException, MojoFailureException {
         final MongodProcess mongod = (MongodProcess) getPluginContext().get(StartMongoMojo
             .MONGOD_CONTEXT_PROPERTY_NAME);
 
         if (mongod != null) {
-            mongod.stop();
+            try {
+                mongodShutdown.shutdown(mongod);
+            } catch (final InterruptedException e) {
+                throw new MojoExecutionException("Interrupted while stopping mongod", e);
+            }
         } else {
             throw new MojoFailureException("No mongod process found, it appears embedmongo:start was not called");
         }
     }
+
+    private void stopInstances(final MongodShutdown mongodShutdown, final Map<String, MongodProcess> instances) throws MojoExecutionException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, instances.size()));
+        final Map<String, Future<?>> pending = new LinkedHashMap<String, Future<?>>();
+        for (final Map.Entry<String, MongodProcess> instance : instances.entrySet()) {
+            pending.put(instance.getKey(), executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    mongodShutdown.shutdown(instance.getValue());
+                    return null;
+                }
+            }));
+        }
+        executor.shutdown();
+
+        MojoExecutionException failure = null;
+        for (final Map.Entry<String, Future<?>> entry : pending.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (final ExecutionException e) {
+                getLog().error("Instance '" + entry.getKey() + "' failed to stop: " + e.getCause().getMessage());
+                if (failure == null)
+                    failure = new MojoExecutionException("Unable to stop instance '" + entry.getKey() + "'", e.getCause());
+            } catch (final InterruptedException e) {
+                throw new MojoExecutionException("Interrupted while stopping mongod", e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private void reportSlowOperations(final SlowOperationCollector slowOperations) throws MojoExecutionException, MojoFailureException {
+        final List<String> report = slowOperations.report();
+        for (final String line : report)
+            getLog().info(line);
+
+        if (slowOperationsReport != null) {
+            final File parent = slowOperationsReport.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+                throw new MojoExecutionException("Unable to create directory " + parent);
+            try {
+                final Writer writer = new OutputStreamWriter(new FileOutputStream(slowOperationsReport), "UTF-8");
+                try {
+                    for (final String line : report)
+                        writer.write(line + "\n");
+                } finally {
+                    writer.close();
+                }
+            } catch (final IOException e) {
+                throw new MojoExecutionException("Unable to write the slow operation report to " + slowOperationsReport, e);
+            }
+        }
+
+        if (maxSlowOperationMillis > 0 && slowOperations.getMaxMillis() > maxSlowOperationMillis)
+            throw new MojoFailureException("The slowest operation took " + slowOperations.getMaxMillis()
+                + "ms, more than the allowed " + maxSlowOperationMillis + "ms");
+    }
+
+    private ShutdownStrategy getShutdownStrategy() throws MojoFailureException {
+        try {
+            return ShutdownStrategy.valueOf(shutdown.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new MojoFailureException("Unexpected shutdown strategy encountered: \"" + shutdown + "\"");
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import java.util.Arrays;
+
+public class UserConfig {
+    private String username;
+    private String password;
+    private String database = "admin";
+    private String[] roles;
+
+    public UserConfig() {
+    }
+
+    public UserConfig(final String username, final String password, final String database, final String[] roles) {
+        this.username = username;
+        this.password = password;
+        this.database = database;
+        this.roles = roles;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * The database the user is defined in and authenticates against.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * The roles granted, either a role of the user's database such as
+     * readWrite or a role of another database such as readWrite@test.
+     * Defaults to root for users of the admin database and dbOwner
+     * otherwise.
+     */
+    public String[] getRoles() {
+        return roles;
+    }
+
+    @Override
+    public String toString() {
+        return "UserConfig{" +
+            "username='" + username + '\'' +
+            ", database='" + database + '\'' +
+            ", roles=" + Arrays.toString(roles) +
+            '}';
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoCredential;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+
+/**
+ * Creates the configured users in a running mongod without restarting it.
+ * The first user is created through the localhost exception, which mongod
+ * grants while no user exists even with --auth, so it needs a role that can
+ * create users, such as root or userAdminAnyDatabase. The other users are
+ * then created as the first one. Users which already exist, in a reused
+ * database directory, get the configured password and roles.
+ */
+public class UserProvisioner {
+    private static final int UNAUTHORIZED = 13;
+    private static final int USER_ALREADY_EXISTS = 51003;
+
+    private final Log log;
+
+    public UserProvisioner(final Log log) {
+        this.log = log;
+    }
+
+    /**
+     * @param anonymous a client without credentials.
+     * @param authenticated a client authenticated as the first user.
+     */
+    public void provision(final UserConfig[] users, final MongoClient anonymous, final MongoClient authenticated) throws MojoExecutionException {
+        if (users == null || users.length == 0)
+            return;
+
+        boolean firstCreated = false;
+        try {
+            run(anonymous, users[0], "createUser");
+            firstCreated = true;
+        } catch (final MongoCommandException e) {
+            // the localhost exception is closed once any user exists
+            if (e.getErrorCode() != UNAUTHORIZED && e.getErrorCode() != USER_ALREADY_EXISTS)
+                throw new MojoExecutionException("Unable to create user " + describe(users[0]) + ": " + e.getErrorMessage(), e);
+        }
+
+        for (int index = (firstCreated ? 1 : 0); index < users.length; index++) {
+            final UserConfig user = users[index];
+            try {
+                try {
+                    run(authenticated, user, "createUser");
+                } catch (final MongoCommandException e) {
+                    if (e.getErrorCode() != USER_ALREADY_EXISTS)
+                        throw e;
+                    run(authenticated, user, "updateUser");
+                }
+            } catch (final MongoCommandException e) {
+                throw new MojoExecutionException("Unable to create user " + describe(user) + " as " + describe(users[0])
+                    + (e.getErrorCode() == UNAUTHORIZED ? ", the first user needs a role which can create users such as root" : "")
+                    + ": " + e.getErrorMessage(), e);
+            }
+        }
+    }
+
+    private void run(final MongoClient client, final UserConfig user, final String command) {
+        client.getDatabase(user.getDatabase()).runCommand(new BsonDocument(command, new BsonString(user.getUsername()))
+            .append("pwd", new BsonString(user.getPassword()))
+            .append("roles", roles(user)));
+        log.info(("createUser".equals(command) ? "Created" : "Updated") + " user " + describe(user));
+    }
+
+    static BsonArray roles(final UserConfig user) {
+        final BsonArray roles = new BsonArray();
+        if (user.getRoles() == null || user.getRoles().length == 0) {
+            roles.add(role("admin".equals(user.getDatabase()) ? "root" : "dbOwner", user.getDatabase()));
+            return roles;
+        }
+        for (final String role : user.getRoles()) {
+            final int at = role.indexOf('@');
+            if (at < 0)
+                roles.add(role(role.trim(), user.getDatabase()));
+            else
+                roles.add(role(role.substring(0, at).trim(), role.substring(at + 1).trim()));
+        }
+        return roles;
+    }
+
+    private static BsonDocument role(final String role, final String database) {
+        return new BsonDocument("role", new BsonString(role)).append("db", new BsonString(database));
+    }
+
+    static MongoCredential credential(final UserConfig user) {
+        return MongoCredential.createCredential(user.getUsername(), user.getDatabase(), user.getPassword().toCharArray());
+    }
+
+    private static String describe(final UserConfig user) {
+        return user.getUsername() + "@" + user.getDatabase();
+    }
+}
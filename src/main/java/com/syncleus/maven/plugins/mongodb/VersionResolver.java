@@ -0,0 +1,280 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.mongo.distribution.Feature;
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.distribution.Versions;
+import de.flapdoodle.embed.process.distribution.IVersion;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the version configured for the plugin against the offline index of
+ * MongoDB releases known to flapdoodle. Besides exact versions (2.6.10,
+ * v3.0.2, V3_0_2) the following forms are understood:
+ * <ul>
+ * <li>the aliases {@code production}, {@code legacy}, {@code development}
+ * and {@code latest}</li>
+ * <li>release series such as {@code 3.0}, {@code 3.0.x}, {@code 3.x},
+ * {@code latest-3.x} or {@code latest-3.0.x}, which resolve to the newest
+ * known release in the series</li>
+ * <li>ranges such as {@code [2.6,3.0)} or {@code [3.0.2,]}, which resolve to
+ * the newest known release in the range</li>
+ * </ul>
+ * Results are cached for the lifetime of the build.
+ */
+public final class VersionResolver {
+    private static final Pattern EXACT = Pattern.compile("[vV]?(\\d+)[._](\\d+)[._](\\d+)(?:[-_]([rR][cC]\\d+))?");
+    private static final Pattern SERIES = Pattern.compile("(?:latest-)?[vV]?(\\d+)(?:\\.(\\d+))?(?:\\.[xX])?");
+    private static final Pattern RANGE = Pattern.compile("([\\[(])\\s*([^,\\s]*)\\s*,\\s*([^,\\s]*)\\s*([\\])])");
+    private static final int MAX_SUGGESTIONS = 5;
+
+    private static final ConcurrentMap<String, IFeatureAwareVersion> CACHE = new ConcurrentHashMap<String, IFeatureAwareVersion>();
+    private static final List<Release> INDEX = createIndex();
+
+    private VersionResolver() {
+    }
+
+    /**
+     * Resolves the given version specification.
+     *
+     * @param spec the configured version, may be null for the production
+     *             release.
+     * @param features the features to enable for the version.
+     * @param log used to warn about versions which are well formed but not
+     *            in the index and will be downloaded anyway.
+     * @throws IllegalArgumentException if the specification can not be
+     * resolved, the message contains suggestions.
+     */
+    public static IFeatureAwareVersion resolve(final String spec, final Set<Feature> features, final Log log) {
+        final String key = cacheKey(spec, features);
+        final IFeatureAwareVersion cached = CACHE.get(key);
+        if (cached != null)
+            return cached;
+
+        final IFeatureAwareVersion resolved = withFeatures(resolveVersion(spec == null ? "" : spec.trim(), log), features);
+        final IFeatureAwareVersion previous = CACHE.putIfAbsent(key, resolved);
+        return (previous != null ? previous : resolved);
+    }
+
+    // flapdoodle deprecated LEGACY, but it is still the only name for the
+    // previous production series that the legacy alias stands for.
+    @SuppressWarnings("deprecation")
+    private static IVersion legacy() {
+        return Version.Main.LEGACY;
+    }
+
+    private static IVersion resolveVersion(final String spec, final Log log) {
+        if (spec.length() == 0 || spec.equalsIgnoreCase("production"))
+            return Version.Main.PRODUCTION;
+        if (spec.equalsIgnoreCase("legacy"))
+            return legacy();
+        if (spec.equalsIgnoreCase("development"))
+            return Version.Main.DEVELOPMENT;
+        if (spec.equalsIgnoreCase("latest"))
+            return newest(spec, null, null, false, null, false);
+
+        final Matcher exact = EXACT.matcher(spec);
+        if (exact.matches())
+            return resolveExact(spec, exact, log);
+
+        final Matcher series = SERIES.matcher(spec);
+        if (series.matches()) {
+            final int major = Integer.parseInt(series.group(1));
+            if (series.group(2) == null)
+                return newest(spec, new int[]{major}, new int[]{major + 1}, true, null, false);
+            final int minor = Integer.parseInt(series.group(2));
+            return newest(spec, new int[]{major, minor}, new int[]{major, minor + 1}, true, null, false);
+        }
+
+        final Matcher range = RANGE.matcher(spec);
+        if (range.matches()) {
+            final int[] lower = (range.group(2).length() == 0 ? null : parseBound(spec, range.group(2)));
+            final int[] upper = (range.group(3).length() == 0 ? null : parseBound(spec, range.group(3)));
+            return newest(spec, lower, null, range.group(1).equals("["), upper, range.group(4).equals("]"));
+        }
+
+        throw new IllegalArgumentException("Unrecognised MongoDB version '" + spec + "'. Use an exact version such as "
+            + INDEX.get(0).version.asInDownloadPath() + ", a series such as latest-3.x or 3.0.x, a range such as [2.6,3.0) "
+            + "or one of production, legacy, development, latest." + suggest(spec));
+    }
+
+    private static IVersion resolveExact(final String spec, final Matcher exact, final Log log) {
+        final int[] number = new int[]{Integer.parseInt(exact.group(1)), Integer.parseInt(exact.group(2)), Integer.parseInt(exact.group(3))};
+        final String candidate = (exact.group(4) == null ? null : exact.group(4).toLowerCase());
+        for (final Release release : INDEX) {
+            if (Arrays.equals(release.number, number) && (candidate == null ? release.candidate == null : candidate.equals(release.candidate)))
+                return release.version;
+        }
+
+        // the index only knows the releases flapdoodle knew about when it was
+        // built, a well formed version may still be downloadable.
+        final String downloadPath = number[0] + "." + number[1] + "." + number[2] + (candidate == null ? "" : "-" + candidate);
+        log.warn("MongoDB version '" + spec + "' is not in the version index, this might be a new version that we don't yet know about. Attempting download anyway..." + suggest(spec));
+        return new IVersion() {
+            @Override
+            public String asInDownloadPath() {
+                return downloadPath;
+            }
+        };
+    }
+
+    private static int[] parseBound(final String spec, final String bound) {
+        final String[] parts = bound.split("\\.");
+        final int[] number = new int[parts.length];
+        try {
+            for (int index = 0; index < parts.length; index++)
+                number[index] = Integer.parseInt(parts[index]);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid bound '" + bound + "' in MongoDB version range '" + spec + "'");
+        }
+        return number;
+    }
+
+    /**
+     * Finds the newest release which is not a release candidate within the
+     * given bounds, null bounds are unbounded. The exclusive upper bound
+     * {@code below} is compared as a prefix, so {@code [3]} excludes every 3.x
+     * release.
+     */
+    private static IVersion newest(final String spec, final int[] lower, final int[] below, final boolean lowerInclusive, final int[] upper, final boolean upperInclusive) {
+        for (final Release release : INDEX) {
+            if (release.candidate != null)
+                continue;
+            if (below != null && compare(release.number, below) >= 0)
+                continue;
+            if (upper != null) {
+                final int comparison = compare(release.number, upper);
+                if (comparison > 0 || (comparison == 0 && !upperInclusive))
+                    continue;
+            }
+            if (lower != null) {
+                final int comparison = compare(release.number, lower);
+                if (comparison < 0 || (comparison == 0 && !lowerInclusive))
+                    continue;
+            }
+            return release.version;
+        }
+        throw new IllegalArgumentException("No known MongoDB release matches '" + spec + "'." + suggest(spec));
+    }
+
+    private static String suggest(final String spec) {
+        final String digits = spec.replaceAll("[^0-9]", "");
+        final List<Release> candidates = new ArrayList<Release>(INDEX);
+        Collections.sort(candidates, new Comparator<Release>() {
+            @Override
+            public int compare(final Release first, final Release second) {
+                return commonPrefix(digits, second.digits) - commonPrefix(digits, first.digits);
+            }
+        });
+
+        final StringBuilder suggestions = new StringBuilder(" Known versions include: ");
+        for (int index = 0; index < MAX_SUGGESTIONS && index < candidates.size(); index++) {
+            if (index > 0)
+                suggestions.append(", ");
+            suggestions.append(candidates.get(index).version.asInDownloadPath());
+        }
+        return suggestions.toString();
+    }
+
+    private static int commonPrefix(final String first, final String second) {
+        int length = 0;
+        while (length < first.length() && length < second.length() && first.charAt(length) == second.charAt(length))
+            length++;
+        return length;
+    }
+
+    /**
+     * Whether the version is the given release or a later one. Versions
+     * which are not numbered, such as a custom download path, count as older.
+     */
+    static boolean isAtLeast(final IVersion version, final int... release) {
+        final Matcher exact = EXACT.matcher(version.asInDownloadPath());
+        if (!exact.matches())
+            return false;
+        final int[] number = new int[]{Integer.parseInt(exact.group(1)), Integer.parseInt(exact.group(2)), Integer.parseInt(exact.group(3))};
+        return compare(number, release) >= 0;
+    }
+
+    static int compare(final int[] first, final int[] second) {
+        for (int index = 0; index < Math.min(first.length, second.length); index++) {
+            if (first[index] != second[index])
+                return (first[index] < second[index] ? -1 : 1);
+        }
+        // a shorter bound is a prefix, 3.0 compares equal to 3.0.4
+        return 0;
+    }
+
+    private static IFeatureAwareVersion withFeatures(final IVersion version, final Set<Feature> features) {
+        if (features.isEmpty() && version instanceof Version.Main)
+            return (Version.Main) version;
+        return Versions.withFeatures(version, features.toArray(new Feature[features.size()]));
+    }
+
+    private static String cacheKey(final String spec, final Set<Feature> features) {
+        final List<String> names = new ArrayList<String>();
+        for (final Feature feature : features)
+            names.add(feature.name());
+        Collections.sort(names);
+        return (spec == null ? "" : spec.trim().toLowerCase()) + names;
+    }
+
+    private static List<Release> createIndex() {
+        final List<Release> index = new ArrayList<Release>();
+        for (final Version version : Version.values())
+            index.add(new Release(version));
+        // newest first, release candidates sort below their release
+        Collections.sort(index, new Comparator<Release>() {
+            @Override
+            public int compare(final Release first, final Release second) {
+                final int comparison = VersionResolver.compare(second.number, first.number);
+                if (comparison != 0)
+                    return comparison;
+                if (first.candidate == null || second.candidate == null)
+                    return (first.candidate == null ? (second.candidate == null ? 0 : -1) : 1);
+                return second.candidate.compareTo(first.candidate);
+            }
+        });
+        return Collections.unmodifiableList(index);
+    }
+
+    private static final class Release {
+        private final Version version;
+        private final int[] number;
+        private final String candidate;
+        private final String digits;
+
+        private Release(final Version version) {
+            this.version = version;
+            final String path = version.asInDownloadPath();
+            final int dash = path.indexOf('-');
+            this.candidate = (dash < 0 ? null : path.substring(dash + 1).toLowerCase());
+            final String[] parts = (dash < 0 ? path : path.substring(0, dash)).split("\\.");
+            this.number = new int[parts.length];
+            for (int index = 0; index < parts.length; index++)
+                this.number[index] = Integer.parseInt(parts[index]);
+            this.digits = path.replaceAll("[^0-9]", "");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+/**
+ * A failed operation, reported to the client with mongod's error code.
+ */
+class CommandException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    static final int BAD_VALUE = 2;
+    static final int NAMESPACE_NOT_FOUND = 26;
+    static final int COMMAND_NOT_FOUND = 59;
+    static final int NO_REPLICATION_ENABLED = 76;
+    static final int DUPLICATE_KEY = 11000;
+
+    private final int code;
+
+    CommandException(final int code, final String message) {
+        super(message);
+        this.code = code;
+    }
+
+    int getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonNumber;
+import org.bson.BsonValue;
+
+import java.util.Map;
+
+/**
+ * Applies update documents: either a replacement document or the operators
+ * $set, $unset, $inc, $push and $setOnInsert on dotted paths. Stored
+ * documents are never modified, every update produces a copy.
+ */
+final class DocumentUpdater {
+    private DocumentUpdater() {
+    }
+
+    static boolean isOperatorUpdate(final BsonDocument update) {
+        return !update.isEmpty() && update.keySet().iterator().next().startsWith("$");
+    }
+
+    static BsonDocument apply(final BsonDocument original, final BsonDocument update, final boolean inserting) {
+        if (!isOperatorUpdate(update)) {
+            final BsonValue id = original.get("_id");
+            if (id != null && update.containsKey("_id") && QueryMatcher.compare(id, update.get("_id")) != 0)
+                throw new IllegalArgumentException("the _id field cannot be changed");
+            final BsonDocument replacement = new BsonDocument();
+            if (id != null)
+                replacement.put("_id", id);
+            for (final Map.Entry<String, BsonValue> field : update.entrySet())
+                replacement.put(field.getKey(), copy(field.getValue()));
+            return replacement;
+        }
+
+        final BsonDocument updated = copy(original).asDocument();
+        for (final Map.Entry<String, BsonValue> operator : update.entrySet()) {
+            final String name = operator.getKey();
+            if ("$setOnInsert".equals(name) && !inserting)
+                continue;
+            for (final Map.Entry<String, BsonValue> field : operator.getValue().asDocument().entrySet()) {
+                if ("_id".equals(field.getKey()) && !inserting && !"$setOnInsert".equals(name))
+                    throw new IllegalArgumentException("the _id field cannot be changed");
+                if ("$set".equals(name) || "$setOnInsert".equals(name))
+                    set(updated, field.getKey(), copy(field.getValue()));
+                else if ("$unset".equals(name))
+                    unset(updated, field.getKey());
+                else if ("$inc".equals(name))
+                    set(updated, field.getKey(), add(get(updated, field.getKey()), field.getValue()));
+                else if ("$push".equals(name))
+                    push(updated, field.getKey(), field.getValue());
+                else
+                    throw new IllegalArgumentException("unknown update operator: " + name);
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * The document an upsert starts from: every equality condition of the
+     * query.
+     */
+    static BsonDocument upsertBase(final BsonDocument query) {
+        final BsonDocument base = new BsonDocument();
+        for (final Map.Entry<String, BsonValue> condition : query.entrySet()) {
+            if (condition.getKey().startsWith("$"))
+                continue;
+            final BsonValue value = condition.getValue();
+            if (value.isDocument() && !value.asDocument().isEmpty() && value.asDocument().keySet().iterator().next().startsWith("$")) {
+                if (value.asDocument().containsKey("$eq"))
+                    set(base, condition.getKey(), copy(value.asDocument().get("$eq")));
+            } else {
+                set(base, condition.getKey(), copy(value));
+            }
+        }
+        return base;
+    }
+
+    static BsonValue copy(final BsonValue value) {
+        if (value.isDocument()) {
+            final BsonDocument copy = new BsonDocument();
+            for (final Map.Entry<String, BsonValue> field : value.asDocument().entrySet())
+                copy.put(field.getKey(), copy(field.getValue()));
+            return copy;
+        }
+        if (value.isArray()) {
+            final BsonArray copy = new BsonArray();
+            for (final BsonValue element : value.asArray())
+                copy.add(copy(element));
+            return copy;
+        }
+        return value;
+    }
+
+    private static BsonValue get(final BsonDocument document, final String path) {
+        BsonValue current = document;
+        for (final String key : path.split("\\.")) {
+            current = child(current, key);
+            if (current == null)
+                return null;
+        }
+        return current;
+    }
+
+    private static BsonValue child(final BsonValue parent, final String key) {
+        if (parent.isDocument())
+            return parent.asDocument().get(key);
+        if (parent.isArray() && key.matches("\\d+") && Integer.parseInt(key) < parent.asArray().size())
+            return parent.asArray().get(Integer.parseInt(key));
+        return null;
+    }
+
+    private static void set(final BsonDocument document, final String path, final BsonValue value) {
+        final String[] keys = path.split("\\.");
+        BsonValue current = document;
+        for (int index = 0; index < keys.length - 1; index++) {
+            BsonValue next = child(current, keys[index]);
+            if (next == null) {
+                next = new BsonDocument();
+                put(current, keys[index], next);
+            }
+            current = next;
+        }
+        put(current, keys[keys.length - 1], value);
+    }
+
+    private static void put(final BsonValue parent, final String key, final BsonValue value) {
+        if (parent.isDocument()) {
+            parent.asDocument().put(key, value);
+        } else if (parent.isArray() && key.matches("\\d+")) {
+            final BsonArray array = parent.asArray();
+            final int index = Integer.parseInt(key);
+            while (array.size() <= index)
+                array.add(BsonNull.VALUE);
+            array.set(index, value);
+        } else {
+            throw new IllegalArgumentException("cannot create field '" + key + "' in " + parent);
+        }
+    }
+
+    private static void unset(final BsonDocument document, final String path) {
+        final int last = path.lastIndexOf('.');
+        final BsonValue parent = (last < 0 ? document : get(document, path.substring(0, last)));
+        if (parent != null && parent.isDocument())
+            parent.asDocument().remove(path.substring(last + 1));
+    }
+
+    private static BsonValue add(final BsonValue current, final BsonValue increment) {
+        if (!increment.isNumber())
+            throw new IllegalArgumentException("cannot increment with non-numeric argument: " + increment);
+        if (current == null)
+            return increment;
+        if (!current.isNumber())
+            throw new IllegalArgumentException("cannot apply $inc to a value of non-numeric type " + current.getBsonType());
+
+        final BsonNumber left = current.asNumber();
+        final BsonNumber right = increment.asNumber();
+        if (left.isDouble() || right.isDouble())
+            return new BsonDouble(left.doubleValue() + right.doubleValue());
+        final long sum = left.longValue() + right.longValue();
+        if (left.isInt32() && right.isInt32() && sum == (int) sum)
+            return new BsonInt32((int) sum);
+        return new BsonInt64(sum);
+    }
+
+    private static void push(final BsonDocument document, final String path, final BsonValue value) {
+        BsonValue array = get(document, path);
+        if (array == null) {
+            array = new BsonArray();
+            set(document, path, array);
+        } else if (!array.isArray()) {
+            throw new IllegalArgumentException("the field '" + path + "' must be an array");
+        }
+
+        if (value.isDocument() && value.asDocument().containsKey("$each")) {
+            for (final BsonValue element : value.asDocument().getArray("$each"))
+                array.asArray().add(copy(element));
+        } else {
+            array.asArray().add(copy(value));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The documents of one collection, indexed by _id. Further indexes are
+ * recorded so they can be listed, unique ones are enforced through a map of
+ * their keys to the ids of the documents holding them.
+ */
+class InMemoryCollection {
+    private final String namespace;
+    private final Map<Object, BsonDocument> documents = new LinkedHashMap<Object, BsonDocument>();
+    private final Map<String, BsonDocument> indexes = new LinkedHashMap<String, BsonDocument>();
+    private final Map<String, Map<BsonDocument, Object>> uniqueKeys = new HashMap<String, Map<BsonDocument, Object>>();
+
+    InMemoryCollection(final String namespace) {
+        this.namespace = namespace;
+        indexes.put("_id_", new BsonDocument("v", new BsonInt32(1))
+            .append("key", new BsonDocument("_id", new BsonInt32(1)))
+            .append("name", new BsonString("_id_"))
+            .append("ns", new BsonString(namespace)));
+    }
+
+    String getNamespace() {
+        return namespace;
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    /**
+     * @return the stored documents matching the query, which must not be
+     * modified.
+     */
+    List<BsonDocument> find(final BsonDocument query) {
+        final BsonValue id = query.get("_id");
+        if (query.size() == 1 && id != null && !(id.isDocument() && DocumentUpdater.isOperatorUpdate(id.asDocument()))) {
+            final List<BsonDocument> found = new ArrayList<BsonDocument>(1);
+            final BsonDocument document = documents.get(key(id));
+            if (document != null && QueryMatcher.matches(document, query))
+                found.add(document);
+            return found;
+        }
+
+        final List<BsonDocument> found = new ArrayList<BsonDocument>();
+        for (final BsonDocument document : documents.values()) {
+            if (QueryMatcher.matches(document, query))
+                found.add(document);
+        }
+        return found;
+    }
+
+    /**
+     * @return the id of the inserted document.
+     */
+    BsonValue insert(final BsonDocument document) {
+        final BsonDocument stored;
+        if (document.containsKey("_id")) {
+            stored = DocumentUpdater.copy(document).asDocument();
+        } else {
+            stored = new BsonDocument("_id", new BsonObjectId(new ObjectId()));
+            for (final Map.Entry<String, BsonValue> field : document.entrySet())
+                stored.put(field.getKey(), DocumentUpdater.copy(field.getValue()));
+        }
+
+        final Object key = key(stored.get("_id"));
+        if (documents.containsKey(key))
+            throw duplicateKey("_id_", stored.get("_id"));
+        checkUnique(stored, null);
+        documents.put(key, stored);
+        addUniqueKeys(stored);
+        return stored.get("_id");
+    }
+
+    /**
+     * @return n, nModified and, after an upsert, upserted.
+     */
+    BsonDocument update(final BsonDocument query, final BsonDocument update, final boolean upsert, final boolean multi) {
+        if (multi && !DocumentUpdater.isOperatorUpdate(update))
+            throw new CommandException(CommandException.BAD_VALUE, "multi update only works with $ operators");
+
+        final List<BsonDocument> matched = find(query);
+        if (matched.isEmpty()) {
+            final BsonDocument result = new BsonDocument("n", new BsonInt32(0)).append("nModified", new BsonInt32(0));
+            if (upsert) {
+                final BsonValue id = insert(apply(DocumentUpdater.upsertBase(query), update, true));
+                result.put("n", new BsonInt32(1));
+                result.put("upserted", id);
+            }
+            return result;
+        }
+
+        int modified = 0;
+        for (final BsonDocument document : (multi ? matched : matched.subList(0, 1))) {
+            final BsonDocument updated = apply(document, update, false);
+            if (updated.equals(document))
+                continue;
+            checkUnique(updated, document);
+            removeUniqueKeys(document);
+            documents.put(key(document.get("_id")), updated);
+            addUniqueKeys(updated);
+            modified++;
+        }
+        return new BsonDocument("n", new BsonInt32(multi ? matched.size() : 1)).append("nModified", new BsonInt32(modified));
+    }
+
+    private static BsonDocument apply(final BsonDocument document, final BsonDocument update, final boolean inserting) {
+        try {
+            return DocumentUpdater.apply(document, update, inserting);
+        } catch (final IllegalArgumentException e) {
+            throw new CommandException(CommandException.BAD_VALUE, e.getMessage());
+        }
+    }
+
+    int delete(final BsonDocument query, final boolean justOne) {
+        int deleted = 0;
+        for (final BsonDocument document : find(query)) {
+            documents.remove(key(document.get("_id")));
+            removeUniqueKeys(document);
+            deleted++;
+            if (justOne)
+                break;
+        }
+        return deleted;
+    }
+
+    void createIndex(final BsonDocument index) {
+        final BsonDocument stored = DocumentUpdater.copy(index).asDocument();
+        stored.put("ns", new BsonString(namespace));
+        if (!stored.containsKey("v"))
+            stored.put("v", new BsonInt32(1));
+        final String name = stored.getString("name").getValue();
+        if (isUnique(stored)) {
+            // fail the way mongod does when the data already holds duplicates
+            final Map<BsonDocument, Object> keys = new HashMap<BsonDocument, Object>();
+            for (final Map.Entry<Object, BsonDocument> document : documents.entrySet()) {
+                final BsonDocument key = indexKey(stored, document.getValue());
+                if (keys.put(key, document.getKey()) != null)
+                    throw duplicateKey(name, key);
+            }
+            uniqueKeys.put(name, keys);
+        } else {
+            uniqueKeys.remove(name);
+        }
+        indexes.put(name, stored);
+    }
+
+    boolean dropIndex(final String name) {
+        if ("_id_".equals(name) || indexes.remove(name) == null)
+            return false;
+        uniqueKeys.remove(name);
+        return true;
+    }
+
+    void dropIndexes() {
+        final Iterator<String> names = indexes.keySet().iterator();
+        while (names.hasNext()) {
+            if (!"_id_".equals(names.next()))
+                names.remove();
+        }
+        uniqueKeys.clear();
+    }
+
+    Collection<BsonDocument> getIndexes() {
+        return indexes.values();
+    }
+
+    private void checkUnique(final BsonDocument candidate, final BsonDocument replaced) {
+        for (final Map.Entry<String, Map<BsonDocument, Object>> keys : uniqueKeys.entrySet()) {
+            final BsonDocument key = indexKey(indexes.get(keys.getKey()), candidate);
+            final Object holder = keys.getValue().get(key);
+            if (holder != null && (replaced == null || !holder.equals(key(replaced.get("_id")))))
+                throw duplicateKey(keys.getKey(), key);
+        }
+    }
+
+    private void addUniqueKeys(final BsonDocument document) {
+        for (final Map.Entry<String, Map<BsonDocument, Object>> keys : uniqueKeys.entrySet())
+            keys.getValue().put(indexKey(indexes.get(keys.getKey()), document), key(document.get("_id")));
+    }
+
+    private void removeUniqueKeys(final BsonDocument document) {
+        final Object id = key(document.get("_id"));
+        for (final Map.Entry<String, Map<BsonDocument, Object>> keys : uniqueKeys.entrySet()) {
+            final BsonDocument key = indexKey(indexes.get(keys.getKey()), document);
+            if (id.equals(keys.getValue().get(key)))
+                keys.getValue().remove(key);
+        }
+    }
+
+    private static boolean isUnique(final BsonDocument index) {
+        final BsonValue unique = index.get("unique");
+        return unique != null && unique.isBoolean() && unique.asBoolean().getValue();
+    }
+
+    private static BsonDocument indexKey(final BsonDocument index, final BsonDocument document) {
+        final BsonDocument key = new BsonDocument();
+        for (final String field : index.getDocument("key").keySet()) {
+            final List<BsonValue> values = QueryMatcher.values(document, field);
+            key.put(field, values.isEmpty() ? BsonNull.VALUE : values.get(0));
+        }
+        return key;
+    }
+
+    private CommandException duplicateKey(final String index, final BsonValue key) {
+        return new CommandException(CommandException.DUPLICATE_KEY, "E11000 duplicate key error index: " + namespace + ".$" + index
+            + " dup key: " + (key.isDocument() ? key.asDocument().toJson() : new BsonDocument("", key).toJson()));
+    }
+
+    /**
+     * The key documents are stored under, numbers of different types with
+     * the same value are the same id as they are for mongod.
+     */
+    private static Object key(final BsonValue id) {
+        return (id.isNumber() ? (Object) Double.valueOf(id.asNumber().doubleValue()) : id);
+    }
+}
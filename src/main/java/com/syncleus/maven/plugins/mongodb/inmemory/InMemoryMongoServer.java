@@ -0,0 +1,450 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for mongod which speaks the wire protocol of MongoDB 3.0 and
+ * keeps every collection in memory. It is meant for tests which only need
+ * basic CRUD: it starts in milliseconds and needs no native binaries, but
+ * supports only the commands listed in {@link InMemoryStore}, queries with
+ * the operators of {@link QueryMatcher} and no JavaScript at all.
+ */
+public class InMemoryMongoServer {
+    private static final int OP_REPLY = 1;
+    private static final int OP_UPDATE = 2001;
+    private static final int OP_INSERT = 2002;
+    private static final int OP_QUERY = 2004;
+    private static final int OP_GET_MORE = 2005;
+    private static final int OP_DELETE = 2006;
+    private static final int OP_KILL_CURSORS = 2007;
+
+    private static final int CURSOR_NOT_FOUND = 1;
+    private static final int QUERY_FAILURE = 2;
+    private static final int DEFAULT_BATCH_SIZE = 101;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final BsonDocumentCodec codec = new BsonDocumentCodec();
+    private final InMemoryStore store = new InMemoryStore();
+    private final Map<Long, Cursor> cursors = new ConcurrentHashMap<Long, Cursor>();
+    private final AtomicLong cursorIds = new AtomicLong();
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private final AtomicInteger connectionIds = new AtomicInteger();
+    private final Set<Socket> sockets = Collections.synchronizedSet(new HashSet<Socket>());
+    private final String bindIp;
+    private final int port;
+    private ServerSocket serverSocket;
+
+    /**
+     * @param bindIp the address to listen on, all addresses when null.
+     */
+    public InMemoryMongoServer(final String bindIp, final int port) {
+        this.bindIp = bindIp;
+        this.port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (serverSocket != null)
+            throw new IllegalStateException("The server is already running");
+
+        final ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(bindIp == null ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getByName(bindIp), port));
+        serverSocket = socket;
+
+        final Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(socket);
+            }
+        }, "in-memory-mongod-" + port);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public synchronized void stop() {
+        if (serverSocket == null)
+            return;
+        close(serverSocket);
+        serverSocket = null;
+        synchronized (sockets) {
+            for (final Socket socket : sockets)
+                close(socket);
+            sockets.clear();
+        }
+        cursors.clear();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    private void accept(final ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final IOException e) {
+                // closed by stop()
+                return;
+            }
+            sockets.add(socket);
+
+            final int connectionId = connectionIds.incrementAndGet();
+            final Thread connection = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket, connectionId);
+                }
+            }, "in-memory-mongod-" + port + "-conn" + connectionId);
+            connection.setDaemon(true);
+            connection.start();
+        }
+    }
+
+    private void serve(final Socket socket, final int connectionId) {
+        synchronized (store) {
+            store.connected();
+        }
+        try {
+            socket.setTcpNoDelay(true);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            final byte[] header = new byte[16];
+            while (true) {
+                try {
+                    input.readFully(header);
+                } catch (final EOFException e) {
+                    return;
+                }
+                final ByteBuffer head = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+                final int length = head.getInt();
+                final int requestId = head.getInt();
+                head.getInt();
+                final int opCode = head.getInt();
+                if (length < header.length || length > InMemoryStore.MAX_MESSAGE_SIZE)
+                    return;
+
+                final byte[] body = new byte[length - header.length];
+                input.readFully(body);
+                final BasicOutputBuffer reply = handle(opCode, requestId, ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN), connectionId);
+                if (reply != null) {
+                    reply.pipe(output);
+                    output.flush();
+                }
+            }
+        } catch (final IOException e) {
+            // the connection was closed
+        } finally {
+            sockets.remove(socket);
+            close(socket);
+            synchronized (store) {
+                store.disconnected();
+            }
+        }
+    }
+
+    /**
+     * @return the reply, or null for the operations which have none.
+     */
+    private BasicOutputBuffer handle(final int opCode, final int requestId, final ByteBuffer body, final int connectionId) throws IOException {
+        switch (opCode) {
+            case OP_QUERY:
+                return query(requestId, body, connectionId);
+            case OP_GET_MORE:
+                return getMore(requestId, body);
+            case OP_KILL_CURSORS:
+                body.getInt();
+                final int count = body.getInt();
+                for (int index = 0; index < count; index++)
+                    cursors.remove(body.getLong());
+                return null;
+            case OP_INSERT:
+            case OP_UPDATE:
+            case OP_DELETE:
+                legacyWrite(opCode, body);
+                return null;
+            default:
+                throw new IOException("Unsupported operation " + opCode);
+        }
+    }
+
+    private BasicOutputBuffer query(final int requestId, final ByteBuffer body, final int connectionId) {
+        body.getInt();
+        final String namespace = readCString(body);
+        final int skip = body.getInt();
+        final int numberToReturn = body.getInt();
+        final BsonDocument query = readDocument(body);
+        final BsonDocument fields = (body.hasRemaining() ? readDocument(body) : null);
+
+        final int dot = namespace.indexOf('.');
+        final String database = namespace.substring(0, dot);
+        final String collectionName = namespace.substring(dot + 1);
+
+        if ("$cmd".equals(collectionName)) {
+            final BsonDocument command = (query.containsKey("$query") ? query.getDocument("$query") : query);
+            return reply(requestId, 0, 0, 0, Collections.singletonList(command(database, command, connectionId)));
+        }
+
+        final List<BsonDocument> found;
+        try {
+            final BsonDocument filter = (query.containsKey("$query") ? query.getDocument("$query") : query);
+            synchronized (store) {
+                final InMemoryCollection collection = store.collection(database, collectionName, false);
+                found = (collection == null ? new ArrayList<BsonDocument>() : collection.find(filter));
+            }
+            if (query.containsKey("$orderby"))
+                QueryMatcher.sort(found, query.getDocument("$orderby"));
+        } catch (final RuntimeException e) {
+            return reply(requestId, QUERY_FAILURE, 0, 0, Collections.singletonList(new BsonDocument("$err", new BsonString(String.valueOf(e.getMessage())))
+                .append("code", new BsonInt32(e instanceof CommandException ? ((CommandException) e).getCode() : CommandException.BAD_VALUE))));
+        }
+
+        final Cursor cursor = new Cursor(found.subList(Math.min(skip, found.size()), found.size()), fields);
+        final boolean singleBatch = (numberToReturn < 0 || numberToReturn == 1);
+        final List<BsonDocument> batch = cursor.next(numberToReturn == 0 ? DEFAULT_BATCH_SIZE : Math.abs(numberToReturn));
+        long cursorId = 0;
+        if (!singleBatch && cursor.hasNext()) {
+            cursorId = cursorIds.incrementAndGet();
+            cursors.put(cursorId, cursor);
+        }
+        return reply(requestId, 0, cursorId, 0, batch);
+    }
+
+    private BasicOutputBuffer getMore(final int requestId, final ByteBuffer body) {
+        body.getInt();
+        readCString(body);
+        final int numberToReturn = body.getInt();
+        final long cursorId = body.getLong();
+
+        final Cursor cursor = cursors.get(cursorId);
+        if (cursor == null)
+            return reply(requestId, CURSOR_NOT_FOUND, 0, 0, Collections.<BsonDocument>emptyList());
+
+        final int startingFrom = cursor.position;
+        final List<BsonDocument> batch = cursor.next(numberToReturn == 0 ? Integer.MAX_VALUE : Math.abs(numberToReturn));
+        if (!cursor.hasNext()) {
+            cursors.remove(cursorId);
+            return reply(requestId, 0, 0, startingFrom, batch);
+        }
+        return reply(requestId, 0, cursorId, startingFrom, batch);
+    }
+
+    private BsonDocument command(final String database, final BsonDocument command, final int connectionId) {
+        try {
+            if (command.isEmpty())
+                throw new CommandException(CommandException.BAD_VALUE, "no command given");
+            synchronized (store) {
+                return store.command(database, command, connectionId);
+            }
+        } catch (final CommandException e) {
+            return failure(e.getCode(), e.getMessage());
+        } catch (final RuntimeException e) {
+            return failure(CommandException.BAD_VALUE, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static BsonDocument failure(final int code, final String message) {
+        return new BsonDocument("ok", new BsonDouble(0)).append("errmsg", new BsonString(message)).append("code", new BsonInt32(code));
+    }
+
+    /**
+     * Applies an unacknowledged write, errors can not be reported and are
+     * dropped like mongod drops them.
+     */
+    private void legacyWrite(final int opCode, final ByteBuffer body) {
+        final int flagsOrZero = body.getInt();
+        final String namespace = readCString(body);
+        final int dot = namespace.indexOf('.');
+        final String database = namespace.substring(0, dot);
+        final String collectionName = namespace.substring(dot + 1);
+
+        try {
+            if (opCode == OP_INSERT) {
+                final boolean continueOnError = (flagsOrZero & 1) != 0;
+                while (body.hasRemaining()) {
+                    final BsonDocument document = readDocument(body);
+                    try {
+                        synchronized (store) {
+                            store.collection(database, collectionName, true).insert(document);
+                        }
+                    } catch (final CommandException e) {
+                        if (!continueOnError)
+                            return;
+                    }
+                }
+            } else if (opCode == OP_UPDATE) {
+                final int flags = body.getInt();
+                final BsonDocument selector = readDocument(body);
+                final BsonDocument update = readDocument(body);
+                synchronized (store) {
+                    store.collection(database, collectionName, true).update(selector, update, (flags & 1) != 0, (flags & 2) != 0);
+                }
+            } else {
+                final int flags = body.getInt();
+                final BsonDocument selector = readDocument(body);
+                synchronized (store) {
+                    final InMemoryCollection collection = store.collection(database, collectionName, false);
+                    if (collection != null)
+                        collection.delete(selector, (flags & 1) != 0);
+                }
+            }
+        } catch (final RuntimeException e) {
+            // unacknowledged
+        }
+    }
+
+    private BasicOutputBuffer reply(final int responseTo, final int flags, final long cursorId, final int startingFrom, final List<BsonDocument> documents) {
+        final BasicOutputBuffer buffer = new BasicOutputBuffer();
+        buffer.writeInt32(0);
+        buffer.writeInt32(requestIds.incrementAndGet());
+        buffer.writeInt32(responseTo);
+        buffer.writeInt32(OP_REPLY);
+        buffer.writeInt32(flags);
+        buffer.writeInt64(cursorId);
+        buffer.writeInt32(startingFrom);
+        buffer.writeInt32(documents.size());
+        final BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+        for (final BsonDocument document : documents)
+            codec.encode(writer, document, EncoderContext.builder().build());
+        buffer.writeInt32(0, buffer.getPosition());
+        return buffer;
+    }
+
+    private BsonDocument readDocument(final ByteBuffer body) {
+        final int length = body.getInt(body.position());
+        final byte[] bytes = new byte[length];
+        body.get(bytes);
+        return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build());
+    }
+
+    private static String readCString(final ByteBuffer body) {
+        final int start = body.position();
+        while (body.get() != 0) {
+            // find the terminator
+        }
+        return new String(body.array(), body.arrayOffset() + start, body.position() - start - 1, UTF8);
+    }
+
+    private static void close(final ServerSocket socket) {
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // closing anyway
+        }
+    }
+
+    private static void close(final Socket socket) {
+        try {
+            socket.close();
+        } catch (final IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * The documents of a query still to be returned.
+     */
+    private static final class Cursor {
+        private final List<BsonDocument> documents;
+        private final BsonDocument fields;
+        private int position;
+
+        private Cursor(final List<BsonDocument> documents, final BsonDocument fields) {
+            this.documents = documents;
+            this.fields = fields;
+        }
+
+        boolean hasNext() {
+            return position < documents.size();
+        }
+
+        List<BsonDocument> next(final int count) {
+            final int end = (int) Math.min((long) position + count, documents.size());
+            final List<BsonDocument> batch = new ArrayList<BsonDocument>(end - position);
+            for (; position < end; position++)
+                batch.add(project(documents.get(position), fields));
+            return batch;
+        }
+
+        private static BsonDocument project(final BsonDocument document, final BsonDocument fields) {
+            if (fields == null || fields.isEmpty())
+                return document;
+
+            boolean inclusive = false;
+            for (final Map.Entry<String, BsonValue> field : fields.entrySet()) {
+                if (!"_id".equals(field.getKey()) && isIncluded(field.getValue()))
+                    inclusive = true;
+            }
+
+            final BsonDocument projected = new BsonDocument();
+            for (final Map.Entry<String, BsonValue> field : document.entrySet()) {
+                final BsonValue selector = fields.get(field.getKey());
+                final boolean keep;
+                if (selector != null)
+                    keep = isIncluded(selector);
+                else
+                    keep = ("_id".equals(field.getKey()) || !inclusive);
+                if (keep)
+                    projected.put(field.getKey(), field.getValue());
+            }
+            return projected;
+        }
+
+        private static boolean isIncluded(final BsonValue selector) {
+            if (selector.isBoolean())
+                return selector.asBoolean().getValue();
+            if (selector.isNumber())
+                return selector.asNumber().doubleValue() != 0;
+            return true;
+        }
+    }
+}
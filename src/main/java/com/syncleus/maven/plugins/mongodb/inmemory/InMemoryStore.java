@@ -0,0 +1,349 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The databases of the in-memory backend and the commands run against them.
+ * Only the commands the driver needs to connect, and the plugin needs to
+ * import, generate and seed data, are supported: isMaster, buildInfo,
+ * getLastError, ping, whatsmyuri, serverStatus, fsync, listDatabases,
+ * listCollections, listIndexes, create, createIndexes, dropIndexes, drop,
+ * dropDatabase, count, insert, update and delete. Every other command fails
+ * as unknown. Callers must hold the lock of the store.
+ */
+class InMemoryStore {
+    static final String VERSION = "3.0.0";
+    static final int MAX_WIRE_VERSION = 3;
+    static final int MAX_BSON_OBJECT_SIZE = 16 * 1024 * 1024;
+    static final int MAX_MESSAGE_SIZE = 48000000;
+    static final int MAX_WRITE_BATCH_SIZE = 1000;
+
+    private final Map<String, Map<String, InMemoryCollection>> databases = new LinkedHashMap<String, Map<String, InMemoryCollection>>();
+    private final long started = System.currentTimeMillis();
+    private int connections;
+    private int totalConnections;
+
+    void connected() {
+        connections++;
+        totalConnections++;
+    }
+
+    void disconnected() {
+        connections--;
+    }
+
+    /**
+     * @return the collection, or null when it does not exist and is not to be
+     * created.
+     */
+    InMemoryCollection collection(final String database, final String name, final boolean create) {
+        Map<String, InMemoryCollection> collections = databases.get(database);
+        if (collections == null) {
+            if (!create)
+                return null;
+            collections = new LinkedHashMap<String, InMemoryCollection>();
+            databases.put(database, collections);
+        }
+        InMemoryCollection collection = collections.get(name);
+        if (collection == null && create) {
+            collection = new InMemoryCollection(database + "." + name);
+            collections.put(name, collection);
+        }
+        return collection;
+    }
+
+    BsonDocument command(final String database, final BsonDocument command, final int connectionId) {
+        final String name = command.keySet().iterator().next();
+        final String lowerName = name.toLowerCase();
+        final BsonValue argument = command.get(name);
+
+        if ("ismaster".equals(lowerName))
+            return ok().append("ismaster", BsonBoolean.TRUE)
+                .append("maxBsonObjectSize", new BsonInt32(MAX_BSON_OBJECT_SIZE))
+                .append("maxMessageSizeBytes", new BsonInt32(MAX_MESSAGE_SIZE))
+                .append("maxWriteBatchSize", new BsonInt32(MAX_WRITE_BATCH_SIZE))
+                .append("localTime", new BsonDateTime(System.currentTimeMillis()))
+                .append("maxWireVersion", new BsonInt32(MAX_WIRE_VERSION))
+                .append("minWireVersion", new BsonInt32(0));
+        if ("buildinfo".equals(lowerName))
+            return ok().append("version", new BsonString(VERSION))
+                .append("versionArray", new BsonArray(Arrays.<BsonValue>asList(new BsonInt32(3), new BsonInt32(0), new BsonInt32(0), new BsonInt32(0))))
+                .append("maxBsonObjectSize", new BsonInt32(MAX_BSON_OBJECT_SIZE));
+        if ("getlasterror".equals(lowerName))
+            return ok().append("connectionId", new BsonInt32(connectionId)).append("n", new BsonInt32(0)).append("err", BsonNull.VALUE);
+        if ("ping".equals(lowerName))
+            return ok();
+        if ("whatsmyuri".equals(lowerName))
+            return ok().append("you", new BsonString("127.0.0.1:0"));
+        if ("serverstatus".equals(lowerName))
+            return ok().append("host", new BsonString("localhost"))
+                .append("version", new BsonString(VERSION))
+                .append("process", new BsonString("mongod"))
+                .append("uptimeMillis", new BsonInt64(System.currentTimeMillis() - started))
+                .append("connections", new BsonDocument("current", new BsonInt32(connections))
+                    .append("available", new BsonInt32(Integer.MAX_VALUE - connections))
+                    .append("totalCreated", new BsonInt32(totalConnections)));
+        if ("fsync".equals(lowerName))
+            return ok().append("numFiles", new BsonInt32(0));
+        if ("listdatabases".equals(lowerName))
+            return listDatabases();
+        if ("listcollections".equals(lowerName))
+            return cursor(database + ".$cmd.listCollections", listCollections(database));
+        if ("listindexes".equals(lowerName))
+            return cursor(database + "." + string(argument), new ArrayList<BsonDocument>(existing(database, argument).getIndexes()));
+        if ("create".equals(lowerName)) {
+            if (collection(database, string(argument), false) != null)
+                throw new CommandException(48, "collection already exists");
+            collection(database, string(argument), true);
+            return ok();
+        }
+        if ("createindexes".equals(lowerName)) {
+            final InMemoryCollection collection = collection(database, string(argument), true);
+            final int before = collection.getIndexes().size();
+            for (final BsonValue index : command.getArray("indexes"))
+                collection.createIndex(index.asDocument());
+            return ok().append("numIndexesBefore", new BsonInt32(before)).append("numIndexesAfter", new BsonInt32(collection.getIndexes().size()));
+        }
+        if ("dropindexes".equals(lowerName) || "deleteindexes".equals(lowerName)) {
+            final InMemoryCollection collection = existing(database, argument);
+            final BsonValue index = command.get("index");
+            if (index != null && index.isString() && !"*".equals(index.asString().getValue())) {
+                if (!collection.dropIndex(index.asString().getValue()))
+                    throw new CommandException(27, "index not found with name [" + index.asString().getValue() + "]");
+            } else {
+                collection.dropIndexes();
+            }
+            return ok();
+        }
+        if ("drop".equals(lowerName)) {
+            existing(database, argument);
+            databases.get(database).remove(string(argument));
+            return ok().append("ns", new BsonString(database + "." + string(argument)));
+        }
+        if ("dropdatabase".equals(lowerName)) {
+            databases.remove(database);
+            return ok().append("dropped", new BsonString(database));
+        }
+        if ("count".equals(lowerName))
+            return count(database, command);
+        if ("insert".equals(lowerName))
+            return insert(database, command);
+        if ("update".equals(lowerName))
+            return update(database, command);
+        if ("delete".equals(lowerName))
+            return delete(database, command);
+        if ("findandmodify".equals(lowerName))
+            return findAndModify(database, string(argument), command);
+        if (lowerName.startsWith("replset"))
+            throw new CommandException(CommandException.NO_REPLICATION_ENABLED, "not running with --replSet");
+
+        throw new CommandException(CommandException.COMMAND_NOT_FOUND, "no such cmd: " + name);
+    }
+
+    private BsonDocument listDatabases() {
+        final BsonArray list = new BsonArray();
+        for (final Map.Entry<String, Map<String, InMemoryCollection>> database : databases.entrySet()) {
+            list.add(new BsonDocument("name", new BsonString(database.getKey()))
+                .append("sizeOnDisk", new BsonDouble(0))
+                .append("empty", BsonBoolean.valueOf(database.getValue().isEmpty())));
+        }
+        return ok().append("databases", list).append("totalSize", new BsonDouble(0));
+    }
+
+    private List<BsonDocument> listCollections(final String database) {
+        final List<BsonDocument> collections = new ArrayList<BsonDocument>();
+        final Map<String, InMemoryCollection> names = databases.get(database);
+        if (names != null) {
+            for (final String name : names.keySet())
+                collections.add(new BsonDocument("name", new BsonString(name)).append("options", new BsonDocument()));
+        }
+        return collections;
+    }
+
+    private BsonDocument count(final String database, final BsonDocument command) {
+        final InMemoryCollection collection = collection(database, string(command.get("count")), false);
+        if (collection == null)
+            return ok().append("n", new BsonInt32(0));
+
+        final BsonValue query = command.get("query");
+        int count = (query != null && query.isDocument() ? collection.find(query.asDocument()).size() : collection.size());
+        count = Math.max(0, count - intValue(command.get("skip")));
+        final int limit = Math.abs(intValue(command.get("limit")));
+        if (limit > 0)
+            count = Math.min(count, limit);
+        return ok().append("n", new BsonInt32(count));
+    }
+
+    private BsonDocument insert(final String database, final BsonDocument command) {
+        final InMemoryCollection collection = collection(database, string(command.get("insert")), true);
+        final boolean ordered = !command.containsKey("ordered") || command.getBoolean("ordered").getValue();
+        final BsonArray writeErrors = new BsonArray();
+        int inserted = 0;
+        int index = 0;
+        for (final BsonValue document : command.getArray("documents")) {
+            try {
+                collection.insert(document.asDocument());
+                inserted++;
+            } catch (final CommandException e) {
+                writeErrors.add(writeError(index, e));
+                if (ordered)
+                    break;
+            }
+            index++;
+        }
+        return writeResult(inserted, writeErrors);
+    }
+
+    private BsonDocument update(final String database, final BsonDocument command) {
+        final InMemoryCollection collection = collection(database, string(command.get("update")), true);
+        final boolean ordered = !command.containsKey("ordered") || command.getBoolean("ordered").getValue();
+        final BsonArray writeErrors = new BsonArray();
+        final BsonArray upserted = new BsonArray();
+        int matched = 0;
+        int modified = 0;
+        int index = 0;
+        for (final BsonValue statement : command.getArray("updates")) {
+            final BsonDocument update = statement.asDocument();
+            try {
+                final BsonDocument result = collection.update(update.getDocument("q"), update.getDocument("u"),
+                    isTrue(update.get("upsert")), isTrue(update.get("multi")));
+                matched += result.getInt32("n").getValue();
+                modified += result.getInt32("nModified").getValue();
+                if (result.containsKey("upserted"))
+                    upserted.add(new BsonDocument("index", new BsonInt32(index)).append("_id", result.get("upserted")));
+            } catch (final CommandException e) {
+                writeErrors.add(writeError(index, e));
+                if (ordered)
+                    break;
+            }
+            index++;
+        }
+        final BsonDocument result = writeResult(matched, writeErrors).append("nModified", new BsonInt32(modified));
+        if (!upserted.isEmpty())
+            result.put("upserted", upserted);
+        return result;
+    }
+
+    private BsonDocument delete(final String database, final BsonDocument command) {
+        final InMemoryCollection collection = collection(database, string(command.get("delete")), false);
+        int deleted = 0;
+        for (final BsonValue statement : command.getArray("deletes")) {
+            final BsonDocument delete = statement.asDocument();
+            if (collection != null)
+                deleted += collection.delete(delete.getDocument("q"), intValue(delete.get("limit")) == 1);
+        }
+        return writeResult(deleted, new BsonArray());
+    }
+
+    private BsonDocument findAndModify(final String database, final String name, final BsonDocument command) {
+        final InMemoryCollection collection = collection(database, name, true);
+        final BsonDocument query = (command.get("query") != null && command.get("query").isDocument() ? command.getDocument("query") : new BsonDocument());
+        final List<BsonDocument> matched = collection.find(query);
+        if (command.get("sort") != null && command.get("sort").isDocument())
+            QueryMatcher.sort(matched, command.getDocument("sort"));
+        final BsonDocument before = (matched.isEmpty() ? null : matched.get(0));
+
+        if (isTrue(command.get("remove"))) {
+            if (before != null)
+                collection.delete(new BsonDocument("_id", before.get("_id")), true);
+            return ok().append("lastErrorObject", new BsonDocument("n", new BsonInt32(before == null ? 0 : 1)))
+                .append("value", before == null ? BsonNull.VALUE : before);
+        }
+
+        if (command.get("update") == null || !command.get("update").isDocument())
+            throw new CommandException(CommandException.BAD_VALUE, "Either an update or remove=true must be specified");
+        final BsonDocument update = command.getDocument("update");
+        final BsonDocument lastErrorObject = new BsonDocument("n", new BsonInt32(0)).append("updatedExisting", BsonBoolean.valueOf(before != null));
+        final BsonValue id;
+        if (before != null) {
+            id = before.get("_id");
+            collection.update(new BsonDocument("_id", id), update, false, false);
+            lastErrorObject.put("n", new BsonInt32(1));
+        } else if (isTrue(command.get("upsert"))) {
+            id = collection.update(query, update, true, false).get("upserted");
+            lastErrorObject.put("n", new BsonInt32(1));
+            lastErrorObject.put("upserted", id);
+        } else {
+            return ok().append("lastErrorObject", lastErrorObject).append("value", BsonNull.VALUE);
+        }
+
+        final BsonDocument after = collection.find(new BsonDocument("_id", id)).get(0);
+        final BsonDocument value = (isTrue(command.get("new")) ? after : before);
+        return ok().append("lastErrorObject", lastErrorObject).append("value", value == null ? BsonNull.VALUE : value);
+    }
+
+    private InMemoryCollection existing(final String database, final BsonValue name) {
+        final InMemoryCollection collection = collection(database, string(name), false);
+        if (collection == null)
+            throw new CommandException(CommandException.NAMESPACE_NOT_FOUND, "ns not found");
+        return collection;
+    }
+
+    private static BsonDocument writeError(final int index, final CommandException e) {
+        return new BsonDocument("index", new BsonInt32(index))
+            .append("code", new BsonInt32(e.getCode()))
+            .append("errmsg", new BsonString(e.getMessage()));
+    }
+
+    private static BsonDocument writeResult(final int n, final BsonArray writeErrors) {
+        final BsonDocument result = ok().append("n", new BsonInt32(n));
+        if (!writeErrors.isEmpty())
+            result.put("writeErrors", writeErrors);
+        return result;
+    }
+
+    private static BsonDocument cursor(final String namespace, final List<BsonDocument> documents) {
+        return ok().append("cursor", new BsonDocument("id", new BsonInt64(0))
+            .append("ns", new BsonString(namespace))
+            .append("firstBatch", new BsonArray(documents)));
+    }
+
+    static BsonDocument ok() {
+        return new BsonDocument("ok", new BsonDouble(1));
+    }
+
+    private static String string(final BsonValue value) {
+        if (value == null || !value.isString())
+            throw new CommandException(CommandException.BAD_VALUE, "collection name has invalid type " + (value == null ? "null" : value.getBsonType()));
+        return value.asString().getValue();
+    }
+
+    private static int intValue(final BsonValue value) {
+        return (value != null && value.isNumber() ? value.asNumber().intValue() : 0);
+    }
+
+    private static boolean isTrue(final BsonValue value) {
+        return value != null && value.isBoolean() && value.asBoolean().getValue();
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates query documents against stored documents and orders values the
+ * way mongod does. Supports equality on dotted paths, including matching
+ * elements of arrays, the comparison operators $eq, $ne, $gt, $gte, $lt,
+ * $lte, $in, $nin, $exists and $regex, and the logical operators $and, $or
+ * and $nor.
+ */
+final class QueryMatcher {
+    private QueryMatcher() {
+    }
+
+    static boolean matches(final BsonDocument document, final BsonDocument query) {
+        for (final Map.Entry<String, BsonValue> condition : query.entrySet()) {
+            final String key = condition.getKey();
+            if ("$and".equals(key)) {
+                for (final BsonValue clause : condition.getValue().asArray()) {
+                    if (!matches(document, clause.asDocument()))
+                        return false;
+                }
+            } else if ("$or".equals(key)) {
+                boolean any = false;
+                for (final BsonValue clause : condition.getValue().asArray())
+                    any = any || matches(document, clause.asDocument());
+                if (!any)
+                    return false;
+            } else if ("$nor".equals(key)) {
+                for (final BsonValue clause : condition.getValue().asArray()) {
+                    if (matches(document, clause.asDocument()))
+                        return false;
+                }
+            } else if (key.startsWith("$")) {
+                throw new IllegalArgumentException("unknown top level operator: " + key);
+            } else if (!matchesField(values(document, key), condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesField(final List<BsonValue> values, final BsonValue condition) {
+        if (!isOperatorDocument(condition))
+            return containsEqual(values, condition);
+
+        final BsonDocument operators = condition.asDocument();
+        for (final Map.Entry<String, BsonValue> operator : operators.entrySet()) {
+            final String name = operator.getKey();
+            final BsonValue operand = operator.getValue();
+            final boolean matched;
+            if ("$eq".equals(name))
+                matched = containsEqual(values, operand);
+            else if ("$ne".equals(name))
+                matched = !containsEqual(values, operand);
+            else if ("$gt".equals(name))
+                matched = containsCompared(values, operand, 1, 1);
+            else if ("$gte".equals(name))
+                matched = containsCompared(values, operand, 0, 1);
+            else if ("$lt".equals(name))
+                matched = containsCompared(values, operand, -1, -1);
+            else if ("$lte".equals(name))
+                matched = containsCompared(values, operand, -1, 0);
+            else if ("$in".equals(name))
+                matched = containsAny(values, operand.asArray());
+            else if ("$nin".equals(name))
+                matched = !containsAny(values, operand.asArray());
+            else if ("$exists".equals(name))
+                matched = (!values.isEmpty()) == isTrue(operand);
+            else if ("$regex".equals(name))
+                matched = containsMatch(values, pattern(operand, operators.get("$options")));
+            else if ("$options".equals(name))
+                matched = true;
+            else
+                throw new IllegalArgumentException("unknown operator: " + name);
+            if (!matched)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isOperatorDocument(final BsonValue condition) {
+        if (!condition.isDocument() || condition.asDocument().isEmpty())
+            return false;
+        return condition.asDocument().keySet().iterator().next().startsWith("$");
+    }
+
+    private static boolean containsEqual(final List<BsonValue> values, final BsonValue expected) {
+        // null also matches a missing field
+        if (values.isEmpty())
+            return expected.isNull();
+        if (expected.isRegularExpression())
+            return containsMatch(values, pattern(expected, null));
+        for (final BsonValue value : values) {
+            if (compare(value, expected) == 0 && typeOrder(value) == typeOrder(expected))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean containsCompared(final List<BsonValue> values, final BsonValue operand, final int lowest, final int highest) {
+        for (final BsonValue value : values) {
+            if (typeOrder(value) != typeOrder(operand))
+                continue;
+            final int comparison = Integer.signum(compare(value, operand));
+            if (comparison >= lowest && comparison <= highest)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean containsAny(final List<BsonValue> values, final BsonArray candidates) {
+        for (final BsonValue candidate : candidates) {
+            if (containsEqual(values, candidate))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean containsMatch(final List<BsonValue> values, final Pattern pattern) {
+        for (final BsonValue value : values) {
+            if (value.isString() && pattern.matcher(value.asString().getValue()).find())
+                return true;
+        }
+        return false;
+    }
+
+    private static Pattern pattern(final BsonValue regex, final BsonValue options) {
+        final String source = (regex.isRegularExpression() ? regex.asRegularExpression().getPattern() : regex.asString().getValue());
+        final String flags = (options != null && options.isString() ? options.asString().getValue()
+            : (regex.isRegularExpression() ? regex.asRegularExpression().getOptions() : ""));
+        int compiled = 0;
+        if (flags.contains("i"))
+            compiled |= Pattern.CASE_INSENSITIVE;
+        if (flags.contains("m"))
+            compiled |= Pattern.MULTILINE;
+        if (flags.contains("s"))
+            compiled |= Pattern.DOTALL;
+        if (flags.contains("x"))
+            compiled |= Pattern.COMMENTS;
+        return Pattern.compile(source, compiled);
+    }
+
+    private static boolean isTrue(final BsonValue value) {
+        if (value.isBoolean())
+            return value.asBoolean().getValue();
+        if (value.isNumber())
+            return value.asNumber().doubleValue() != 0;
+        return !value.isNull();
+    }
+
+    /**
+     * The values a dotted path reaches in a document. Arrays along the way
+     * are descended into, and an array at the end of the path contributes
+     * both itself and its elements.
+     */
+    static List<BsonValue> values(final BsonValue value, final String path) {
+        final List<BsonValue> values = new ArrayList<BsonValue>();
+        collect(value, path.split("\\."), 0, values);
+        return values;
+    }
+
+    private static void collect(final BsonValue value, final String[] path, final int index, final List<BsonValue> values) {
+        if (index == path.length) {
+            values.add(value);
+            if (value.isArray())
+                values.addAll(value.asArray().getValues());
+            return;
+        }
+
+        final String key = path[index];
+        if (value.isDocument()) {
+            final BsonValue child = value.asDocument().get(key);
+            if (child != null)
+                collect(child, path, index + 1, values);
+        } else if (value.isArray()) {
+            final BsonArray array = value.asArray();
+            if (key.matches("\\d+") && Integer.parseInt(key) < array.size()) {
+                collect(array.get(Integer.parseInt(key)), path, index + 1, values);
+            } else {
+                for (final BsonValue element : array) {
+                    if (element.isDocument())
+                        collect(element, path, index, values);
+                }
+            }
+        }
+    }
+
+    /**
+     * Orders documents by a sort specification such as {a: 1, b: -1}.
+     */
+    static void sort(final List<BsonDocument> documents, final BsonDocument orderBy) {
+        if (orderBy == null || orderBy.isEmpty())
+            return;
+        Collections.sort(documents, new Comparator<BsonDocument>() {
+            @Override
+            public int compare(final BsonDocument left, final BsonDocument right) {
+                for (final Map.Entry<String, BsonValue> key : orderBy.entrySet()) {
+                    final int direction = (key.getValue().isNumber() && key.getValue().asNumber().intValue() < 0 ? -1 : 1);
+                    final int comparison = QueryMatcher.compare(first(left, key.getKey()), first(right, key.getKey()));
+                    if (comparison != 0)
+                        return direction * comparison;
+                }
+                return 0;
+            }
+        });
+    }
+
+    private static BsonValue first(final BsonDocument document, final String path) {
+        final List<BsonValue> values = values(document, path);
+        return (values.isEmpty() ? BsonNull.VALUE : values.get(0));
+    }
+
+    /**
+     * Compares two values across types in mongod's order: null, numbers,
+     * strings, documents, arrays, binary, object ids, booleans, dates,
+     * timestamps and regular expressions.
+     */
+    static int compare(final BsonValue left, final BsonValue right) {
+        final int types = typeOrder(left) - typeOrder(right);
+        if (types != 0)
+            return types;
+
+        switch (left.getBsonType()) {
+            case INT32:
+            case INT64:
+            case DOUBLE:
+                return Double.compare(left.asNumber().doubleValue(), right.asNumber().doubleValue());
+            case STRING:
+            case SYMBOL:
+                return text(left).compareTo(text(right));
+            case DOCUMENT:
+                return compareDocuments(left.asDocument(), right.asDocument());
+            case ARRAY:
+                return compareLists(left.asArray().getValues(), right.asArray().getValues());
+            case BINARY:
+                return compareBinary(left.asBinary().getData(), right.asBinary().getData());
+            case OBJECT_ID:
+                return left.asObjectId().getValue().compareTo(right.asObjectId().getValue());
+            case BOOLEAN:
+                return (left.asBoolean().getValue() == right.asBoolean().getValue() ? 0 : (left.asBoolean().getValue() ? 1 : -1));
+            case DATE_TIME:
+                return compareLongs(left.asDateTime().getValue(), right.asDateTime().getValue());
+            case TIMESTAMP:
+                return left.asTimestamp().compareTo(right.asTimestamp());
+            case REGULAR_EXPRESSION:
+                return left.asRegularExpression().getPattern().compareTo(right.asRegularExpression().getPattern());
+            default:
+                return (left.equals(right) ? 0 : left.toString().compareTo(right.toString()));
+        }
+    }
+
+    private static int typeOrder(final BsonValue value) {
+        final BsonType type = value.getBsonType();
+        switch (type) {
+            case MIN_KEY:
+                return 0;
+            case NULL:
+            case UNDEFINED:
+                return 1;
+            case INT32:
+            case INT64:
+            case DOUBLE:
+                return 2;
+            case STRING:
+            case SYMBOL:
+                return 3;
+            case DOCUMENT:
+                return 4;
+            case ARRAY:
+                return 5;
+            case BINARY:
+                return 6;
+            case OBJECT_ID:
+                return 7;
+            case BOOLEAN:
+                return 8;
+            case DATE_TIME:
+                return 9;
+            case TIMESTAMP:
+                return 10;
+            case REGULAR_EXPRESSION:
+                return 11;
+            case MAX_KEY:
+                return 13;
+            default:
+                return 12;
+        }
+    }
+
+    private static String text(final BsonValue value) {
+        return (value.isString() ? value.asString().getValue() : value.asSymbol().getSymbol());
+    }
+
+    private static int compareDocuments(final BsonDocument left, final BsonDocument right) {
+        final Iterator<Map.Entry<String, BsonValue>> rightEntries = right.entrySet().iterator();
+        for (final Map.Entry<String, BsonValue> leftEntry : left.entrySet()) {
+            if (!rightEntries.hasNext())
+                return 1;
+            final Map.Entry<String, BsonValue> rightEntry = rightEntries.next();
+            final int values = compare(leftEntry.getValue(), rightEntry.getValue());
+            if (values != 0)
+                return values;
+            final int keys = leftEntry.getKey().compareTo(rightEntry.getKey());
+            if (keys != 0)
+                return keys;
+        }
+        return (rightEntries.hasNext() ? -1 : 0);
+    }
+
+    private static int compareLists(final List<BsonValue> left, final List<BsonValue> right) {
+        for (int index = 0; index < Math.min(left.size(), right.size()); index++) {
+            final int comparison = compare(left.get(index), right.get(index));
+            if (comparison != 0)
+                return comparison;
+        }
+        return left.size() - right.size();
+    }
+
+    private static int compareBinary(final byte[] left, final byte[] right) {
+        if (left.length != right.length)
+            return left.length - right.length;
+        for (int index = 0; index < left.length; index++) {
+            if (left[index] != right[index])
+                return (left[index] & 0xff) - (right[index] & 0xff);
+        }
+        return 0;
+    }
+
+    private static int compareLongs(final long left, final long right) {
+        return (left < right ? -1 : (left == right ? 0 : 1));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands records to another sink on a background thread so the threads reading
+ * mongod's output never wait on the Maven log. When the queue is full
+ * records are dropped rather than blocking the reader, the number dropped is
+ * reported once there is room again. Closing drains the queue and ends the
+ * thread, records accepted after that are passed on directly.
+ */
+public class AsyncLogSink implements LogSink {
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final MongodLogRecord END = new MongodLogRecord(MongodLogRecord.Level.INFO, MongodLogRecord.UNKNOWN_COMPONENT, "", "", "");
+
+    private final LogSink delegate;
+    private final BlockingQueue<MongodLogRecord> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    public AsyncLogSink(final LogSink delegate, final int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<MongodLogRecord>(capacity);
+
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MongodLogRecord record;
+                    while ((record = queue.take()) != END) {
+                        reportDropped();
+                        delegate.accept(record);
+                    }
+                    reportDropped();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "mongod-log-sink");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void accept(final MongodLogRecord record) {
+        if (closed)
+            delegate.accept(record);
+        else if (!queue.offer(record))
+            dropped.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            queue.put(END);
+            drainer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private void reportDropped() {
+        final long lost = dropped.getAndSet(0);
+        if (lost > 0)
+            delegate.accept(new MongodLogRecord(MongodLogRecord.Level.WARNING, MongodLogRecord.UNKNOWN_COMPONENT, "",
+                lost + " log record(s) dropped, the log could not keep up", ""));
+    }
+}
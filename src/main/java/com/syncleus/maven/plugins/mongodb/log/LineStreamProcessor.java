@@ -0,0 +1,58 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+
+/**
+ * Reassembles mongod output, which arrives in arbitrary blocks, into
+ * complete lines without their line terminators. A last line without a
+ * terminator is passed on once the output ends.
+ */
+public abstract class LineStreamProcessor implements IStreamProcessor {
+    private final StringBuilder partialLine = new StringBuilder();
+
+    @Override
+    public synchronized void process(final String block) {
+        partialLine.append(block);
+        int end;
+        while ((end = partialLine.indexOf("\n")) >= 0) {
+            final String line = partialLine.substring(0, end);
+            partialLine.delete(0, end + 1);
+            accept(line);
+        }
+    }
+
+    @Override
+    public synchronized void onProcessed() {
+        if (partialLine.length() > 0) {
+            final String line = partialLine.toString();
+            partialLine.setLength(0);
+            accept(line);
+        }
+    }
+
+    private void accept(final String line) {
+        processLine(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+    }
+
+    /**
+     * Handles one line of output, called while holding this processor's
+     * lock.
+     */
+    protected abstract void processLine(String line);
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the last lines mongod wrote so they can be reported should it die.
+ */
+public class LogTail {
+    private final int capacity;
+    private final Deque<String> lines;
+
+    public LogTail(final int capacity) {
+        this.capacity = capacity;
+        this.lines = new ArrayDeque<String>(capacity);
+    }
+
+    public synchronized void add(final String line) {
+        if (lines.size() == capacity)
+            lines.removeFirst();
+        lines.addLast(line);
+    }
+
+    /**
+     * @return the retained lines, oldest first.
+     */
+    public synchronized List<String> getLines() {
+        return new ArrayList<String>(lines);
+    }
+}
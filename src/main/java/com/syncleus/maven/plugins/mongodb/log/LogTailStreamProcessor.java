@@ -0,0 +1,50 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+
+/**
+ * Passes mongod output on unchanged while keeping every complete line in a
+ * {@link LogTail}.
+ */
+public class LogTailStreamProcessor extends LineStreamProcessor {
+    private final IStreamProcessor delegate;
+    private final LogTail tail;
+
+    public LogTailStreamProcessor(final IStreamProcessor delegate, final LogTail tail) {
+        this.delegate = delegate;
+        this.tail = tail;
+    }
+
+    @Override
+    public void process(final String block) {
+        super.process(block);
+        delegate.process(block);
+    }
+
+    @Override
+    public void onProcessed() {
+        super.onProcessed();
+        delegate.onProcessed();
+    }
+
+    @Override
+    protected void processLine(final String line) {
+        tail.add(line);
+    }
+}
@@ -21,12 +21,16 @@
  */
 package com.syncleus.maven.plugins.mongodb.log;
 
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
 import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.config.MongodProcessOutputConfig;
 import de.flapdoodle.embed.process.config.io.ProcessOutput;
 import de.flapdoodle.embed.process.io.NamedOutputStreamProcessor;
+import org.apache.maven.plugin.logging.Log;
 
 public class Loggers {
+    private static final int STRUCTURED_QUEUE_CAPACITY = 10000;
+    private static final long STRUCTURED_REPEAT_WINDOW_MILLIS = 5000;
 
     public static ProcessOutput file(final String logFile, final String encoding) {
         final FileOutputStreamProcessor file = new FileOutputStreamProcessor(logFile, encoding);
@@ -41,12 +45,48 @@ public class Loggers {
         return MongodProcessOutputConfig.getDefaultInstance(Command.MongoD);
     }
 
+    /**
+     * Routes mongod output through the structured log pipeline into the given
+     * Maven log.
+     *
+     * @param level the minimum level, one of debug, info, warning, error,
+     *              fatal.
+     * @param components the components to log, null or empty for all.
+     */
+    public static ProcessOutput structured(final Log log, final String level, final String[] components) {
+        final LogSink sink = new AsyncLogSink(new MavenLogSink(log), STRUCTURED_QUEUE_CAPACITY);
+        final Level minimumLevel = Level.valueOf(level.toUpperCase());
+
+        return new ProcessOutput(
+            new StructuredStreamProcessor(minimumLevel, components, STRUCTURED_REPEAT_WINDOW_MILLIS, sink),
+            new StructuredStreamProcessor(minimumLevel, components, STRUCTURED_REPEAT_WINDOW_MILLIS, sink),
+            new StructuredStreamProcessor(minimumLevel, components, STRUCTURED_REPEAT_WINDOW_MILLIS, sink));
+    }
+
+    /**
+     * Feeds the standard output of the given process output to the collector
+     * as well.
+     */
+    public static ProcessOutput collectSlowOperations(final ProcessOutput output, final SlowOperationCollector collector) {
+        return new ProcessOutput(new SlowOperationStreamProcessor(output.getOutput(), collector), output.getError(),
+            output.getCommands());
+    }
+
+    /**
+     * Keeps the last lines of the standard and error output of the given
+     * process output in the tail as well.
+     */
+    public static ProcessOutput tail(final ProcessOutput output, final LogTail tail) {
+        return new ProcessOutput(new LogTailStreamProcessor(output.getOutput(), tail),
+            new LogTailStreamProcessor(output.getError(), tail), output.getCommands());
+    }
+
     public static ProcessOutput none() {
         final NoopStreamProcessor noop = new NoopStreamProcessor();
         return new ProcessOutput(noop, noop, noop);
     }
 
     public enum LoggingStyle {
-        FILE, CONSOLE, NONE
+        FILE, CONSOLE, NONE, STRUCTURED
     }
 }
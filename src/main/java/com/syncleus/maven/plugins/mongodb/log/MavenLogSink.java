@@ -0,0 +1,53 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Writes records to the Maven log at the matching level.
+ */
+public class MavenLogSink implements LogSink {
+    private final Log log;
+
+    public MavenLogSink(final Log log) {
+        this.log = log;
+    }
+
+    @Override
+    public void accept(final MongodLogRecord record) {
+        final String message = "[mongod] " + record;
+        switch (record.getLevel()) {
+            case DEBUG:
+                log.debug(message);
+                break;
+            case WARNING:
+                log.warn(message);
+                break;
+            case ERROR:
+            case FATAL:
+                log.error(message);
+                break;
+            default:
+                log.info(message);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
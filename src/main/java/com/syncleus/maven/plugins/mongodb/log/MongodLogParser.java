@@ -0,0 +1,93 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
+import org.bson.BSONException;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.json.JsonParseException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses mongod log lines in any of the formats mongod has used: the plain
+ * text of 2.x, the text with severity and component of 3.0 and later, and
+ * the JSON structured logs of 4.4 and later. Lines which match none of them
+ * are returned as informational records of an unknown component.
+ */
+public class MongodLogParser {
+    private static final Pattern TEXT = Pattern.compile("^\\S+\\s+([IWEFD]\\d?)\\s+(\\S+)\\s+\\[([^\\]]*)\\]\\s?(.*)$");
+    private static final Pattern LEGACY_TEXT = Pattern.compile("^(?:\\w{3} \\w{3} +\\d+ [\\d:.]+|\\S+T\\S+)\\s+\\[([^\\]]*)\\]\\s?(.*)$");
+
+    public MongodLogRecord parse(final String line) {
+        if (line.startsWith("{")) {
+            final MongodLogRecord record = parseJson(line);
+            if (record != null)
+                return record;
+        }
+
+        final Matcher text = TEXT.matcher(line);
+        if (text.matches())
+            return new MongodLogRecord(Level.fromSeverity(text.group(1)), text.group(2), text.group(3), text.group(4), line);
+
+        final Matcher legacy = LEGACY_TEXT.matcher(line);
+        if (legacy.matches())
+            return new MongodLogRecord(guessLevel(legacy.group(2)), MongodLogRecord.UNKNOWN_COMPONENT, legacy.group(1), legacy.group(2), line);
+
+        return new MongodLogRecord(Level.INFO, MongodLogRecord.UNKNOWN_COMPONENT, "", line, line);
+    }
+
+    private static MongodLogRecord parseJson(final String line) {
+        final BsonDocument document;
+        try {
+            document = BsonDocument.parse(line);
+        } catch (final JsonParseException e) {
+            return null;
+        } catch (final BSONException e) {
+            return null;
+        }
+
+        final String message;
+        final BsonValue attributes = document.get("attr");
+        if (attributes != null && attributes.isDocument())
+            message = string(document, "msg") + " " + attributes.asDocument().toJson();
+        else
+            message = string(document, "msg");
+
+        final String component = string(document, "c");
+        return new MongodLogRecord(Level.fromSeverity(string(document, "s")),
+            component.length() == 0 ? MongodLogRecord.UNKNOWN_COMPONENT : component,
+            string(document, "ctx"), message, line);
+    }
+
+    private static String string(final BsonDocument document, final String key) {
+        final BsonValue value = document.get(key);
+        return (value != null && value.isString() ? value.asString().getValue() : "");
+    }
+
+    private static Level guessLevel(final String message) {
+        // 2.x did not log a severity, only some messages carry a prefix
+        final String lower = message.toLowerCase();
+        if (lower.startsWith("warning"))
+            return Level.WARNING;
+        if (lower.startsWith("error") || lower.startsWith("assertion") || lower.contains("exception"))
+            return Level.ERROR;
+        return Level.INFO;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+/**
+ * A single line of mongod output broken into its parts.
+ */
+public class MongodLogRecord {
+    public enum Level {
+        DEBUG, INFO, WARNING, ERROR, FATAL;
+
+        /**
+         * Maps a mongod severity, either a single letter such as I or D2 or a
+         * name, to a level.
+         */
+        public static Level fromSeverity(final String severity) {
+            if (severity == null || severity.length() == 0)
+                return INFO;
+            switch (Character.toUpperCase(severity.charAt(0))) {
+                case 'D':
+                    return DEBUG;
+                case 'W':
+                    return WARNING;
+                case 'E':
+                    return ERROR;
+                case 'F':
+                    return FATAL;
+                default:
+                    return INFO;
+            }
+        }
+    }
+
+    public static final String UNKNOWN_COMPONENT = "-";
+
+    private final Level level;
+    private final String component;
+    private final String context;
+    private final String message;
+    private final String line;
+
+    public MongodLogRecord(final Level level, final String component, final String context, final String message, final String line) {
+        this.level = level;
+        this.component = component;
+        this.context = context;
+        this.message = message;
+        this.line = line;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * The line exactly as mongod wrote it.
+     */
+    public String getLine() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return level + " " + component + " [" + context + "] " + message;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+/**
+ * The slow operations seen for one namespace and plan summary.
+ */
+public class SlowOperation {
+    private final String namespace;
+    private final String planSummary;
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+    private long error;
+
+    SlowOperation(final String namespace, final String planSummary, final long error) {
+        this.namespace = namespace;
+        this.planSummary = planSummary;
+        this.error = error;
+        this.totalMillis = error;
+    }
+
+    void record(final long millis) {
+        count++;
+        totalMillis += millis;
+        if (millis > maxMillis)
+            maxMillis = millis;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getPlanSummary() {
+        return planSummary;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The total time spent, this may overestimate the true total by at most
+     * {@link #getError()} when other operations were evicted to make room for
+     * this one.
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return namespace + " " + planSummary + ": " + count + " operation(s), " + totalMillis + "ms total, "
+            + maxMillis + "ms max" + (error > 0 ? " (total may be overestimated by up to " + error + "ms)" : "");
+    }
+}
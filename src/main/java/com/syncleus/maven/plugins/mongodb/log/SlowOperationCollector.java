@@ -0,0 +1,153 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognises the slow operations mongod logs and aggregates them by namespace
+ * and plan summary as they arrive. Only the operations which took the most
+ * time in total are kept; once the limit is reached the operation with the
+ * least time is evicted and its time carried over to the new one, so every
+ * operation which took more than 1/capacity of the total time is always among
+ * those reported.
+ */
+public class SlowOperationCollector {
+    public static final String NO_PLAN_SUMMARY = "-";
+
+    private static final Pattern TEXT_NAMESPACE = Pattern.compile("\\] (?:command|query|update|remove|insert|getmore|getMore) (\\S+) ");
+    private static final Pattern TEXT_PLAN_SUMMARY = Pattern.compile(" planSummary: ([A-Z_]+(?: \\{[^}]*\\})?(?:, [A-Z_]+(?: \\{[^}]*\\})?)*)");
+    private static final Pattern TEXT_DURATION = Pattern.compile(" (\\d+)ms$");
+    private static final Pattern JSON_NAMESPACE = Pattern.compile("\"ns\":\"([^\"]*)\"");
+    private static final Pattern JSON_PLAN_SUMMARY = Pattern.compile("\"planSummary\":\"([^\"]*)\"");
+    private static final Pattern JSON_DURATION = Pattern.compile("\"durationMillis\":(\\d+)");
+
+    private final int capacity;
+    private final Map<String, SlowOperation> operations = new HashMap<String, SlowOperation>();
+    private long seen;
+    private long maxMillis;
+
+    /**
+     * @param capacity the number of distinct operations kept.
+     */
+    public SlowOperationCollector(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records the line if it is a slow operation, any other line is ignored.
+     */
+    public void accept(final String line) {
+        if (line.startsWith("{")) {
+            if (line.contains("\"Slow query\""))
+                record(find(JSON_NAMESPACE, line), find(JSON_PLAN_SUMMARY, line), find(JSON_DURATION, line));
+        } else if (line.endsWith("ms")) {
+            record(find(TEXT_NAMESPACE, line), find(TEXT_PLAN_SUMMARY, line), find(TEXT_DURATION, line));
+        }
+    }
+
+    private synchronized void record(final String namespace, final String planSummary, final String duration) {
+        if (namespace == null || duration == null)
+            return;
+        final long millis = Long.parseLong(duration);
+        final String plan = (planSummary == null ? NO_PLAN_SUMMARY : planSummary);
+
+        seen++;
+        if (millis > maxMillis)
+            maxMillis = millis;
+
+        final String key = namespace + '\u0000' + plan;
+        SlowOperation operation = operations.get(key);
+        if (operation == null) {
+            long error = 0;
+            if (operations.size() >= capacity) {
+                final Map.Entry<String, SlowOperation> lightest = lightest();
+                operations.remove(lightest.getKey());
+                error = lightest.getValue().getTotalMillis();
+            }
+            operation = new SlowOperation(namespace, plan, error);
+            operations.put(key, operation);
+        }
+        operation.record(millis);
+    }
+
+    private Map.Entry<String, SlowOperation> lightest() {
+        Map.Entry<String, SlowOperation> lightest = null;
+        for (final Map.Entry<String, SlowOperation> entry : operations.entrySet()) {
+            if (lightest == null || entry.getValue().getTotalMillis() < lightest.getValue().getTotalMillis())
+                lightest = entry;
+        }
+        return lightest;
+    }
+
+    private static String find(final Pattern pattern, final String line) {
+        final Matcher matcher = pattern.matcher(line);
+        return (matcher.find() ? matcher.group(1) : null);
+    }
+
+    /**
+     * The number of slow operations seen, including those no longer kept.
+     */
+    public synchronized long getSeen() {
+        return seen;
+    }
+
+    /**
+     * The duration of the slowest operation seen.
+     */
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * The operations kept, those which certainly took the most time in total
+     * first.
+     */
+    public synchronized List<SlowOperation> getOperations() {
+        final List<SlowOperation> sorted = new ArrayList<SlowOperation>(operations.values());
+        Collections.sort(sorted, new Comparator<SlowOperation>() {
+            @Override
+            public int compare(final SlowOperation first, final SlowOperation second) {
+                final long firstMillis = first.getTotalMillis() - first.getError();
+                final long secondMillis = second.getTotalMillis() - second.getError();
+                return (firstMillis < secondMillis ? 1 : (firstMillis == secondMillis ? 0 : -1));
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * A human readable summary of the operations kept.
+     */
+    public List<String> report() {
+        final List<String> report = new ArrayList<String>();
+        final List<SlowOperation> sorted = getOperations();
+        report.add(getSeen() + " slow operation(s) logged by mongod, the slowest took " + getMaxMillis() + "ms");
+        for (final SlowOperation operation : sorted)
+            report.add("  " + operation);
+        return report;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Parses mongod output into records, drops those below the minimum level or
+ * outside the selected components, collapses repeats of the same message and
+ * passes the rest on to a sink. Errors are passed on whatever their
+ * component.
+ */
+public class StructuredStreamProcessor extends LineStreamProcessor {
+    private final MongodLogParser parser = new MongodLogParser();
+    private final Level minimumLevel;
+    private final Set<String> components;
+    private final long repeatWindowMillis;
+    private final LogSink sink;
+
+    private MongodLogRecord lastRecord;
+    private long lastSeen;
+    private int repeats;
+
+    /**
+     * @param components the components to pass on, all components are passed
+     *                   on when empty or null.
+     * @param repeatWindowMillis how long after the last occurrence a repeated
+     *                           message is still collapsed.
+     */
+    public StructuredStreamProcessor(final Level minimumLevel, final String[] components, final long repeatWindowMillis, final LogSink sink) {
+        this.minimumLevel = minimumLevel;
+        this.components = new HashSet<String>();
+        if (components != null) {
+            for (final String component : components)
+                this.components.add(component.trim().toUpperCase());
+        }
+        this.repeatWindowMillis = repeatWindowMillis;
+        this.sink = sink;
+    }
+
+    @Override
+    public synchronized void onProcessed() {
+        super.onProcessed();
+        flushRepeats();
+        sink.close();
+    }
+
+    @Override
+    protected void processLine(final String line) {
+        if (line.trim().length() == 0)
+            return;
+
+        final MongodLogRecord record = parser.parse(line);
+        if (record.getLevel().compareTo(minimumLevel) < 0)
+            return;
+        if (!components.isEmpty() && record.getLevel().compareTo(Level.ERROR) < 0 && !components.contains(record.getComponent().toUpperCase()))
+            return;
+
+        final long now = System.currentTimeMillis();
+        if (lastRecord != null && now - lastSeen < repeatWindowMillis
+            && lastRecord.getComponent().equals(record.getComponent()) && lastRecord.getMessage().equals(record.getMessage())) {
+            repeats++;
+            lastSeen = now;
+            return;
+        }
+
+        flushRepeats();
+        lastRecord = record;
+        lastSeen = now;
+        sink.accept(record);
+    }
+
+    private void flushRepeats() {
+        if (repeats > 0) {
+            sink.accept(new MongodLogRecord(lastRecord.getLevel(), lastRecord.getComponent(), lastRecord.getContext(),
+                "last message repeated " + repeats + " more time(s)", ""));
+            repeats = 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DatabasePoolTest {
+    private InMemoryMongoServer server;
+    private MongoClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new InMemoryMongoServer("127.0.0.1", PortUtils.allocateRandomPort());
+        server.start();
+        client = new MongoClient(new ServerAddress("127.0.0.1", server.getPort()));
+
+        final MongoCollection<BsonDocument> people = client.getDatabase("fixtures").getCollection("people", BsonDocument.class);
+        people.createIndex(BsonDocument.parse("{name: 1}"), new IndexOptions().unique(true));
+        people.insertMany(Arrays.asList(BsonDocument.parse("{_id: 1, name: 'ada'}"), BsonDocument.parse("{_id: 2, name: 'alan'}")));
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testNames() {
+        Assert.assertEquals(Arrays.asList("fixtures_1", "fixtures_2"), DatabasePool.names("fixtures_", 2));
+    }
+
+    @Test
+    public void testCopiesDocumentsAndIndexes() throws Exception {
+        final List<String> names = DatabasePool.names("fixtures_", 3);
+        client.getDatabase("fixtures_2").getCollection("stale", BsonDocument.class).insertOne(BsonDocument.parse("{_id: 1}"));
+        new DatabasePool(client, new SystemStreamLog()).create("fixtures", names);
+
+        for (final String name : names) {
+            final MongoCollection<BsonDocument> people = client.getDatabase(name).getCollection("people", BsonDocument.class);
+            Assert.assertEquals(2, people.count());
+            Assert.assertEquals(2, people.listIndexes().into(new ArrayList<Document>()).size());
+            Assert.assertFalse(client.getDatabase(name).listCollectionNames().into(new HashSet<String>()).contains("stale"));
+        }
+    }
+
+    @Test
+    public void testLeasesAreExclusive() throws Exception {
+        new DatabasePool(client, new SystemStreamLog()).create("fixtures", DatabasePool.names("fixtures_", 2));
+
+        final DatabasePoolLease first = DatabasePoolLease.acquire(client, "fixtures", 0);
+        final DatabasePoolLease second = DatabasePoolLease.acquire(client, "fixtures", 0);
+        final Set<String> leased = new HashSet<String>(Arrays.asList(first.getDatabaseName(), second.getDatabaseName()));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("fixtures_1", "fixtures_2")), leased);
+
+        try {
+            DatabasePoolLease.acquire(client, "fixtures", 0);
+            Assert.fail("every database is leased");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+
+        first.close();
+        final DatabasePoolLease third = DatabasePoolLease.acquire(client, "fixtures", 0);
+        Assert.assertEquals(first.getDatabaseName(), third.getDatabaseName());
+        second.close();
+        third.close();
+    }
+
+    @Test
+    public void testReleasedDatabaseIsCopiedAgain() throws Exception {
+        new DatabasePool(client, new SystemStreamLog()).create("fixtures", DatabasePool.names("fixtures_", 1));
+
+        final DatabasePoolLease first = DatabasePoolLease.acquire(client, "fixtures", 0);
+        client.getDatabase(first.getDatabaseName()).getCollection("people", BsonDocument.class).deleteMany(new BsonDocument());
+        client.getDatabase(first.getDatabaseName()).getCollection("leftover", BsonDocument.class).insertOne(BsonDocument.parse("{_id: 1}"));
+        first.close();
+
+        final DatabasePoolLease second = DatabasePoolLease.acquire(client, "fixtures", 0);
+        Assert.assertEquals(2, client.getDatabase(second.getDatabaseName()).getCollection("people", BsonDocument.class).count());
+        Assert.assertFalse(client.getDatabase(second.getDatabaseName()).listCollectionNames().into(new HashSet<String>()).contains("leftover"));
+        second.close();
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimed() throws Exception {
+        new DatabasePool(client, new SystemStreamLog()).create("fixtures", DatabasePool.names("fixtures_", 1));
+
+        final DatabasePoolLease abandoned = DatabasePoolLease.acquire(client, "fixtures", 0, 50);
+        final DatabasePoolLease held = DatabasePoolLease.acquire(client, "fixtures", 5000);
+        Assert.assertEquals(abandoned.getDatabaseName(), held.getDatabaseName());
+        Assert.assertFalse(abandoned.renew());
+        Assert.assertTrue(held.renew());
+
+        // closing the reclaimed lease must not release the new holder
+        abandoned.close();
+        try {
+            DatabasePoolLease.acquire(client, "fixtures", 0);
+            Assert.fail("the database is leased");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        held.close();
+    }
+
+    @Test
+    public void testRestoredLeasesStayHeld() throws Exception {
+        final DatabasePool pool = new DatabasePool(client, new SystemStreamLog());
+        pool.create("fixtures", DatabasePool.names("fixtures_", 1));
+        final DatabasePoolLease held = DatabasePoolLease.acquire(client, "fixtures", 0);
+        final List<BsonDocument> leases = pool.leases("fixtures");
+
+        // a restarted mongod which lost its data gets the pool copied again
+        pool.create("fixtures", DatabasePool.names("fixtures_", 1));
+        pool.restoreLeases(leases);
+        try {
+            DatabasePoolLease.acquire(client, "fixtures", 0);
+            Assert.fail("the database is still leased");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+
+        held.close();
+        DatabasePoolLease.acquire(client, "fixtures", 0).close();
+    }
+}
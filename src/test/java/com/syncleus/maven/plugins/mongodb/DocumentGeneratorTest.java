@@ -0,0 +1,86 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.bson.BsonDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+public class DocumentGeneratorTest {
+
+    @Test
+    public void testSameSeedGeneratesSameDocuments() {
+        final DocumentGenerator first = new DocumentGenerator(42, template());
+        final DocumentGenerator second = new DocumentGenerator(42, template());
+        for (long index = 0; index < 100; index++)
+            Assert.assertEquals(first.generate(index), second.generate(index));
+    }
+
+    @Test
+    public void testDifferentSeedsGenerateDifferentDocuments() {
+        Assert.assertNotEquals(new DocumentGenerator(1, template()).generate(0).get("name"),
+            new DocumentGenerator(2, template()).generate(0).get("name"));
+    }
+
+    @Test
+    public void testGeneratedValues() {
+        final DocumentGenerator generator = new DocumentGenerator(7, template());
+        final Set<Object> ids = new HashSet<Object>();
+        for (long index = 0; index < 1000; index++) {
+            final BsonDocument document = generator.generate(index);
+            Assert.assertEquals("_id", document.keySet().iterator().next());
+            Assert.assertTrue(ids.add(document.get("_id")));
+            Assert.assertEquals(index + 10, document.getInt64("number").getValue());
+            final int age = document.getInt32("age").getValue();
+            Assert.assertTrue(age >= 18 && age < 65);
+            Assert.assertEquals(8, document.getString("name").getValue().length());
+            Assert.assertTrue(Arrays.asList("red", "green", "blue").contains(document.getDocument("address").getString("color").getValue()));
+            Assert.assertEquals("fixed", document.getString("kind").getValue());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownGenerator() {
+        final HashMap<String, String> fields = new HashMap<String, String>();
+        fields.put("value", "gaussian(0,1)");
+        new DocumentGenerator(0, fields);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        final HashMap<String, String> fields = new HashMap<String, String>();
+        fields.put("value", "int(10,1)");
+        new DocumentGenerator(0, fields);
+    }
+
+    private static HashMap<String, String> template() {
+        final HashMap<String, String> fields = new HashMap<String, String>();
+        fields.put("_id", "objectId");
+        fields.put("number", "sequence(10)");
+        fields.put("age", "int(18,65)");
+        fields.put("name", "string(8)");
+        fields.put("address.color", "oneOf(red, green, blue)");
+        fields.put("address.since", "date(2010-01-01,2015-01-01)");
+        fields.put("kind", "constant(fixed)");
+        return fields;
+    }
+}
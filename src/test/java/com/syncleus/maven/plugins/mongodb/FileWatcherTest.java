@@ -0,0 +1,61 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class FileWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testChangesAreDebounced() throws IOException {
+        final File fixture = folder.newFile("fixture.json");
+        final FileWatcher watcher = new FileWatcher(Collections.singleton(fixture), 500);
+        Assert.assertTrue(watcher.poll(0).isEmpty());
+
+        FileUtils.writeStringToFile(fixture, "[{}]");
+        Assert.assertTrue(watcher.poll(1000).isEmpty());
+        FileUtils.writeStringToFile(fixture, "[{}, {}]");
+        Assert.assertTrue(watcher.poll(1200).isEmpty());
+
+        Assert.assertEquals(Collections.singleton(fixture.getAbsoluteFile()), watcher.poll(1800));
+        Assert.assertTrue(watcher.poll(2500).isEmpty());
+    }
+
+    @Test
+    public void testNewFilesInDirectories() throws IOException {
+        final File scripts = folder.newFolder("scripts");
+        final File existing = new File(scripts, "a.js");
+        FileUtils.writeStringToFile(existing, "db.a.insert({});");
+        final FileWatcher watcher = new FileWatcher(Arrays.asList(scripts, folder.newFile("unchanged.json")), 0);
+
+        final File added = new File(scripts, "b.js");
+        FileUtils.writeStringToFile(added, "db.b.insert({});");
+        Assert.assertEquals(Collections.singleton(added.getAbsoluteFile()), watcher.poll(0));
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FixtureConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConvertJsonArray() throws IOException {
+        final File json = write("[{ \"_id\" : \"01001\", \"city\" : \"AGAWAM\", \"loc\" : [ -72.622739, 42.070206 ] },\n" +
+            "{ \"_id\" : \"01002\", \"city\" : \"CUSHMAN\", \"pop\" : 36963 }]");
+        final File bson = folder.newFile("array.bson");
+
+        Assert.assertEquals(2, new FixtureConverter().convert(json, bson));
+
+        final List<BsonDocument> documents = read(bson);
+        Assert.assertEquals(2, documents.size());
+        Assert.assertEquals("AGAWAM", documents.get(0).getString("city").getValue());
+        Assert.assertEquals(36963, documents.get(1).getInt32("pop").getValue());
+    }
+
+    @Test
+    public void testConvertDocumentPerLine() throws IOException {
+        final File json = write("{ \"_id\" : 1, \"name\" : \"first\" }\n\n{ \"_id\" : 2, \"name\" : \"second\" }\n");
+        final File bson = folder.newFile("lines.bson");
+
+        Assert.assertEquals(2, new FixtureConverter().convert(json, bson));
+
+        final List<BsonDocument> documents = read(bson);
+        Assert.assertEquals("second", documents.get(1).getString("name").getValue());
+    }
+
+    @Test
+    public void testFailedConversionKeepsThePreviousFile() throws IOException {
+        final File json = write("{ \"_id\" : 1 }\n{ \"_id\" : 2, broken\n");
+        final File bson = folder.newFile("broken.bson");
+        Assert.assertEquals(1, new FixtureConverter().convert(write("{ \"_id\" : 1 }"), bson));
+        final long length = bson.length();
+
+        try {
+            new FixtureConverter().convert(json, bson);
+            Assert.fail("the invalid line must fail the conversion");
+        } catch (final RuntimeException e) {
+            Assert.assertEquals(length, bson.length());
+            Assert.assertFalse(new File(bson.getPath() + ".tmp").exists());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testConvertOntoItselfIsRejected() throws IOException {
+        final File bson = folder.newFile("self.bson");
+        new FixtureConverter().convert(bson, new File(folder.getRoot(), "./self.bson"));
+    }
+
+    private File write(final String content) throws IOException {
+        final File file = folder.newFile();
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static List<BsonDocument> read(final File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(bytes);
+        } finally {
+            input.close();
+        }
+
+        final List<BsonDocument> documents = new ArrayList<BsonDocument>();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            final ByteBuffer document = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            document.limit(document.getInt(0));
+            documents.add(new BsonDocumentCodec().decode(new BsonBinaryReader(document), DecoderContext.builder().build()));
+            buffer.position(buffer.position() + document.limit());
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.syncleus.maven.plugins.mongodb.ExportDataConfig.ExportFormat;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FixtureExporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryMongoServer server;
+    private MongoClient client;
+    private MongoCollection<RawBsonDocument> people;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new InMemoryMongoServer("127.0.0.1", PortUtils.allocateRandomPort());
+        server.start();
+        client = new MongoClient(new ServerAddress("127.0.0.1", server.getPort()));
+        client.getDatabase("test").getCollection("people", BsonDocument.class).insertMany(Arrays.asList(
+            BsonDocument.parse("{_id: 1, name: 'ada', age: 36}"),
+            BsonDocument.parse("{_id: 2, name: 'alan', age: 41}"),
+            BsonDocument.parse("{_id: 3, name: 'grace', age: 85}")));
+        people = client.getDatabase("test").getCollection("people", RawBsonDocument.class);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testJsonArrayConverts() throws IOException {
+        final File json = new File(folder.getRoot(), "out/people.json");
+        Assert.assertEquals(3, new FixtureExporter(2, false).export(people, new BsonDocument(), ExportFormat.JSON, json));
+        Assert.assertTrue(FileUtils.readFileToString(json).startsWith("["));
+        Assert.assertEquals(3, new FixtureConverter().convert(json, folder.newFile("people.bson")));
+        Assert.assertFalse(new File(json.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testEmptyJsonArray() throws IOException {
+        final File json = folder.newFile("none.json");
+        Assert.assertEquals(0, new FixtureExporter(2, false).export(people, BsonDocument.parse("{age: {$gt: 100}}"), ExportFormat.JSON, json));
+        Assert.assertEquals("[]\n", FileUtils.readFileToString(json));
+    }
+
+    @Test
+    public void testNdjsonWithQuery() throws IOException {
+        final File ndjson = folder.newFile("people.ndjson");
+        Assert.assertEquals(2, new FixtureExporter(1000, false).export(people, BsonDocument.parse("{age: {$gt: 40}}"), ExportFormat.NDJSON, ndjson));
+        Assert.assertEquals(2, FileUtils.readLines(ndjson).size());
+        Assert.assertEquals(2, new FixtureConverter().convert(ndjson, folder.newFile("people.bson")));
+    }
+
+    @Test
+    public void testBsonRoundTrip() throws IOException {
+        final File bson = folder.newFile("people.bson");
+        Assert.assertEquals(3, new FixtureExporter(1000, false).export(people, new BsonDocument(), ExportFormat.BSON, bson));
+
+        final MongoCollection<RawBsonDocument> copy = client.getDatabase("test").getCollection("copy", RawBsonDocument.class);
+        Assert.assertEquals(3, new BsonImporter(1000).importFile(bson, copy, true, false));
+        Assert.assertEquals(BsonDocument.parse("{_id: 3, name: 'grace', age: 85}"),
+            client.getDatabase("test").getCollection("copy", BsonDocument.class).find(BsonDocument.parse("{_id: 3}")).first());
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        final File compressed = folder.newFile("people.ndjson.gz");
+        new FixtureExporter(1000, true).export(people, new BsonDocument(), ExportFormat.NDJSON, compressed);
+
+        final InputStream input = new GZIPInputStream(new FileInputStream(compressed));
+        try {
+            Assert.assertEquals(3, IOUtils.readLines(input, "UTF-8").size());
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPartialFileRemovedOnDriverFailure() throws IOException {
+        final MongoCollection<RawBsonDocument> failing = mock(MongoCollection.class);
+        final FindIterable<RawBsonDocument> found = mock(FindIterable.class);
+        final MongoCursor<RawBsonDocument> cursor = mock(MongoCursor.class);
+        when(failing.find(any(BsonDocument.class))).thenReturn(found);
+        when(found.batchSize(anyInt())).thenReturn(found);
+        when(found.iterator()).thenReturn(cursor);
+        when(cursor.hasNext()).thenReturn(true);
+        when(cursor.next()).thenThrow(new MongoException("connection reset"));
+
+        final File json = new File(folder.getRoot(), "people.json");
+        try {
+            new FixtureExporter(1000, false).export(failing, new BsonDocument(), ExportFormat.JSON, json);
+            Assert.fail("the driver failure must propagate");
+        } catch (final MongoException e) {
+            Assert.assertFalse(new File(json.getPath() + ".tmp").exists());
+            Assert.assertFalse(json.exists());
+        }
+        verify(cursor).close();
+    }
+}
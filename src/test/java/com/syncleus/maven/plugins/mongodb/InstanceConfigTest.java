@@ -0,0 +1,44 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class InstanceConfigTest {
+
+    @Test
+    public void testForVersion() {
+        final ImportDataConfig[] imports = new ImportDataConfig[]{new ImportDataConfig("test", "people", "people.json", true, true, 1000)};
+        final InstanceConfig instance = new InstanceConfig("primary", "3.0.4", 27017, Boolean.FALSE, new File("target/mongodb"), imports, null);
+
+        final InstanceConfig matrix = instance.forVersion("2.6.10");
+        Assert.assertEquals("primary-2.6.10", matrix.getId());
+        Assert.assertEquals("2.6.10", matrix.getVersion());
+        Assert.assertNull(matrix.getPort());
+        Assert.assertEquals(Boolean.TRUE, matrix.getRandomPort());
+        Assert.assertEquals(new File("target/mongodb", "2.6.10"), matrix.getDatabaseDirectory());
+        Assert.assertSame(imports, matrix.getImports());
+    }
+
+    @Test
+    public void testForVersionWithoutDatabaseDirectory() {
+        Assert.assertNull(new InstanceConfig("primary", null, null, null, null, null, null).forVersion("3.0").getDatabaseDirectory());
+    }
+}
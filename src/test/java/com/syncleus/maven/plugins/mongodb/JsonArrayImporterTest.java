@@ -0,0 +1,137 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import org.apache.commons.io.FileUtils;
+import org.bson.BsonDocument;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+public class JsonArrayImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSplitOnDocumentBoundaries() throws IOException {
+        final File file = fixture(200);
+        final List<long[]> chunks = JsonArrayImporter.split(file, 8);
+        Assert.assertTrue(chunks.size() > 1 && chunks.size() <= 8);
+
+        final String content = FileUtils.readFileToString(file, "UTF-8");
+        final byte[] bytes = content.getBytes("UTF-8");
+        int documents = 0;
+        long previousEnd = 0;
+        for (final long[] chunk : chunks) {
+            Assert.assertTrue(chunk[0] >= previousEnd);
+            Assert.assertEquals('{', bytes[(int) chunk[0]]);
+            Assert.assertEquals('}', bytes[(int) chunk[1] - 1]);
+            final String json = new String(bytes, (int) chunk[0], (int) (chunk[1] - chunk[0]), "UTF-8");
+            documents += BsonDocument.parse("{ \"documents\": [" + json + "] }").getArray("documents").size();
+            previousEnd = chunk[1];
+        }
+        Assert.assertEquals(200, documents);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testImportsEveryDocumentOnce() throws IOException {
+        final MongoCollection<BsonDocument> collection = mock(MongoCollection.class);
+        final List<BsonDocument> inserted = Collections.synchronizedList(new ArrayList<BsonDocument>());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                inserted.addAll((List<BsonDocument>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(collection).insertMany(anyListOf(BsonDocument.class), any(InsertManyOptions.class));
+
+        final long count = new JsonArrayImporter(7, 4).importFile(fixture(500), collection, true, false);
+
+        Assert.assertEquals(500, count);
+        verify(collection).drop();
+        final Set<Integer> ids = new HashSet<Integer>();
+        for (final BsonDocument document : inserted) {
+            ids.add(document.getInt32("_id").getValue());
+            Assert.assertEquals("caf\u00e9 {\"quoted\"} [" + document.getInt32("_id").getValue() + "]", document.getString("text").getValue());
+        }
+        Assert.assertEquals(500, ids.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpsertsOrderedByDefault() throws IOException {
+        final MongoCollection<BsonDocument> collection = mock(MongoCollection.class);
+        new JsonArrayImporter(1000, 1).importFile(fixture(10), collection, false, true);
+
+        final ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        verify(collection, atLeastOnce()).bulkWrite(anyList(), options.capture());
+        for (final BulkWriteOptions value : options.getAllValues())
+            Assert.assertTrue(value.isOrdered());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnorderedUpserts() throws IOException {
+        final MongoCollection<BsonDocument> collection = mock(MongoCollection.class);
+        new JsonArrayImporter(1000, 1, false).importFile(fixture(10), collection, false, true);
+
+        final ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+        verify(collection, atLeastOnce()).bulkWrite(anyList(), options.capture());
+        for (final BulkWriteOptions value : options.getAllValues())
+            Assert.assertFalse(value.isOrdered());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnArray() throws IOException {
+        final File file = folder.newFile("lines.json");
+        FileUtils.writeStringToFile(file, "{ \"_id\": 1 }\n{ \"_id\": 2 }\n", "UTF-8");
+        JsonArrayImporter.split(file, 2);
+    }
+
+    private File fixture(final int documents) throws IOException {
+        final StringBuilder json = new StringBuilder("\n[\n");
+        for (int index = 0; index < documents; index++) {
+            if (index > 0)
+                json.append(",\n");
+            json.append("  { \"_id\": ").append(index)
+                .append(", \"text\": \"caf\u00e9 {\\\"quoted\\\"} [").append(index).append("]\"")
+                .append(", \"nested\": { \"values\": [1, 2, { \"deep\": true }] } }");
+        }
+        json.append("\n]\n");
+        final File file = folder.newFile("fixture.json");
+        FileUtils.writeStringToFile(file, json.toString(), "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.config.DownloadConfigBuilder;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.config.store.IDownloadConfig;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.Platform;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.factory.ArtifactFactory;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+public class MavenRepositoryDownloaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final IDownloadConfig config = new DownloadConfigBuilder().defaultsForCommand(Command.MongoD).build();
+    private final Distribution distribution = new Distribution(Version.V3_0_4, Platform.Linux, BitSize.B64);
+
+    private final ArtifactFactory artifactFactory = mock(ArtifactFactory.class);
+    private final ArtifactResolver artifactResolver = mock(ArtifactResolver.class);
+    private final ArtifactRepository localRepository = mock(ArtifactRepository.class);
+    private final ArtifactRepository remoteRepository = mock(ArtifactRepository.class);
+
+    @Before
+    public void createArtifacts() {
+        when(artifactFactory.createArtifactWithClassifier(anyString(), anyString(), anyString(), anyString(), anyString())).thenAnswer(new Answer<Artifact>() {
+            @Override
+            public Artifact answer(final InvocationOnMock invocation) {
+                final Object[] arguments = invocation.getArguments();
+                return new DefaultArtifact((String) arguments[0], (String) arguments[1], VersionRange.createFromVersion((String) arguments[2]),
+                    null, (String) arguments[3], (String) arguments[4], new DefaultArtifactHandler((String) arguments[3]));
+            }
+        });
+        when(remoteRepository.getUrl()).thenReturn("https://repository.example.com/maven2");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResolveThroughMaven() throws Exception {
+        final File resolved = new File(folder.newFolder("local"), "org/mongodb/mongodb-distribution/3.0.4/mongodb-distribution-3.0.4-linux-x86_64.tgz");
+        FileUtils.writeStringToFile(resolved, "archive");
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                final Artifact artifact = (Artifact) invocation.getArguments()[0];
+                Assert.assertEquals("org.mongodb:mongodb-distribution:tgz:linux-x86_64:3.0.4", artifact.getDependencyConflictId() + ":" + artifact.getVersion());
+                Assert.assertSame(remoteRepository, ((List<ArtifactRepository>) invocation.getArguments()[1]).get(0));
+                Assert.assertSame(localRepository, invocation.getArguments()[2]);
+                artifact.setFile(resolved);
+                return null;
+            }
+        }).when(artifactResolver).resolve(any(Artifact.class), anyList(), any(ArtifactRepository.class));
+
+        final File downloaded = downloader().download(config, distribution);
+
+        Assert.assertEquals("archive", FileUtils.readFileToString(downloaded));
+        // the artifact store moves what it is given, the local repository
+        // keeps its copy.
+        Assert.assertFalse(resolved.equals(downloaded));
+        Assert.assertTrue(resolved.isFile());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    @SuppressWarnings("unchecked")
+    public void testMissingWithoutFallback() throws Exception {
+        doThrow(new ArtifactNotFoundException("missing", mock(Artifact.class)))
+            .when(artifactResolver).resolve(any(Artifact.class), anyList(), any(ArtifactRepository.class));
+        downloader().download(config, distribution);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResolutionFailureIsNotMistakenForMissing() throws Exception {
+        doThrow(new ArtifactResolutionException("Checksum validation failed", mock(Artifact.class)))
+            .when(artifactResolver).resolve(any(Artifact.class), anyList(), any(ArtifactRepository.class));
+        try {
+            downloader().resolve(config, distribution);
+            Assert.fail("a failed resolution must not look like a missing distribution");
+        } catch (final IOException e) {
+            Assert.assertTrue(e.getMessage().contains("Checksum validation failed"));
+        }
+    }
+
+    @Test
+    public void testClassifier() {
+        Assert.assertEquals("linux-x86_64", MavenRepositoryDownloader.classifier(distribution));
+        Assert.assertEquals("osx-x86_64", MavenRepositoryDownloader.classifier(new Distribution(Version.V3_0_4, Platform.OS_X, BitSize.B64)));
+        Assert.assertEquals("windows-i386", MavenRepositoryDownloader.classifier(new Distribution(Version.V3_0_4, Platform.Windows, BitSize.B32)));
+    }
+
+    private MavenRepositoryDownloader downloader() {
+        return new MavenRepositoryDownloader("org.mongodb", "mongodb-distribution", artifactFactory, artifactResolver,
+            localRepository, Collections.singletonList(remoteRepository), null, new SystemStreamLog());
+    }
+}
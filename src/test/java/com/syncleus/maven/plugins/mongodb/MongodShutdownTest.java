@@ -0,0 +1,130 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.syncleus.maven.plugins.mongodb.MongodShutdown.ShutdownStrategy;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.config.IMongodConfig;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.process.distribution.Platform;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import static org.mockito.Mockito.*;
+
+public class MongodShutdownTest {
+
+    private Process process;
+    private MongodProcess mongod;
+
+    @Before
+    public void startProcess() throws IOException, InterruptedException {
+        Assume.assumeTrue(Platform.detect() != Platform.Windows);
+
+        // stands in for mongod, it neither listens nor exits on its own
+        process = new ProcessBuilder("sh", "-c", "echo $$; exec sleep 60").start();
+        final long pid = Long.parseLong(new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8")).readLine().trim());
+
+        final IMongodConfig config = mock(IMongodConfig.class);
+        when(config.net()).thenReturn(new Net("localhost", PortUtils.allocateRandomPort(), false));
+
+        mongod = mock(MongodProcess.class);
+        when(mongod.getProcessId()).thenReturn(pid);
+        when(mongod.getConfig()).thenReturn(config);
+        when(mongod.isProcessRunning()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation) {
+                return isRunning();
+            }
+        });
+        when(mongod.waitFor()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws InterruptedException {
+                return process.waitFor();
+            }
+        });
+    }
+
+    @After
+    public void stopProcess() {
+        if (process != null)
+            process.destroy();
+    }
+
+    private boolean isRunning() {
+        try {
+            process.exitValue();
+            return false;
+        } catch (final IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFastKills() throws InterruptedException {
+        new MongodShutdown(ShutdownStrategy.FAST, 10000, new SystemStreamLog()).shutdown(mongod);
+        Assert.assertFalse(isRunning());
+    }
+
+    @Test(timeout = 20000)
+    public void testGracefulKillsAfterTheTimeout() throws InterruptedException {
+        final long started = System.currentTimeMillis();
+        new MongodShutdown(ShutdownStrategy.GRACEFUL, 500, new SystemStreamLog()).shutdown(mongod);
+        Assert.assertFalse(isRunning());
+        Assert.assertTrue(System.currentTimeMillis() - started >= 500);
+    }
+
+    @Test(timeout = 20000)
+    public void testGracefulWaitsForAnExitingProcess() throws InterruptedException {
+        final Thread exiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                process.destroy();
+            }
+        });
+        exiter.start();
+        new MongodShutdown(ShutdownStrategy.GRACEFUL, 3000, new SystemStreamLog()).shutdown(mongod);
+        Assert.assertFalse(isRunning());
+    }
+
+    @Test(timeout = 20000)
+    public void testAsyncReturnsAndHoldsTheProcessUntilDone() throws InterruptedException {
+        new MongodShutdown(ShutdownStrategy.ASYNC, 1000, new SystemStreamLog()).shutdown(mongod);
+        Assert.assertTrue(isRunning());
+
+        // once the reaper has the monitor, flapdoodle's shutdown hook would
+        // wait on it just like this
+        while (isRunning()) {
+            synchronized (mongod) {
+                if (!isRunning())
+                    break;
+            }
+            Thread.sleep(50);
+        }
+        Assert.assertFalse(isRunning());
+    }
+}
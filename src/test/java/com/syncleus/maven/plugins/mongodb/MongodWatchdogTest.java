@@ -0,0 +1,188 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.syncleus.maven.plugins.mongodb.log.LogTail;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+
+public class MongodWatchdogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static class FakeTarget implements MongodWatchdog.Target {
+        boolean running = true;
+        boolean answering = true;
+        boolean restartFails;
+        int restarts;
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public boolean ping() {
+            return answering;
+        }
+
+        @Override
+        public void restart() throws Exception {
+            if (restartFails)
+                throw new IllegalStateException("port in use");
+            restarts++;
+            running = true;
+            answering = true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final FakeTarget target = new FakeTarget();
+
+    private MongodWatchdog watchdog(final int maxRestarts, final LogTail tail, final File marker) {
+        return new MongodWatchdog("test", target, 10, 3, maxRestarts, tail, marker, new SystemStreamLog());
+    }
+
+    @Test
+    public void testHealthyServer() {
+        final MongodWatchdog watchdog = watchdog(0, null, null);
+        Assert.assertTrue(watchdog.check());
+        Assert.assertTrue(watchdog.check());
+        Assert.assertTrue(watchdog.getFailures().isEmpty());
+    }
+
+    @Test
+    public void testMissedPingsBelowTheLimitAreTolerated() {
+        final MongodWatchdog watchdog = watchdog(0, null, null);
+        target.answering = false;
+        Assert.assertTrue(watchdog.check());
+        Assert.assertTrue(watchdog.check());
+        target.answering = true;
+        Assert.assertTrue(watchdog.check());
+        target.answering = false;
+        Assert.assertTrue(watchdog.check());
+        Assert.assertTrue(watchdog.check());
+        Assert.assertFalse(watchdog.check());
+        Assert.assertEquals(1, watchdog.getFailures().size());
+        Assert.assertTrue(watchdog.getFailures().get(0).contains("missed 3 consecutive pings"));
+    }
+
+    @Test
+    public void testExitWritesTheMarkerWithTheLogTail() throws IOException {
+        final LogTail tail = new LogTail(2);
+        tail.add("first");
+        tail.add("second");
+        tail.add("Invariant failure");
+        final File marker = new File(temporaryFolder.getRoot(), "target/mongodb-failure.txt");
+
+        final MongodWatchdog watchdog = watchdog(0, tail, marker);
+        target.running = false;
+        Assert.assertFalse(watchdog.check());
+
+        final String contents = new Scanner(marker, "UTF-8").useDelimiter("\\A").next();
+        Assert.assertTrue(contents.contains("mongod 'test' crashed: the mongod process exited"));
+        Assert.assertTrue(contents.contains("  second\n  Invariant failure\n"));
+        Assert.assertFalse(contents.contains("first"));
+    }
+
+    @Test
+    public void testRestartsAreLimited() {
+        final MongodWatchdog watchdog = watchdog(1, null, null);
+        target.running = false;
+        Assert.assertTrue(watchdog.check());
+        Assert.assertEquals(1, target.restarts);
+        Assert.assertTrue(watchdog.check());
+
+        target.running = false;
+        Assert.assertFalse(watchdog.check());
+        Assert.assertEquals(1, target.restarts);
+        Assert.assertEquals(2, watchdog.getFailures().size());
+    }
+
+    @Test
+    public void testFailedRestartIsReported() {
+        final MongodWatchdog watchdog = watchdog(1, null, null);
+        target.running = false;
+        target.restartFails = true;
+        Assert.assertFalse(watchdog.check());
+        Assert.assertEquals(2, watchdog.getFailures().size());
+        Assert.assertTrue(watchdog.getFailures().get(1).contains("port in use"));
+    }
+
+    @Test(timeout = 5000)
+    public void testThreadStopsOnceTheServerIsDown() throws InterruptedException {
+        final MongodWatchdog watchdog = watchdog(0, null, null);
+        watchdog.start();
+        target.running = false;
+        while (watchdog.getFailures().isEmpty())
+            Thread.sleep(10);
+        watchdog.stop();
+        Assert.assertEquals(1, watchdog.getFailures().size());
+    }
+
+    @Test(timeout = 5000)
+    public void testStopWaitsForARestartInProgress() throws InterruptedException {
+        final CountDownLatch restarting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeTarget slowTarget = new FakeTarget() {
+            @Override
+            public void restart() throws Exception {
+                restarting.countDown();
+                release.await();
+                super.restart();
+            }
+        };
+        final MongodWatchdog watchdog = new MongodWatchdog("test", slowTarget, 10, 3, 5, null, null, new SystemStreamLog());
+        watchdog.start();
+        slowTarget.running = false;
+        restarting.await();
+
+        final Thread stopper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    watchdog.stop();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        stopper.start();
+        stopper.join(200);
+        Assert.assertTrue(stopper.isAlive());
+
+        release.countDown();
+        stopper.join();
+        Assert.assertEquals(1, slowTarget.restarts);
+
+        slowTarget.running = false;
+        Assert.assertFalse(watchdog.check());
+        Assert.assertEquals(1, slowTarget.restarts);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class PreflightTest {
+    private static final long MEGABYTE = 1024L * 1024;
+    private static final long GIGABYTE = 1024L * MEGABYTE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHealthyMachine() {
+        final Preflight preflight = new Preflight(resources(10 * GIGABYTE, 8 * GIGABYTE, 65536), 256)
+            .checkFreeSpace("database", folder.getRoot(), 1024)
+            .checkCacheSize(2, false)
+            .checkOpenFileLimit();
+        Assert.assertTrue(preflight.getProblems().isEmpty());
+        Assert.assertEquals(Integer.valueOf(2), preflight.getCacheSizeGB());
+    }
+
+    @Test
+    public void testProblemsAreReported() {
+        final Preflight preflight = new Preflight(resources(100 * MEGABYTE, 512 * MEGABYTE, 128), 256)
+            .checkFreeSpace("database", new File(folder.getRoot(), "not/created/yet"), 0)
+            .checkCacheSize(4, true)
+            .checkOpenFileLimit();
+        Assert.assertEquals(3, preflight.getProblems().size());
+        Assert.assertTrue(preflight.getProblems().get(0).contains(folder.getRoot().getAbsolutePath()));
+    }
+
+    @Test
+    public void testCacheIsScaledDown() {
+        final Preflight preflight = new Preflight(resources(10 * GIGABYTE, 6 * GIGABYTE, 65536), 256)
+            .checkCacheSize(16, true);
+        Assert.assertTrue(preflight.getProblems().isEmpty());
+        Assert.assertEquals(Integer.valueOf(3), preflight.getCacheSizeGB());
+    }
+
+    @Test
+    public void testUnknownResourcesAreSkipped() {
+        final Preflight preflight = new Preflight(resources(-1, -1, -1), 256)
+            .checkFreeSpace("database", folder.getRoot(), 0)
+            .checkCacheSize(16, false)
+            .checkOpenFileLimit();
+        Assert.assertTrue(preflight.getProblems().isEmpty());
+    }
+
+    private static Preflight.Resources resources(final long usableSpace, final long availableMemory, final long openFileLimit) {
+        return new Preflight.Resources() {
+            @Override
+            public long usableSpace(final File directory) {
+                return usableSpace;
+            }
+
+            @Override
+            public long availableMemory() {
+                return availableMemory;
+            }
+
+            @Override
+            public long openFileLimit() {
+                return openFileLimit;
+            }
+        };
+    }
+}
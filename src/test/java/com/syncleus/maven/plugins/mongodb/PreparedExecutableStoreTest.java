@@ -0,0 +1,172 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.config.store.FileType;
+import de.flapdoodle.embed.process.distribution.BitSize;
+import de.flapdoodle.embed.process.distribution.Distribution;
+import de.flapdoodle.embed.process.distribution.Platform;
+import de.flapdoodle.embed.process.extract.IExtractedFileSet;
+import de.flapdoodle.embed.process.extract.ImmutableExtractedFileSet;
+import de.flapdoodle.embed.process.store.IArtifactStore;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PreparedExecutableStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Distribution distribution = new Distribution(Version.V3_0_4, Platform.Linux, BitSize.B64);
+
+    @Test
+    public void testExtractsOncePerSession() throws IOException {
+        final CountingStore delegate = new CountingStore(folder.newFolder("extracted"));
+        final PreparedExecutableStore store = new PreparedExecutableStore(delegate, null, "mongoimport");
+
+        final IExtractedFileSet first = store.extractFileSet(distribution);
+        store.removeFileSet(distribution, first);
+        final IExtractedFileSet second = store.extractFileSet(distribution);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, delegate.extracted);
+        Assert.assertEquals(0, delegate.removed);
+
+        store.close();
+        Assert.assertEquals(1, delegate.removed);
+    }
+
+    @Test
+    public void testPersistsAcrossStores() throws IOException {
+        final File executables = folder.newFolder("executables");
+        final CountingStore delegate = new CountingStore(folder.newFolder("extracted"));
+
+        final IExtractedFileSet first = new PreparedExecutableStore(delegate, executables, "mongoimport").extractFileSet(distribution);
+        Assert.assertEquals("mongoimport", first.executable().getName());
+        Assert.assertEquals("binary", FileUtils.readFileToString(first.executable()));
+        Assert.assertTrue(first.executable().canExecute());
+        Assert.assertEquals(1, first.files(FileType.Library).size());
+        // the delegate's own copy is no longer needed once persisted
+        Assert.assertEquals(1, delegate.removed);
+
+        final PreparedExecutableStore later = new PreparedExecutableStore(delegate, executables, "mongoimport");
+        Assert.assertTrue(later.checkDistribution(distribution));
+        final IExtractedFileSet second = later.extractFileSet(distribution);
+        Assert.assertEquals(first.executable(), second.executable());
+        Assert.assertEquals(1, delegate.extracted);
+    }
+
+    @Test
+    public void testReplacesIncompleteExtraction() throws IOException {
+        final File executables = folder.newFolder("executables");
+        final File incomplete = new File(executables, "mongoimport-3.0.4-linux-b64");
+        FileUtils.writeStringToFile(new File(incomplete, "mongoimport"), "trunc");
+
+        final CountingStore delegate = new CountingStore(folder.newFolder("extracted"));
+        final IExtractedFileSet fileSet = new PreparedExecutableStore(delegate, executables, "mongoimport").extractFileSet(distribution);
+
+        Assert.assertEquals(incomplete, fileSet.executable().getParentFile());
+        Assert.assertEquals("binary", FileUtils.readFileToString(fileSet.executable()));
+        Assert.assertEquals(1, delegate.extracted);
+    }
+
+    @Test
+    public void testStoresOfOneJvmShareADirectory() throws Exception {
+        final File executables = folder.newFolder("executables");
+        final CountDownLatch extracting = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final CountingStore delegate = new CountingStore(folder.newFolder("extracted")) {
+            @Override
+            public IExtractedFileSet extractFileSet(final Distribution distribution) throws IOException {
+                extracting.countDown();
+                try {
+                    proceed.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.extractFileSet(distribution);
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<IExtractedFileSet> first = executor.submit(extract(new PreparedExecutableStore(delegate, executables, "mongoimport")));
+            Assert.assertTrue(extracting.await(10, TimeUnit.SECONDS));
+            // the second store asks while the first one holds the file lock
+            final Future<IExtractedFileSet> second = executor.submit(extract(new PreparedExecutableStore(delegate, executables, "mongoimport")));
+            Thread.sleep(200);
+            proceed.countDown();
+
+            Assert.assertEquals(first.get(10, TimeUnit.SECONDS).executable(), second.get(10, TimeUnit.SECONDS).executable());
+            Assert.assertEquals(1, delegate.extracted);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<IExtractedFileSet> extract(final PreparedExecutableStore store) {
+        return new Callable<IExtractedFileSet>() {
+            @Override
+            public IExtractedFileSet call() throws IOException {
+                return store.extractFileSet(distribution);
+            }
+        };
+    }
+
+    private static class CountingStore implements IArtifactStore {
+        private final File directory;
+        private int extracted;
+        private int removed;
+
+        CountingStore(final File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public boolean checkDistribution(final Distribution distribution) {
+            return true;
+        }
+
+        @Override
+        public IExtractedFileSet extractFileSet(final Distribution distribution) throws IOException {
+            extracted++;
+            final File executable = new File(directory, "extract-" + extracted + "-mongoimport");
+            final File library = new File(directory, "libssl.so");
+            FileUtils.writeStringToFile(executable, "binary");
+            FileUtils.writeStringToFile(library, "library");
+            return ImmutableExtractedFileSet.builder(directory).executable(executable).file(FileType.Library, library).build();
+        }
+
+        @Override
+        public void removeFileSet(final Distribution distribution, final IExtractedFileSet files) {
+            removed++;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.MembersConfig;
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.SettingsConfig;
+import com.syncleus.maven.plugins.mongodb.ReplSetInitiateConfig.SettingsConfig.GetLastErrorModesConfig;
+import com.mongodb.BasicDBObject;
+import com.mongodb.util.JSON;
+import org.bson.BsonDocument;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+public class ReplSetInitiateConfigTest {
+    @Test
+    public void testEncoding() {
+        final HashMap<String, String> memberTags = new HashMap<String, String>();
+        memberTags.put("dc", "east");
+        final HashMap<String, String> modeTags = new HashMap<String, String>();
+        modeTags.put("dc", "2");
+        final ReplSetInitiateConfig config = new ReplSetInitiateConfig("rs0", 1, new MembersConfig[]{
+            new MembersConfig(0, "localhost:27017", null, null, null, 2, memberTags, null, null),
+            new MembersConfig(1, "localhost:27018", false, false, true, 0, null, 3600, 1)
+        }, new SettingsConfig(true, 10, new GetLastErrorModesConfig[]{new GetLastErrorModesConfig("multiDC", modeTags)}));
+
+        Assert.assertEquals(BsonDocument.parse("{_id: 'rs0', version: 1, members: ["
+            + "{_id: 0, host: 'localhost:27017', priority: 2, tags: {dc: 'east'}},"
+            + "{_id: 1, host: 'localhost:27018', arbiterOnly: false, buildIndexes: false, hidden: true, priority: 0, slaveDelay: 3600, votes: 1}],"
+            + " settings: {chainingAllowed: true, heartbeatTimeoutSecs: 10, getLastErrorModes: {multiDC: {dc: 2}}}}"), config.toBsonDocument());
+        Assert.assertSame(config.toBsonDocument(), config.toBsonDocument());
+        Assert.assertTrue(config.validate().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedMakeCommand() {
+        final HashMap<String, String> modeTags = new HashMap<String, String>();
+        modeTags.put("dc", "2");
+        final GetLastErrorModesConfig mode = new GetLastErrorModesConfig("multiDC", modeTags);
+        final MembersConfig member = new MembersConfig(0, "localhost:27017", null, null, true, 0, null, null, null);
+        final SettingsConfig settings = new SettingsConfig(true, null, new GetLastErrorModesConfig[]{mode});
+        final ReplSetInitiateConfig config = new ReplSetInitiateConfig("rs0", null, new MembersConfig[]{member}, settings);
+
+        Assert.assertEquals(JSON.parse("{_id: 'rs0', members: [{_id: 0, host: 'localhost:27017', hidden: true, priority: 0}],"
+            + " settings: {chainingAllowed: true, getLastErrorModes: {multiDC: {dc: 2}}}}"), config.makeCommand());
+        Assert.assertEquals(JSON.parse("{_id: 0, host: 'localhost:27017', hidden: true, priority: 0}"), member.makeCommand());
+        Assert.assertEquals(JSON.parse("{chainingAllowed: true, getLastErrorModes: {multiDC: {dc: 2}}}"), settings.makeCommand());
+
+        final BasicDBObject modes = new BasicDBObject();
+        mode.makeCommand(modes);
+        Assert.assertEquals(JSON.parse("{multiDC: {dc: 2}}"), modes);
+    }
+
+    @Test
+    public void testValidation() {
+        final ReplSetInitiateConfig config = new ReplSetInitiateConfig("rs0", null, new MembersConfig[]{
+            new MembersConfig(0, "localhost:27017", null, null, null, 1001, null, null, null),
+            new MembersConfig(0, "LOCALHOST:27017", true, null, null, 1, null, null, 2),
+            new MembersConfig(null, " ", null, null, true, null, null, null, null)
+        }, null);
+
+        final List<String> problems = config.validate();
+        Assert.assertEquals(problems.toString(), 8, problems.size());
+        Assert.assertTrue(problems.contains("the _id 0 is used by more than one member"));
+        Assert.assertTrue(problems.contains("the host LOCALHOST:27017 is used by more than one member"));
+        Assert.assertTrue(new ReplSetInitiateConfig("rs0", null, null, null).validate().contains("replSetInitiate requires at least one member"));
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.conversions.Bson;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReplicaSetInitiatorTest {
+    private static final BsonDocument CONFIGURED = BsonDocument.parse("{_id: 'rs0', members: ["
+        + "{_id: 0, host: 'localhost:27017', priority: 2}, {_id: 1, host: 'localhost:27018'}]}");
+
+    @Test
+    public void testServerDefaultsAreIgnored() {
+        final BsonDocument applied = BsonDocument.parse("{_id: 'rs0', version: 3, members: ["
+            + "{_id: 1, host: 'localhost:27018', priority: 1.0, votes: 1}, {_id: 0, host: 'localhost:27017', priority: 2.0, hidden: false}],"
+            + " settings: {heartbeatTimeoutSecs: 10}}");
+        Assert.assertTrue(ReplicaSetInitiator.matches(CONFIGURED, applied));
+    }
+
+    @Test
+    public void testDifferencesAreDetected() {
+        Assert.assertFalse(ReplicaSetInitiator.matches(CONFIGURED, BsonDocument.parse("{_id: 'rs0', members: ["
+            + "{_id: 0, host: 'localhost:27017', priority: 1}, {_id: 1, host: 'localhost:27018'}]}")));
+        Assert.assertFalse(ReplicaSetInitiator.matches(CONFIGURED, BsonDocument.parse("{_id: 'rs0', members: ["
+            + "{_id: 0, host: 'localhost:27017', priority: 2}]}")));
+        Assert.assertFalse(ReplicaSetInitiator.matches(CONFIGURED, BsonDocument.parse("{_id: 'rs1', members: ["
+            + "{_id: 0, host: 'localhost:27017', priority: 2}, {_id: 1, host: 'localhost:27018'}]}")));
+    }
+
+    @Test
+    public void testConvergence() {
+        Assert.assertTrue(ReplicaSetInitiator.isConverged(BsonDocument.parse("{members: [{state: 1}, {state: 2}, {state: 7}]}")));
+        Assert.assertFalse(ReplicaSetInitiator.isConverged(BsonDocument.parse("{members: [{state: 1}, {state: 5}]}")));
+        Assert.assertFalse(ReplicaSetInitiator.isConverged(BsonDocument.parse("{members: [{state: 2}, {state: 2}]}")));
+        Assert.assertFalse(ReplicaSetInitiator.isConverged(BsonDocument.parse("{ok: 1}")));
+    }
+
+    @Test
+    public void testFreshSetIsInitiatedAndAwaited() throws Exception {
+        final List<String> commands = new ArrayList<String>();
+        final MongoClient client = client(new Answer<Object>() {
+            private BsonDocument applied;
+            private int statusCalls;
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                final BsonDocument command = (BsonDocument) invocation.getArguments()[0];
+                final String name = command.keySet().iterator().next();
+                commands.add(name);
+                if ("replSetGetConfig".equals(name)) {
+                    if (applied == null)
+                        throw new MongoCommandException(BsonDocument.parse("{ok: 0, code: 94, errmsg: 'no replset config has been received'}"), new ServerAddress());
+                    return new BsonDocument("config", applied);
+                }
+                if ("replSetInitiate".equals(name)) {
+                    applied = new BsonDocument();
+                    applied.putAll(command.getDocument(name));
+                    applied.put("version", new BsonInt32(1));
+                    return null;
+                }
+                // the first status reports an election in progress
+                return BsonDocument.parse(statusCalls++ == 0 ? "{members: [{state: 2}, {state: 0}]}" : "{members: [{state: 1}, {state: 2}]}");
+            }
+        });
+
+        new ReplicaSetInitiator(client, 5000, new SystemStreamLog()).initiate(CONFIGURED);
+        Assert.assertEquals("[replSetGetConfig, replSetInitiate, replSetGetStatus, replSetGetStatus, replSetGetConfig]", commands.toString());
+    }
+
+    @Test
+    public void testChangedSetIsReconfigured() throws Exception {
+        final List<BsonDocument> reconfigs = new ArrayList<BsonDocument>();
+        final MongoClient client = client(new Answer<Object>() {
+            private BsonDocument applied = BsonDocument.parse("{_id: 'rs0', version: 4, members: [{_id: 0, host: 'localhost:27017'}]}");
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                final BsonDocument command = (BsonDocument) invocation.getArguments()[0];
+                final String name = command.keySet().iterator().next();
+                if ("replSetGetConfig".equals(name))
+                    return new BsonDocument("config", applied);
+                if ("replSetReconfig".equals(name)) {
+                    applied = command.getDocument(name);
+                    reconfigs.add(applied);
+                    return null;
+                }
+                return BsonDocument.parse("{members: [{state: 1}, {state: 2}]}");
+            }
+        });
+
+        new ReplicaSetInitiator(client, 5000, new SystemStreamLog()).initiate(CONFIGURED);
+        Assert.assertEquals(1, reconfigs.size());
+        Assert.assertEquals(5, reconfigs.get(0).getInt32("version").getValue());
+    }
+
+    private static MongoClient client(final Answer<Object> commands) {
+        final MongoDatabase admin = Mockito.mock(MongoDatabase.class);
+        Mockito.when(admin.runCommand(Mockito.any(Bson.class))).thenAnswer(commands);
+        Mockito.when(admin.runCommand(Mockito.any(Bson.class), Mockito.eq(BsonDocument.class))).thenAnswer(commands);
+        final MongoClient client = Mockito.mock(MongoClient.class);
+        Mockito.when(client.getDatabase("admin")).thenReturn(admin);
+        return client;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResourceLimitsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDeriveCacheSize() {
+        Assert.assertNull(ResourceLimits.deriveCacheSizeGB(null));
+        Assert.assertNull(ResourceLimits.deriveCacheSizeGB(512L));
+        Assert.assertNull(ResourceLimits.deriveCacheSizeGB(1024L));
+        Assert.assertNull(ResourceLimits.deriveCacheSizeGB(2047L));
+        Assert.assertEquals(Integer.valueOf(1), ResourceLimits.deriveCacheSizeGB(2048L));
+        Assert.assertEquals(Integer.valueOf(3), ResourceLimits.deriveCacheSizeGB(8192L));
+    }
+
+    @Test
+    public void testNiceness() {
+        final List<String> args = new ResourceLimits(10, null, null).createCgroup("embedmongo-27017").wrap(Arrays.asList("mongod", "--port", "27017"));
+        Assert.assertEquals(Arrays.asList("nice", "-n", "10", "mongod", "--port", "27017"), args);
+    }
+
+    @Test
+    public void testCgroup() throws IOException {
+        final File root = cgroupRoot("cpu memory");
+        final ResourceLimits limits = new ResourceLimits(root, processCgroups("0::/user.slice/build.scope"), null, 1.5, 2048L)
+            .createCgroup("embedmongo-27017");
+
+        Assert.assertTrue(limits.getProblems().isEmpty());
+        final File cgroup = new File(root, "user.slice/embedmongo-27017");
+        Assert.assertEquals(cgroup, limits.getCgroup());
+        Assert.assertEquals("150000 100000", FileUtils.readFileToString(new File(cgroup, "cpu.max")));
+        Assert.assertEquals(String.valueOf(2048L * 1024 * 1024), FileUtils.readFileToString(new File(cgroup, "memory.max")));
+        Assert.assertEquals(Arrays.asList("sh", "-c", "echo $$ > \"$0\" && exec \"$@\"", new File(cgroup, "cgroup.procs").getPath(), "mongod"),
+            limits.wrap(Arrays.asList("mongod")));
+    }
+
+    @Test
+    public void testUndelegatedControllers() throws IOException {
+        final File root = cgroupRoot("cpu");
+        final ResourceLimits limits = new ResourceLimits(root, processCgroups("0::/user.slice/build.scope"), null, null, 2048L)
+            .createCgroup("embedmongo-27017");
+
+        Assert.assertEquals(1, limits.getProblems().size());
+        Assert.assertNull(limits.getCgroup());
+        Assert.assertEquals(Arrays.asList("mongod"), limits.wrap(Arrays.asList("mongod")));
+    }
+
+    @Test
+    public void testNoCgroupV2() throws IOException {
+        final ResourceLimits limits = new ResourceLimits(folder.newFolder("cgroup"), processCgroups("1:name=systemd:/"), null, 1.0, null)
+            .createCgroup("embedmongo-27017");
+        Assert.assertEquals(1, limits.getProblems().size());
+        Assert.assertNull(limits.getCgroup());
+    }
+
+    private File cgroupRoot(final String delegated) throws IOException {
+        final File root = folder.newFolder("cgroup");
+        FileUtils.writeStringToFile(new File(root, "cgroup.controllers"), "cpuset cpu io memory pids\n");
+        FileUtils.writeStringToFile(new File(root, "user.slice/cgroup.subtree_control"), delegated + "\n");
+        FileUtils.forceMkdir(new File(root, "user.slice/build.scope"));
+        return root;
+    }
+
+    private File processCgroups(final String content) throws IOException {
+        final File file = folder.newFile("self-cgroup");
+        FileUtils.writeStringToFile(file, content + "\n");
+        return file;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ScriptStatementReaderTest {
+
+    @Test
+    public void testSemicolons() throws IOException {
+        Assert.assertEquals(Arrays.asList("var a = 1;", "db.people.insert({name: 'ada'});", "a++"),
+            statements("var a = 1; db.people.insert({name: 'ada'});;\n a++"));
+    }
+
+    @Test
+    public void testLineEnds() throws IOException {
+        Assert.assertEquals(Arrays.asList("db.people.insert({name: 'ada'})", "db.people.insert({\n  name: 'alan'\n})", "function f() {\n  return 1;\n}"),
+            statements("db.people.insert({name: 'ada'})\ndb.people.insert({\n  name: 'alan'\n})\nfunction f() {\n  return 1;\n}\n"));
+    }
+
+    @Test
+    public void testContinuedLines() throws IOException {
+        Assert.assertEquals(Arrays.asList("if (a) {\n  b();\n}\nelse {\n  c();\n}",
+                "try{ d(); }\ncatch (e) { f(); }\nfinally { g(); }",
+                "db.people.find({})\n  .sort({name: 1})\n  .limit(2)",
+                "x = (1)\n  + (2)",
+                "h()", "elsewhere()", "i()", "++j"),
+            statements("if (a) {\n  b();\n}\nelse {\n  c();\n}\n"
+                + "try{ d(); }\ncatch (e) { f(); }\nfinally { g(); }\n"
+                + "db.people.find({})\n  .sort({name: 1})\n  .limit(2)\n"
+                + "x = (1)\n  + (2)\n"
+                + "h()\nelsewhere()\ni()\n++j"));
+    }
+
+    @Test
+    public void testDoWhile() throws IOException {
+        Assert.assertEquals(Arrays.asList("var i = 0\ndo {\n  i++\n}\nwhile (i < 3)", "while (i > 0) {\n  i--\n}", "j()"),
+            statements("var i = 0\ndo {\n  i++\n}\nwhile (i < 3)\nwhile (i > 0) {\n  i--\n}\nj()"));
+        Assert.assertEquals(Arrays.asList("var i = 0;", "do{ i++ }\nwhile (i < 3)", "undo({})", "while (i) { i-- }"),
+            statements("var i = 0;\ndo{ i++ }\nwhile (i < 3)\nundo({})\nwhile (i) { i-- }"));
+    }
+
+    @Test
+    public void testContinuedAfterComment() throws IOException {
+        Assert.assertEquals(Arrays.asList("p.then(function () {\n  q();\n}) \n \n.then(r)", "s()"),
+            statements("p.then(function () {\n  q();\n}) // first\n/* second */\n.then(r)\ns()"));
+    }
+
+    @Test
+    public void testStringsAndComments() throws IOException {
+        Assert.assertEquals(Arrays.asList("db.people.insert({name: 'a;b', note: \"it's\"});", "db.people.insert({url: 'http://x'});", "x = 1  + 2;"),
+            statements("// leading comment; ignored\n"
+                + "db.people.insert({name: 'a;b', note: \"it's\"}); /* a block; comment */\n"
+                + "db.people.insert({url: 'http://x'}); // trailing\n"
+                + "x = 1 /* inline */+ 2;"));
+    }
+
+    @Test
+    public void testEscapedQuotes() throws IOException {
+        Assert.assertEquals(Arrays.asList("db.people.insert({name: 'o\\'neil; jr'});"),
+            statements("db.people.insert({name: 'o\\'neil; jr'});"));
+    }
+
+    @Test
+    public void testStatementsSpanBuffers() throws IOException {
+        final StringBuilder script = new StringBuilder();
+        for (int index = 0; index < 20000; index++)
+            script.append("db.people.insert({_id: ").append(index).append(", name: 'person ").append(index).append("'});\n");
+        final List<String> statements = statements(script.toString());
+        Assert.assertEquals(20000, statements.size());
+        Assert.assertEquals("db.people.insert({_id: 19999, name: 'person 19999'});", statements.get(19999));
+    }
+
+    private static List<String> statements(final String script) throws IOException {
+        final ScriptStatementReader reader = new ScriptStatementReader(new StringReader(script));
+        final List<String> statements = new ArrayList<String>();
+        String statement;
+        while ((statement = reader.next()) != null)
+            statements.add(statement);
+        reader.close();
+        return statements;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.ServerAddress;
+import com.syncleus.maven.plugins.mongodb.inmemory.InMemoryMongoServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SeedingCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private InMemoryMongoServer server;
+    private File databaseDirectory;
+    private File fixture;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new InMemoryMongoServer("127.0.0.1", PortUtils.allocateRandomPort());
+        server.start();
+        databaseDirectory = folder.newFolder("db");
+        fixture = folder.newFile("people.json");
+        FileUtils.writeStringToFile(fixture, "[{name: 'ada'}]");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testChecksum() throws IOException {
+        final SeedingCheckpoint.Step step = SeedingCheckpoint.step("import", "config", fixture);
+        Assert.assertEquals(step.getChecksum(), SeedingCheckpoint.step("import", "config", fixture).getChecksum());
+        Assert.assertFalse(step.getChecksum().equals(SeedingCheckpoint.step("import", "changed", fixture).getChecksum()));
+        Assert.assertFalse(step.getChecksum().equals(SeedingCheckpoint.step("import", "config", folder.getRoot()).getChecksum()));
+    }
+
+    @Test
+    public void testResumesCompletedSteps() throws IOException {
+        final SeedingCheckpoint.Step first = SeedingCheckpoint.step("first", "config", fixture);
+        final SeedingCheckpoint.Step second = SeedingCheckpoint.step("second", "config");
+
+        final SeedingCheckpoint checkpoint = open();
+        Assert.assertFalse(checkpoint.isComplete(first));
+        checkpoint.complete(first);
+        checkpoint.close();
+
+        final SeedingCheckpoint resumed = open();
+        Assert.assertTrue(resumed.isComplete(first));
+        Assert.assertFalse(resumed.isComplete(second));
+        resumed.close();
+    }
+
+    @Test
+    public void testChangedStepRedoesTheRest() throws IOException {
+        final SeedingCheckpoint checkpoint = open();
+        checkpoint.complete(SeedingCheckpoint.step("first", "config", fixture));
+        checkpoint.complete(SeedingCheckpoint.step("second", "config"));
+        checkpoint.close();
+
+        FileUtils.writeStringToFile(fixture, "[{name: 'alan'}]");
+        final SeedingCheckpoint resumed = open();
+        Assert.assertFalse(resumed.isComplete(SeedingCheckpoint.step("first", "config", fixture)));
+        Assert.assertFalse(resumed.isComplete(SeedingCheckpoint.step("second", "config")));
+        resumed.close();
+    }
+
+    @Test
+    public void testLostDataIsSeededAgain() throws IOException {
+        final SeedingCheckpoint.Step step = SeedingCheckpoint.step("first", "config", fixture);
+        final SeedingCheckpoint checkpoint = open();
+        checkpoint.complete(step);
+        checkpoint.close();
+
+        // a fresh server stands in for a database directory which was wiped
+        server.stop();
+        server = new InMemoryMongoServer("127.0.0.1", PortUtils.allocateRandomPort());
+        server.start();
+        final SeedingCheckpoint resumed = open();
+        Assert.assertFalse(resumed.isComplete(step));
+        resumed.close();
+    }
+
+    private SeedingCheckpoint open() throws IOException {
+        return new SeedingCheckpoint(new MongoClient(new ServerAddress("127.0.0.1", server.getPort())), databaseDirectory);
+    }
+}
@@ -19,6 +19,7 @@ package com.syncleus.maven.plugins.mongodb;
 import com.mongodb.CommandResult;
 import com.mongodb.DB;
 import com.mongodb.EmbedMongoDB;
+import com.mongodb.WriteConcern;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
@@ -86,6 +87,34 @@ public class StartMongoMojoTest {
         new StartMongoMojoForTest(57017, false, "3.0.2", null, null, null, 0, false, "console", null, "utf-8", "http://fastdl.mongodb.org/", null, null, false, null, 0,  "uuid", null, 0, new MavenProject(), null, null, null, false, null, new InitializerConfig[]{new InitializerConfig(new File[]{rootFolderWithError}, "myDB")}, false, database).execute();
     }
 
+    @Test
+    public void testInstanceLogFile() {
+        Assert.assertEquals("mongodb-primary.log", StartMongoMojo.instanceLogFile("mongodb.log", "primary"));
+        Assert.assertEquals("target/logs/mongodb-primary.log", StartMongoMojo.instanceLogFile("target/logs/mongodb.log", "primary"));
+        Assert.assertEquals("target/my.logs/mongodb-primary", StartMongoMojo.instanceLogFile("target/my.logs/mongodb", "primary"));
+        Assert.assertEquals("target/.mongodb-primary", StartMongoMojo.instanceLogFile("target/.mongodb", "primary"));
+        Assert.assertNull(StartMongoMojo.instanceLogFile(null, "primary"));
+    }
+
+    @Test
+    public void testParseWriteConcern() {
+        Assert.assertEquals(WriteConcern.UNACKNOWLEDGED, StartMongoMojo.parseWriteConcern("unacknowledged"));
+        Assert.assertEquals(WriteConcern.UNACKNOWLEDGED, StartMongoMojo.parseWriteConcern("w:0"));
+        Assert.assertEquals(WriteConcern.UNACKNOWLEDGED, StartMongoMojo.parseWriteConcern("W0"));
+        Assert.assertEquals(WriteConcern.ACKNOWLEDGED, StartMongoMojo.parseWriteConcern("w: 1"));
+        Assert.assertEquals(WriteConcern.ACKNOWLEDGED, StartMongoMojo.parseWriteConcern("Acknowledged"));
+        Assert.assertEquals(new WriteConcern(2), StartMongoMojo.parseWriteConcern("w:2"));
+        Assert.assertEquals(WriteConcern.MAJORITY, StartMongoMojo.parseWriteConcern("w:majority"));
+        Assert.assertEquals(WriteConcern.JOURNALED, StartMongoMojo.parseWriteConcern("j:true"));
+
+        final WriteConcern notJournaled = StartMongoMojo.parseWriteConcern("j:false");
+        Assert.assertTrue(notJournaled.isAcknowledged());
+        Assert.assertFalse(notJournaled.getJ());
+
+        Assert.assertEquals(WriteConcern.FSYNCED, StartMongoMojo.parseWriteConcern("fsynced"));
+        Assert.assertNull(StartMongoMojo.parseWriteConcern("sometimes"));
+    }
+
     private void initFolder() throws IOException {
         File instructionsFile = createSchemaFolder.newFile();
         BufferedWriter out = null;
@@ -0,0 +1,94 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserProvisionerTest {
+    private static final UserConfig ADMIN = new UserConfig("admin", "secret", "admin", null);
+    private static final UserConfig APP = new UserConfig("app", "secret", "test", new String[]{"readWrite", "read@reporting"});
+
+    @Test
+    public void testRoles() {
+        Assert.assertEquals(BsonDocument.parse("{roles: [{role: 'root', db: 'admin'}]}").getArray("roles"), UserProvisioner.roles(ADMIN));
+        Assert.assertEquals(BsonDocument.parse("{roles: [{role: 'readWrite', db: 'test'}, {role: 'read', db: 'reporting'}]}").getArray("roles"),
+            UserProvisioner.roles(APP));
+    }
+
+    @Test
+    public void testFirstUserUsesTheLocalhostException() throws Exception {
+        final List<String> anonymous = new ArrayList<String>();
+        final List<String> authenticated = new ArrayList<String>();
+        new UserProvisioner(new SystemStreamLog()).provision(new UserConfig[]{ADMIN, APP},
+            client(anonymous, null), client(authenticated, null));
+        Assert.assertEquals("[admin.createUser admin]", anonymous.toString());
+        Assert.assertEquals("[test.createUser app]", authenticated.toString());
+    }
+
+    @Test
+    public void testExistingUsersAreUpdated() throws Exception {
+        final List<String> anonymous = new ArrayList<String>();
+        final List<String> authenticated = new ArrayList<String>();
+        new UserProvisioner(new SystemStreamLog()).provision(new UserConfig[]{ADMIN, APP},
+            client(anonymous, "{ok: 0, code: 13, errmsg: 'not authorized on admin to execute command'}"),
+            client(authenticated, "{ok: 0, code: 51003, errmsg: 'User already exists'}"));
+        Assert.assertEquals("[admin.createUser admin]", anonymous.toString());
+        Assert.assertEquals("[admin.createUser admin, admin.updateUser admin, test.createUser app, test.updateUser app]", authenticated.toString());
+    }
+
+    /**
+     * @param createFailure the response every createUser fails with, or null
+     *                      when it succeeds.
+     */
+    private static MongoClient client(final List<String> commands, final String createFailure) {
+        final MongoClient client = Mockito.mock(MongoClient.class);
+        Mockito.when(client.getDatabase(Mockito.anyString())).thenAnswer(new Answer<MongoDatabase>() {
+            @Override
+            public MongoDatabase answer(final InvocationOnMock invocation) {
+                final String name = (String) invocation.getArguments()[0];
+                final MongoDatabase database = Mockito.mock(MongoDatabase.class);
+                Mockito.when(database.runCommand(Mockito.any(Bson.class))).thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(final InvocationOnMock invocation) {
+                        final BsonDocument command = (BsonDocument) invocation.getArguments()[0];
+                        final String commandName = command.keySet().iterator().next();
+                        commands.add(name + "." + commandName + " " + command.getString(commandName).getValue());
+                        if (createFailure != null && "createUser".equals(commandName))
+                            throw new MongoCommandException(BsonDocument.parse(createFailure), new ServerAddress());
+                        return null;
+                    }
+                });
+                return database;
+            }
+        });
+        return client;
+    }
+}
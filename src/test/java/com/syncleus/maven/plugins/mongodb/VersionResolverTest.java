@@ -0,0 +1,114 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb;
+
+import de.flapdoodle.embed.mongo.distribution.Feature;
+import de.flapdoodle.embed.mongo.distribution.IFeatureAwareVersion;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class VersionResolverTest {
+
+    private static final Set<Feature> NO_FEATURES = Collections.emptySet();
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void testExactVersions() {
+        Assert.assertEquals("3.0.2", resolve("3.0.2"));
+        Assert.assertEquals("3.0.2", resolve("v3.0.2"));
+        Assert.assertEquals("3.0.2", resolve("V3_0_2"));
+        Assert.assertEquals("2.4.0-rc3", resolve("2.4.0-rc3"));
+    }
+
+    @Test
+    public void testAliases() {
+        Assert.assertEquals(Version.Main.PRODUCTION.asInDownloadPath(), resolve(null));
+        Assert.assertEquals(Version.Main.PRODUCTION.asInDownloadPath(), resolve("production"));
+        Assert.assertEquals(Version.Main.LEGACY.asInDownloadPath(), resolve("legacy"));
+        Assert.assertEquals("3.1.5", resolve("latest"));
+    }
+
+    @Test
+    public void testSeries() {
+        Assert.assertEquals("3.1.5", resolve("latest-3.x"));
+        Assert.assertEquals("3.0.4", resolve("latest-3.0.x"));
+        Assert.assertEquals("3.0.4", resolve("3.0"));
+        Assert.assertEquals("2.6.10", resolve("2.6.x"));
+        Assert.assertEquals("2.7.1", resolve("2.x"));
+    }
+
+    @Test
+    public void testRanges() {
+        Assert.assertEquals("2.7.1", resolve("[2.6,3.0)"));
+        Assert.assertEquals("3.0.4", resolve("[2.6,3.0]"));
+        Assert.assertEquals("3.1.5", resolve("[3.0.2,]"));
+        Assert.assertEquals("3.0.1", resolve("[3.0.0,3.0.2)"));
+    }
+
+    @Test
+    public void testUnknownWellFormedVersionIsAttempted() {
+        Assert.assertEquals("3.0.3", resolve("3.0.3"));
+    }
+
+    @Test
+    public void testMalformedVersionFailsWithSuggestions() {
+        try {
+            resolve("3,0,2");
+            Assert.fail("Should not resolve!");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("3.0.2"));
+        }
+    }
+
+    @Test
+    public void testUnsatisfiableRangeFails() {
+        try {
+            resolve("[9.0,]");
+            Assert.fail("Should not resolve!");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("No known MongoDB release"));
+        }
+    }
+
+    @Test
+    public void testResolutionIsCached() {
+        final Set<Feature> features = EnumSet.of(Feature.SYNC_DELAY);
+        final IFeatureAwareVersion first = VersionResolver.resolve("3.0.2", features, log);
+        Assert.assertSame(first, VersionResolver.resolve(" 3.0.2", EnumSet.of(Feature.SYNC_DELAY), log));
+        Assert.assertTrue(first.enabled(Feature.SYNC_DELAY));
+        Assert.assertNotSame(first, VersionResolver.resolve("3.0.2", NO_FEATURES, log));
+    }
+
+    @Test
+    public void testIsAtLeast() {
+        Assert.assertTrue(VersionResolver.isAtLeast(VersionResolver.resolve("3.0.2", NO_FEATURES, log), 3, 0));
+        Assert.assertTrue(VersionResolver.isAtLeast(VersionResolver.resolve("3.2.0", NO_FEATURES, log), 3, 2));
+        Assert.assertFalse(VersionResolver.isAtLeast(VersionResolver.resolve("3.1.5", NO_FEATURES, log), 3, 2));
+        Assert.assertFalse(VersionResolver.isAtLeast(VersionResolver.resolve("2.6.x", NO_FEATURES, log), 3, 0));
+    }
+
+    private String resolve(final String spec) {
+        return VersionResolver.resolve(spec, NO_FEATURES, log).asInDownloadPath();
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.inmemory;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.syncleus.maven.plugins.mongodb.PortUtils;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InMemoryMongoServerTest {
+    private InMemoryMongoServer server;
+    private MongoClient client;
+    private MongoCollection<BsonDocument> collection;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new InMemoryMongoServer("127.0.0.1", PortUtils.allocateRandomPort());
+        server.start();
+        client = new MongoClient(new ServerAddress("127.0.0.1", server.getPort()));
+        collection = client.getDatabase("test").getCollection("people", BsonDocument.class);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testQueries() {
+        collection.insertMany(Arrays.asList(
+            BsonDocument.parse("{_id: 1, name: 'ada', age: 36, tags: ['math', 'code']}"),
+            BsonDocument.parse("{_id: 2, name: 'alan', age: 41, tags: ['code'], address: {city: 'london'}}"),
+            BsonDocument.parse("{_id: 3, name: 'grace', age: 85, address: {city: 'new york'}}")));
+
+        Assert.assertEquals(3, collection.count());
+        Assert.assertEquals(2, collection.count(BsonDocument.parse("{tags: 'code'}")));
+        Assert.assertEquals("grace", collection.find(BsonDocument.parse("{_id: 3.0}")).first().getString("name").getValue());
+        Assert.assertEquals(Arrays.asList(3, 2), ids(BsonDocument.parse("{age: {$gt: 40}}"), BsonDocument.parse("{age: -1}")));
+        Assert.assertEquals(Arrays.asList(1, 2), ids(BsonDocument.parse("{$or: [{'address.city': 'london'}, {address: {$exists: false}}]}"), BsonDocument.parse("{_id: 1}")));
+        Assert.assertEquals(Arrays.asList(3), ids(BsonDocument.parse("{name: {$regex: '^G', $options: 'i'}}"), null));
+
+        final BsonDocument projected = collection.find(BsonDocument.parse("{_id: 2}")).projection(BsonDocument.parse("{name: 1}")).first();
+        Assert.assertEquals(BsonDocument.parse("{_id: 2, name: 'alan'}"), projected);
+    }
+
+    @Test
+    public void testCursorsSpanBatches() {
+        final List<BsonDocument> documents = new ArrayList<BsonDocument>();
+        for (int index = 0; index < 250; index++)
+            documents.add(new BsonDocument("_id", new BsonInt32(index)));
+        collection.insertMany(documents);
+
+        int count = 0;
+        for (final BsonDocument ignored : collection.find().batchSize(30))
+            count++;
+        Assert.assertEquals(250, count);
+        Assert.assertEquals(5, collection.find().skip(245).into(new ArrayList<BsonDocument>()).size());
+    }
+
+    @Test
+    public void testUpdatesAndDeletes() {
+        collection.insertOne(BsonDocument.parse("{_id: 1, count: 1}"));
+        collection.updateOne(BsonDocument.parse("{_id: 1}"), BsonDocument.parse("{$inc: {count: 2}, $set: {'nested.flag': true}}"));
+        Assert.assertEquals(BsonDocument.parse("{_id: 1, count: 3, nested: {flag: true}}"), collection.find().first());
+
+        collection.replaceOne(BsonDocument.parse("{name: 'new'}"), BsonDocument.parse("{name: 'new', value: 1}"), new UpdateOptions().upsert(true));
+        Assert.assertEquals(1, collection.count(BsonDocument.parse("{name: 'new', value: 1}")));
+
+        Assert.assertEquals(2, collection.updateMany(new BsonDocument(), BsonDocument.parse("{$set: {seen: true}}")).getMatchedCount());
+        Assert.assertEquals(1, collection.deleteOne(BsonDocument.parse("{seen: true}")).getDeletedCount());
+        Assert.assertEquals(1, collection.count());
+
+        collection.withWriteConcern(WriteConcern.UNACKNOWLEDGED).insertOne(BsonDocument.parse("{_id: 'unacknowledged'}"));
+        Assert.assertEquals(2, collection.count());
+    }
+
+    @Test
+    public void testDuplicateKeys() {
+        collection.createIndex(BsonDocument.parse("{email: 1}"), new IndexOptions().unique(true));
+        collection.insertOne(BsonDocument.parse("{_id: 1, email: 'a@example.com'}"));
+        try {
+            collection.insertOne(BsonDocument.parse("{_id: 1}"));
+            Assert.fail("expected a duplicate key error");
+        } catch (final MongoWriteException e) {
+            Assert.assertEquals(11000, e.getError().getCode());
+        }
+        try {
+            collection.insertOne(BsonDocument.parse("{_id: 2, email: 'a@example.com'}"));
+            Assert.fail("expected a duplicate key error");
+        } catch (final MongoWriteException e) {
+            Assert.assertEquals(11000, e.getError().getCode());
+        }
+        Assert.assertEquals(2, collection.listIndexes().into(new ArrayList<Document>()).size());
+
+        // keys are released when their document changes or goes away
+        collection.updateOne(BsonDocument.parse("{_id: 1}"), BsonDocument.parse("{$set: {email: 'b@example.com'}}"));
+        collection.insertOne(BsonDocument.parse("{_id: 2, email: 'a@example.com'}"));
+        try {
+            collection.updateOne(BsonDocument.parse("{_id: 2}"), BsonDocument.parse("{$set: {email: 'b@example.com'}}"));
+            Assert.fail("expected a duplicate key error");
+        } catch (final MongoWriteException e) {
+            Assert.assertEquals(11000, e.getError().getCode());
+        }
+        collection.deleteOne(BsonDocument.parse("{_id: 1}"));
+        collection.updateOne(BsonDocument.parse("{_id: 2}"), BsonDocument.parse("{$set: {email: 'b@example.com'}}"));
+        collection.insertOne(BsonDocument.parse("{_id: 3, email: 'a@example.com'}"));
+        Assert.assertEquals(2, collection.count());
+    }
+
+    @Test
+    public void testAdministration() {
+        collection.insertOne(new BsonDocument("_id", new BsonInt32(1)));
+        final MongoDatabase database = client.getDatabase("test");
+        Assert.assertEquals(Arrays.asList("people"), database.listCollectionNames().into(new ArrayList<String>()));
+        Assert.assertTrue(client.listDatabaseNames().into(new ArrayList<String>()).contains("test"));
+
+        collection.drop();
+        collection.drop();
+        Assert.assertEquals(0, collection.count());
+
+        final BsonDocument status = database.runCommand(new BsonDocument("serverStatus", new BsonInt32(1)), BsonDocument.class);
+        Assert.assertTrue(status.getDocument("connections").getInt32("current").getValue() >= 1);
+        try {
+            database.runCommand(new BsonDocument("$eval", new BsonString("1")));
+            Assert.fail("expected an unknown command");
+        } catch (final MongoCommandException e) {
+            Assert.assertEquals(59, e.getErrorCode());
+        }
+    }
+
+    private List<Integer> ids(final BsonDocument filter, final BsonDocument sort) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        for (final BsonDocument document : collection.find(filter).sort(sort))
+            ids.add(document.getNumber("_id").intValue());
+        return ids;
+    }
+}
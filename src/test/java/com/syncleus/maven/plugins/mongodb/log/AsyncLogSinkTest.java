@@ -0,0 +1,84 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class AsyncLogSinkTest {
+
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private int closed;
+
+    private final LogSink delegate = new LogSink() {
+        @Override
+        public void accept(final MongodLogRecord record) {
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    };
+
+    private static MongodLogRecord record(final String message) {
+        return new MongodLogRecord(Level.INFO, "NETWORK", "conn1", message, message);
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseDeliversPendingRecords() {
+        final AsyncLogSink sink = new AsyncLogSink(delegate, 1000);
+        for (int index = 0; index < 500; index++)
+            sink.accept(record("message " + index));
+        sink.close();
+
+        Assert.assertEquals(500, messages.size());
+        Assert.assertEquals("message 0", messages.get(0));
+        Assert.assertEquals("message 499", messages.get(499));
+        Assert.assertEquals(1, closed);
+    }
+
+    @Test(timeout = 10000)
+    public void testRecordsAfterCloseAreDeliveredDirectly() {
+        final AsyncLogSink sink = new AsyncLogSink(delegate, 10);
+        sink.close();
+        sink.close();
+        sink.accept(record("late"));
+
+        Assert.assertEquals(Collections.singletonList("late"), messages);
+        Assert.assertEquals(1, closed);
+    }
+
+    @Test(timeout = 10000)
+    public void testStructuredOutputEndClosesTheSink() {
+        final AsyncLogSink sink = new AsyncLogSink(delegate, 1000);
+        final StructuredStreamProcessor processor = new StructuredStreamProcessor(Level.INFO, null, 0, sink);
+        processor.process("2015-06-10T10:12:13.123+0000 I NETWORK  [initandlisten] waiting for connections\n");
+        processor.process("2015-06-10T10:12:13.123+0000 I CONTROL  [signalProcessingThread] now exiting");
+        processor.onProcessed();
+
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals("now exiting", messages.get(1));
+        Assert.assertEquals(1, closed);
+    }
+}
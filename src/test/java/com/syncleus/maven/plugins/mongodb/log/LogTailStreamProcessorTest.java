@@ -0,0 +1,52 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import de.flapdoodle.embed.process.io.IStreamProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class LogTailStreamProcessorTest {
+
+    @Test
+    public void testCompleteLinesAreKeptAndBlocksPassedOn() {
+        final StringBuilder passedOn = new StringBuilder();
+        final IStreamProcessor delegate = new IStreamProcessor() {
+            @Override
+            public void process(final String block) {
+                passedOn.append(block);
+            }
+
+            @Override
+            public void onProcessed() {
+                passedOn.append("<end>");
+            }
+        };
+
+        final LogTail tail = new LogTail(10);
+        final LogTailStreamProcessor processor = new LogTailStreamProcessor(delegate, tail);
+        processor.process("first li");
+        processor.process("ne\r\nsecond line\nthird");
+        Assert.assertEquals(Arrays.asList("first line", "second line"), tail.getLines());
+
+        processor.onProcessed();
+        Assert.assertEquals(Arrays.asList("first line", "second line", "third"), tail.getLines());
+        Assert.assertEquals("first line\r\nsecond line\nthird<end>", passedOn.toString());
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MongodLogParserTest {
+
+    private final MongodLogParser parser = new MongodLogParser();
+
+    @Test
+    public void testTextLine() {
+        final MongodLogRecord record = parser.parse("2015-06-10T10:12:13.123+0000 I NETWORK  [initandlisten] waiting for connections on port 27017");
+        Assert.assertEquals(Level.INFO, record.getLevel());
+        Assert.assertEquals("NETWORK", record.getComponent());
+        Assert.assertEquals("initandlisten", record.getContext());
+        Assert.assertEquals("waiting for connections on port 27017", record.getMessage());
+    }
+
+    @Test
+    public void testDebugTextLine() {
+        final MongodLogRecord record = parser.parse("2015-06-10T10:12:13.123+0000 D2 COMMAND  [conn1] run command admin.$cmd { isMaster: 1 }");
+        Assert.assertEquals(Level.DEBUG, record.getLevel());
+        Assert.assertEquals("COMMAND", record.getComponent());
+    }
+
+    @Test
+    public void testLegacyTextLine() {
+        final MongodLogRecord record = parser.parse("Wed Jun 10 10:12:13.123 [initandlisten] warning: some warning");
+        Assert.assertEquals(Level.WARNING, record.getLevel());
+        Assert.assertEquals(MongodLogRecord.UNKNOWN_COMPONENT, record.getComponent());
+        Assert.assertEquals("initandlisten", record.getContext());
+    }
+
+    @Test
+    public void testJsonLine() {
+        final MongodLogRecord record = parser.parse("{\"t\":{\"$date\":1597140733123},\"s\":\"W\",\"c\":\"STORAGE\",\"id\":22302,\"ctx\":\"initandlisten\",\"msg\":\"Recovering data\",\"attr\":{\"path\":\"/data/db\"}}");
+        Assert.assertEquals(Level.WARNING, record.getLevel());
+        Assert.assertEquals("STORAGE", record.getComponent());
+        Assert.assertEquals("initandlisten", record.getContext());
+        Assert.assertTrue(record.getMessage().startsWith("Recovering data"));
+        Assert.assertTrue(record.getMessage().contains("/data/db"));
+    }
+
+    @Test
+    public void testUnrecognisedLine() {
+        final MongodLogRecord record = parser.parse("{ not json at all");
+        Assert.assertEquals(Level.INFO, record.getLevel());
+        Assert.assertEquals(MongodLogRecord.UNKNOWN_COMPONENT, record.getComponent());
+        Assert.assertEquals("{ not json at all", record.getMessage());
+    }
+}
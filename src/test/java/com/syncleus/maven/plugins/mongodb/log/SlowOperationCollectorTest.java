@@ -0,0 +1,74 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SlowOperationCollectorTest {
+
+    @Test
+    public void testTextLines() {
+        final SlowOperationCollector collector = new SlowOperationCollector(10);
+        collector.accept("2015-06-10T10:12:13.123+0000 I COMMAND  [conn1] command test.people command: find { find: \"people\", filter: { age: 30 } } planSummary: COLLSCAN keysExamined:0 docsExamined:5000 protocol:op_query 150ms");
+        collector.accept("2015-06-10T10:12:13.123+0000 I QUERY    [conn2] query test.people query: { age: 31 } planSummary: COLLSCAN ntoreturn:0 ntoskip:0 nscanned:5000 120ms");
+        collector.accept("2015-06-10T10:12:13.123+0000 I WRITE    [conn3] update test.people query: { _id: 1 } update: { $set: { a: 1 } } planSummary: IXSCAN { _id: 1 } nMatched:1 105ms");
+        collector.accept("2015-06-10T10:12:13.123+0000 I NETWORK  [conn4] end connection 127.0.0.1:51234 (1 connection now open)");
+
+        Assert.assertEquals(3, collector.getSeen());
+        Assert.assertEquals(150, collector.getMaxMillis());
+        final List<SlowOperation> operations = collector.getOperations();
+        Assert.assertEquals(2, operations.size());
+        Assert.assertEquals("test.people", operations.get(0).getNamespace());
+        Assert.assertEquals("COLLSCAN", operations.get(0).getPlanSummary());
+        Assert.assertEquals(2, operations.get(0).getCount());
+        Assert.assertEquals(270, operations.get(0).getTotalMillis());
+        Assert.assertEquals("IXSCAN { _id: 1 }", operations.get(1).getPlanSummary());
+    }
+
+    @Test
+    public void testJsonLines() {
+        final SlowOperationCollector collector = new SlowOperationCollector(10);
+        collector.accept("{\"t\":{\"$date\":\"2020-08-11T10:12:13.123+00:00\"},\"s\":\"I\",\"c\":\"COMMAND\",\"id\":51803,\"ctx\":\"conn1\",\"msg\":\"Slow query\",\"attr\":{\"type\":\"command\",\"ns\":\"test.people\",\"command\":{\"find\":\"people\"},\"planSummary\":\"COLLSCAN\",\"durationMillis\":230}}");
+        Assert.assertEquals(1, collector.getSeen());
+        Assert.assertEquals("test.people", collector.getOperations().get(0).getNamespace());
+        Assert.assertEquals("COLLSCAN", collector.getOperations().get(0).getPlanSummary());
+        Assert.assertEquals(230, collector.getMaxMillis());
+    }
+
+    @Test
+    public void testHeaviestOperationsAreKept() {
+        final SlowOperationCollector collector = new SlowOperationCollector(4);
+        for (int repeat = 0; repeat < 10; repeat++)
+            collector.accept(slowQuery("test.heavy", 500));
+        for (int collection = 0; collection < 100; collection++)
+            collector.accept(slowQuery("test.light" + collection, 100));
+
+        Assert.assertEquals(110, collector.getSeen());
+        final List<SlowOperation> operations = collector.getOperations();
+        Assert.assertEquals(4, operations.size());
+        Assert.assertEquals("test.heavy", operations.get(0).getNamespace());
+        Assert.assertEquals(5000, operations.get(0).getTotalMillis());
+        Assert.assertEquals(0, operations.get(0).getError());
+    }
+
+    private static String slowQuery(final String namespace, final long millis) {
+        return "2015-06-10T10:12:13.123+0000 I QUERY    [conn1] query " + namespace + " query: { a: 1 } planSummary: COLLSCAN " + millis + "ms";
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright: (c) Syncleus, Inc.
+ *
+ * You may redistribute and modify this source code under the terms and
+ * conditions of the Open Source Community License - Type C version 1.0
+ * or any later version as published by Syncleus, Inc. at www.syncleus.com.
+ * There should be a copy of the license included with this file. If a copy
+ * of the license is not included you are granted no right to distribute or
+ * otherwise use this file except through a legal and valid license. You
+ * should also contact Syncleus, Inc. at the information below if you cannot
+ * find a license:
+ *
+ * Syncleus, Inc.
+ * 2604 South 12th Street
+ * Philadelphia, PA 19148
+ */
+package com.syncleus.maven.plugins.mongodb.log;
+
+import com.syncleus.maven.plugins.mongodb.log.MongodLogRecord.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StructuredStreamProcessorTest {
+
+    private final List<MongodLogRecord> records = new ArrayList<MongodLogRecord>();
+    private final LogSink sink = new LogSink() {
+        @Override
+        public void accept(final MongodLogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Test
+    public void testLinesSplitAcrossBlocks() {
+        final StructuredStreamProcessor processor = new StructuredStreamProcessor(Level.INFO, null, 0, sink);
+        processor.process("2015-06-10T10:12:13.123+0000 I NETWORK  [initandlisten] waiting for ");
+        processor.process("connections on port 27017\n2015-06-10T10:12:13.124+0000 I STORAGE  [initandlisten] done\r\n");
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("waiting for connections on port 27017", records.get(0).getMessage());
+        Assert.assertEquals("done", records.get(1).getMessage());
+    }
+
+    @Test
+    public void testLevelAndComponentFiltering() {
+        final StructuredStreamProcessor processor = new StructuredStreamProcessor(Level.INFO, new String[]{"storage"}, 0, sink);
+        processor.process("2015-06-10T10:12:13.123+0000 D1 STORAGE  [conn1] debug\n");
+        processor.process("2015-06-10T10:12:13.123+0000 I NETWORK  [conn1] connection accepted\n");
+        processor.process("2015-06-10T10:12:13.123+0000 I STORAGE  [conn1] kept\n");
+        processor.process("2015-06-10T10:12:13.123+0000 E NETWORK  [conn1] always logged\n");
+        Assert.assertEquals(2, records.size());
+        Assert.assertEquals("kept", records.get(0).getMessage());
+        Assert.assertEquals("always logged", records.get(1).getMessage());
+    }
+
+    @Test
+    public void testRepeatsAreCollapsed() {
+        final StructuredStreamProcessor processor = new StructuredStreamProcessor(Level.INFO, null, 60000, sink);
+        for (int repeat = 0; repeat < 5; repeat++)
+            processor.process("2015-06-10T10:12:13.123+0000 I NETWORK  [conn" + repeat + "] end connection\n");
+        processor.process("2015-06-10T10:12:13.123+0000 I NETWORK  [conn9] something else\n");
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals("end connection", records.get(0).getMessage());
+        Assert.assertEquals("last message repeated 4 more time(s)", records.get(1).getMessage());
+        Assert.assertEquals("something else", records.get(2).getMessage());
+    }
+}